@@ -0,0 +1,193 @@
+package net.logicsquad.nanocaptcha.audio;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.logicsquad.nanocaptcha.audio.noise.RandomNoiseProducer;
+import net.logicsquad.nanocaptcha.audio.producer.RandomNumberVoiceProducer;
+
+/**
+ * <p>
+ * Throughput of each stage of the audio CAPTCHA path: decoding vocalizations,
+ * concatenating them, mixing in noise, building a whole CAPTCHA (with and
+ * without noise) and exporting it as a WAV file. Each stage works on
+ * {@link #length} digits in the voices for {@link #locale}.
+ * </p>
+ *
+ * <p>
+ * {@link Sample}s from {@link Mixer} and {@link AudioCaptcha.Builder} are
+ * rendered lazily, so benchmarks that produce one render it in full (via
+ * {@link Sample#getSamples()}): otherwise they would measure only the
+ * bookkeeping. Voices and noise are loaded into the shared
+ * {@link SampleCache} during setup, so no benchmark includes resource I/O
+ * except {@link #decode()}, which decodes from in-memory WAV files.
+ * </p>
+ *
+ * <p>
+ * Run with (the {@code benchmark} profile adds JMH's GC profiler, which
+ * reports allocation rate alongside throughput):
+ * </p>
+ *
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="AudioCaptchaBenchmark"
+ * </pre>
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AudioCaptchaBenchmark {
+	/**
+	 * Noise to mix in
+	 */
+	private static final String NOISE = "/sounds/noises/restaurant.wav";
+
+	/**
+	 * Crossfade between vocalizations, in milliseconds
+	 */
+	private static final int CROSSFADE_MILLIS = 20;
+
+	/**
+	 * Number of digits
+	 */
+	@Param({ "5", "8" })
+	public int length;
+
+	/**
+	 * Language of voices
+	 */
+	@Param({ "en", "de" })
+	public String locale;
+
+	/**
+	 * Voices for {@link #locale}
+	 */
+	private RandomNumberVoiceProducer voices;
+
+	/**
+	 * Encoded vocalizations of {@link #length} digits
+	 */
+	private List<byte[]> wavs;
+
+	/**
+	 * Decoded vocalizations of {@link #length} digits
+	 */
+	private List<Sample> vocalizations;
+
+	/**
+	 * Decoded noise
+	 */
+	private Sample noise;
+
+	/**
+	 * CAPTCHA with noise, for export
+	 */
+	private AudioCaptcha captcha;
+
+	@Setup
+	public void setup() {
+		voices = new RandomNumberVoiceProducer(new Locale(locale));
+		voices.preload();
+		new RandomNoiseProducer().preload();
+		Random random = new Random(42);
+		wavs = new ArrayList<>(length);
+		vocalizations = new ArrayList<>(length);
+		for (int i = 0; i < length; i++) {
+			char digit = (char) ('0' + random.nextInt(10));
+			wavs.add(read("/sounds/" + locale + "/numbers/" + digit + "_a.wav"));
+			vocalizations.add(voices.getVocalization(digit));
+		}
+		noise = SampleCache.shared().get(NOISE, AudioProfile.STANDARD, LoudnessNormalizer.NOISE);
+		captcha = new AudioCaptcha.Builder().addContent(length).addVoice(voices).addNoise().build();
+		return;
+	}
+
+	@Benchmark
+	public List<Sample> decode() {
+		List<Sample> decoded = new ArrayList<>(wavs.size());
+		for (byte[] wav : wavs) {
+			decoded.add(new Sample(new ByteArrayInputStream(wav)));
+		}
+		return decoded;
+	}
+
+	@Benchmark
+	public short[] concatenate() {
+		return Mixer.concatenate(vocalizations).getSamples();
+	}
+
+	@Benchmark
+	public short[] concatenateCrossfaded() {
+		List<Sample> trimmed = new ArrayList<>(vocalizations.size());
+		for (Sample vocalization : vocalizations) {
+			trimmed.add(vocalization.trimSilence());
+		}
+		int crossfade = (int) (Sample.SC_AUDIO_FORMAT.getSampleRate() * CROSSFADE_MILLIS / 1000);
+		return Mixer.concatenate(trimmed, crossfade).getSamples();
+	}
+
+	@Benchmark
+	public short[] mix() {
+		return Mixer.mix(vocalizations, 1.0, noise, 1.0).getSamples();
+	}
+
+	@Benchmark
+	public short[] buildWithoutNoise() {
+		return new AudioCaptcha.Builder().addContent(length).addVoice(voices).build().getAudio().getSamples();
+	}
+
+	@Benchmark
+	public short[] buildWithNoise() {
+		return new AudioCaptcha.Builder().addContent(length).addVoice(voices).addNoise().build().getAudio().getSamples();
+	}
+
+	@Benchmark
+	public byte[] exportWav() {
+		return captcha.toWavByteArray();
+	}
+
+	/**
+	 * Reads the resource {@code name} into memory.
+	 *
+	 * @param name resource name
+	 * @return resource contents
+	 */
+	private static byte[] read(String name) {
+		try (InputStream is = AudioCaptchaBenchmark.class.getResourceAsStream(name)) {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8_192];
+			int read;
+			while ((read = is.read(buffer)) != -1) {
+				baos.write(buffer, 0, read);
+			}
+			return baos.toByteArray();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
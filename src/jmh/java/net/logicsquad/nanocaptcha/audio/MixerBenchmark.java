@@ -0,0 +1,223 @@
+package net.logicsquad.nanocaptcha.audio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Compares the {@code double[]} mixing path used by {@link Mixer} prior to 2.2
+ * with the {@code short[]} path, and with the fused
+ * {@link Mixer#mixToByteArray(List, double, Sample, double)} kernel. Each
+ * benchmark concatenates five digit vocalizations, mixes in noise and returns
+ * the result as 16-bit PCM bytes.
+ * </p>
+ *
+ * <p>
+ * Run with:
+ * </p>
+ *
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="MixerBenchmark"
+ * </pre>
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MixerBenchmark {
+	/**
+	 * Digit vocalizations to concatenate
+	 */
+	private static final String[] DIGITS = { "/sounds/en/numbers/1_a.wav", "/sounds/en/numbers/5_b.wav",
+			"/sounds/en/numbers/9_c.wav", "/sounds/en/numbers/3_d.wav", "/sounds/en/numbers/7_e.wav" };
+
+	/**
+	 * Noise to mix in
+	 */
+	private static final String NOISE = "/sounds/noises/restaurant.wav";
+
+	/**
+	 * Relative volume of noise
+	 */
+	private static final double NOISE_VOLUME = 0.6;
+
+	/**
+	 * Chunk size for streamed rendering
+	 */
+	private static final int CHUNK_SAMPLES = 2_048;
+
+	/**
+	 * Decoded digit {@link Sample}s
+	 */
+	private List<Sample> samples;
+
+	/**
+	 * Decoded noise {@link Sample}
+	 */
+	private Sample noise;
+
+	/**
+	 * Encoded digit vocalizations, as read by the pre-2.2 {@code Sample}
+	 */
+	private List<byte[]> sampleBytes;
+
+	/**
+	 * Encoded noise, as read by the pre-2.2 {@code Sample}
+	 */
+	private byte[] noiseBytes;
+
+	@Setup
+	public void setup() {
+		samples = new ArrayList<>();
+		sampleBytes = new ArrayList<>();
+		for (String digit : DIGITS) {
+			Sample sample = new Sample(digit);
+			samples.add(sample);
+			sampleBytes.add(sample.toByteArray());
+		}
+		noise = new Sample(NOISE);
+		noiseBytes = noise.toByteArray();
+		return;
+	}
+
+	@Benchmark
+	public byte[] legacyDoubleMix() {
+		return LegacyMixer.mix(sampleBytes, noiseBytes, NOISE_VOLUME);
+	}
+
+	@Benchmark
+	public byte[] shortConcatenateThenMix() {
+		return Mixer.mix(Mixer.concatenate(samples), 1.0, noise, NOISE_VOLUME).toByteArray();
+	}
+
+	@Benchmark
+	public byte[] fusedMixToByteArray() {
+		return Mixer.mixToByteArray(samples, 1.0, noise, NOISE_VOLUME);
+	}
+
+	@Benchmark
+	public byte[] sequenceMixStreamed() {
+		Sample mixed = Mixer.mix(samples, 1.0, noise, NOISE_VOLUME);
+		int sampleCount = (int) mixed.getSampleCount();
+		byte[] result = new byte[sampleCount * 2];
+		short[] chunk = new short[CHUNK_SAMPLES];
+		for (int start = 0; start < sampleCount; start += CHUNK_SAMPLES) {
+			int count = Math.min(CHUNK_SAMPLES, sampleCount - start);
+			mixed.read(start, chunk, 0, count);
+			Sample.encode(chunk, 0, count, result, start * 2);
+		}
+		return result;
+	}
+
+	/**
+	 * Reproduction of the pre-2.2 {@code double[]} decode, concatenate, mix and
+	 * encode path, as a baseline.
+	 */
+	private static final class LegacyMixer {
+		/**
+		 * Decodes, concatenates and mixes audio, returning the encoded result.
+		 *
+		 * @param samples     encoded samples
+		 * @param noise       encoded noise
+		 * @param noiseVolume noise multiplier
+		 * @return encoded result
+		 */
+		static byte[] mix(List<byte[]> samples, byte[] noise, double noiseVolume) {
+			double[] first = decode(samples.get(0));
+			double[][] rest = new double[samples.size() - 1][];
+			for (int i = 0; i < rest.length; i++) {
+				rest[i] = decode(samples.get(i + 1));
+			}
+			double[] appended = concatenate(first, rest);
+			double[] noiseSamples = decode(noise);
+			for (int i = 0; i < appended.length; i++) {
+				if (i >= noiseSamples.length) {
+					appended[i] = 0;
+					break;
+				}
+				appended[i] = appended[i] * 1.0 + noiseSamples[i] * noiseVolume;
+			}
+			byte[] buffer = new byte[appended.length * 2];
+			int in;
+			for (int i = 0; i < appended.length; i++) {
+				in = (int) (appended[i] * 32_767);
+				buffer[2 * i] = (byte) (in & 255);
+				buffer[2 * i + 1] = (byte) (in >> 8);
+			}
+			return buffer;
+		}
+
+		/**
+		 * Concatenates arrays of {@code double}s.
+		 *
+		 * @param first first array
+		 * @param rest  additional arrays
+		 * @return concatenated array
+		 */
+		private static double[] concatenate(double[] first, double[]... rest) {
+			int totalLength = first.length;
+			for (double[] array : rest) {
+				totalLength += array.length;
+			}
+			double[] result = Arrays.copyOf(first, totalLength);
+			int offset = first.length;
+			for (double[] array : rest) {
+				System.arraycopy(array, 0, result, offset, array.length);
+				offset += array.length;
+			}
+			return result;
+		}
+
+		/**
+		 * Decodes little-endian 16-bit audio as the pre-2.2 {@code Sample} did.
+		 *
+		 * @param audioBytes encoded audio
+		 * @return decoded audio
+		 */
+		private static double[] decode(byte[] audioBytes) {
+			double[] audioSamples = new double[audioBytes.length / 2];
+			int sampleSizeInBytes = Sample.SC_AUDIO_FORMAT.getSampleSizeInBits() / 8;
+			int[] sampleBytes = new int[sampleSizeInBytes];
+			int k = 0;
+			for (int i = 0; i < audioSamples.length; i++) {
+				if (Sample.SC_AUDIO_FORMAT.isBigEndian()) {
+					for (int j = 0; j < sampleSizeInBytes; j++) {
+						sampleBytes[j] = audioBytes[k++];
+					}
+				} else {
+					for (int j = sampleSizeInBytes - 1; j >= 0; j--) {
+						sampleBytes[j] = audioBytes[k++];
+					}
+				}
+				int ival = 0;
+				for (int j = 0; j < sampleSizeInBytes; j++) {
+					ival += sampleBytes[j];
+					if (j < sampleSizeInBytes - 1) {
+						ival <<= 8;
+					}
+				}
+				double ratio = Math.pow(2., Sample.SC_AUDIO_FORMAT.getSampleSizeInBits() - 1);
+				audioSamples[i] = ival / ratio;
+			}
+			return audioSamples;
+		}
+	}
+}
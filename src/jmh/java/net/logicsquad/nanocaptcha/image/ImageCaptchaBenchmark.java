@@ -0,0 +1,319 @@
+package net.logicsquad.nanocaptcha.image;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.logicsquad.nanocaptcha.content.ContentProducer;
+import net.logicsquad.nanocaptcha.image.backgrounds.BackgroundProducer;
+import net.logicsquad.nanocaptcha.image.backgrounds.FlatColorBackgroundProducer;
+import net.logicsquad.nanocaptcha.image.backgrounds.GradiatedBackgroundProducer;
+import net.logicsquad.nanocaptcha.image.backgrounds.SquigglesBackgroundProducer;
+import net.logicsquad.nanocaptcha.image.backgrounds.TransparentBackgroundProducer;
+import net.logicsquad.nanocaptcha.image.filter.FishEyeImageFilter;
+import net.logicsquad.nanocaptcha.image.filter.ImageFilter;
+import net.logicsquad.nanocaptcha.image.filter.RippleImageFilter;
+import net.logicsquad.nanocaptcha.image.filter.ShearImageFilter;
+import net.logicsquad.nanocaptcha.image.filter.StretchImageFilter;
+import net.logicsquad.nanocaptcha.image.noise.CurvedLineNoiseProducer;
+import net.logicsquad.nanocaptcha.image.noise.GaussianNoiseProducer;
+import net.logicsquad.nanocaptcha.image.noise.NoiseProducer;
+import net.logicsquad.nanocaptcha.image.noise.SaltAndPepperNoiseProducer;
+import net.logicsquad.nanocaptcha.image.noise.StraightLineNoiseProducer;
+import net.logicsquad.nanocaptcha.image.renderer.DefaultWordRenderer;
+import net.logicsquad.nanocaptcha.image.renderer.FastWordRenderer;
+import net.logicsquad.nanocaptcha.image.renderer.WordRenderer;
+
+/**
+ * <p>
+ * Throughput of each stage of the image CAPTCHA pipeline&mdash;each
+ * {@link WordRenderer}, {@link ImageFilter}, {@link NoiseProducer} and
+ * {@link BackgroundProducer}&mdash;and of building whole CAPTCHAs with
+ * {@link ImageCaptcha.Builder}, at each {@link #size} in use. This class runs
+ * single-threaded, reporting operations per second; {@link FourThreads} runs
+ * the same benchmarks on four threads, to show how each stage scales, and
+ * {@link AverageTime} reports nanoseconds per operation, single-threaded.
+ * </p>
+ *
+ * <p>
+ * Renderers, filters and noise producers work in place on an image rendered
+ * during setup, which each thread reuses: their cost doesn't depend on what
+ * the image already contains, so it is not reset between invocations.
+ * </p>
+ *
+ * <p>
+ * Run with (the {@code benchmark} profile adds JMH's GC profiler, which
+ * reports bytes allocated per operation):
+ * </p>
+ *
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="ImageCaptchaBenchmark"
+ * </pre>
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+@State(Scope.Thread)
+public class ImageCaptchaBenchmark {
+	/**
+	 * Content rendered in every image
+	 */
+	private static final String WORD = "x7kf2";
+
+	/**
+	 * Image size, as <em>width</em>{@code x}<em>height</em>
+	 */
+	@Param({ "200x50", "400x100", "600x150" })
+	public String size;
+
+	/**
+	 * Image width
+	 */
+	private int width;
+
+	/**
+	 * Image height
+	 */
+	private int height;
+
+	/**
+	 * Image with background and content, worked on in place
+	 */
+	private BufferedImage image;
+
+	/**
+	 * Blank image for rendering
+	 */
+	private BufferedImage blank;
+
+	/**
+	 * {@link DefaultWordRenderer}
+	 */
+	private WordRenderer defaultRenderer;
+
+	/**
+	 * {@link FastWordRenderer}
+	 */
+	private WordRenderer fastRenderer;
+
+	/**
+	 * {@link RippleImageFilter}
+	 */
+	private ImageFilter ripple;
+
+	/**
+	 * {@link FishEyeImageFilter}
+	 */
+	private ImageFilter fishEye;
+
+	/**
+	 * {@link ShearImageFilter}
+	 */
+	private ImageFilter shear;
+
+	/**
+	 * {@link StretchImageFilter}
+	 */
+	private ImageFilter stretch;
+
+	/**
+	 * {@link CurvedLineNoiseProducer}
+	 */
+	private NoiseProducer curvedLine;
+
+	/**
+	 * {@link StraightLineNoiseProducer}
+	 */
+	private NoiseProducer straightLine;
+
+	/**
+	 * {@link GaussianNoiseProducer}
+	 */
+	private NoiseProducer gaussian;
+
+	/**
+	 * {@link SaltAndPepperNoiseProducer}
+	 */
+	private NoiseProducer saltAndPepper;
+
+	/**
+	 * {@link TransparentBackgroundProducer}
+	 */
+	private BackgroundProducer transparent;
+
+	/**
+	 * {@link FlatColorBackgroundProducer}
+	 */
+	private BackgroundProducer flatColor;
+
+	/**
+	 * {@link GradiatedBackgroundProducer}
+	 */
+	private BackgroundProducer gradiated;
+
+	/**
+	 * {@link SquigglesBackgroundProducer}
+	 */
+	private BackgroundProducer squiggles;
+
+	/**
+	 * Fixed content
+	 */
+	private ContentProducer content;
+
+	@Setup
+	public void setup() {
+		String[] dimensions = size.split("x");
+		width = Integer.parseInt(dimensions[0]);
+		height = Integer.parseInt(dimensions[1]);
+		defaultRenderer = new DefaultWordRenderer.Builder().build();
+		fastRenderer = new FastWordRenderer.Builder().build();
+		ripple = new RippleImageFilter();
+		fishEye = new FishEyeImageFilter();
+		shear = new ShearImageFilter();
+		stretch = new StretchImageFilter();
+		curvedLine = new CurvedLineNoiseProducer();
+		straightLine = new StraightLineNoiseProducer();
+		gaussian = new GaussianNoiseProducer();
+		saltAndPepper = new SaltAndPepperNoiseProducer();
+		transparent = new TransparentBackgroundProducer();
+		flatColor = new FlatColorBackgroundProducer();
+		gradiated = new GradiatedBackgroundProducer();
+		squiggles = new SquigglesBackgroundProducer();
+		content = () -> WORD;
+		image = gradiated.getBackground(width, height);
+		defaultRenderer.render(WORD, image);
+		blank = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		return;
+	}
+
+	@Benchmark
+	public BufferedImage renderDefault() {
+		defaultRenderer.render(WORD, blank);
+		return blank;
+	}
+
+	@Benchmark
+	public BufferedImage renderFast() {
+		fastRenderer.render(WORD, blank);
+		return blank;
+	}
+
+	@Benchmark
+	public BufferedImage filterRipple() {
+		ripple.filter(image);
+		return image;
+	}
+
+	@Benchmark
+	public BufferedImage filterFishEye() {
+		fishEye.filter(image);
+		return image;
+	}
+
+	@Benchmark
+	public BufferedImage filterShear() {
+		shear.filter(image);
+		return image;
+	}
+
+	@Benchmark
+	public BufferedImage filterStretch() {
+		stretch.filter(image);
+		return image;
+	}
+
+	@Benchmark
+	public BufferedImage noiseCurvedLine() {
+		curvedLine.makeNoise(image);
+		return image;
+	}
+
+	@Benchmark
+	public BufferedImage noiseStraightLine() {
+		straightLine.makeNoise(image);
+		return image;
+	}
+
+	@Benchmark
+	public BufferedImage noiseGaussian() {
+		gaussian.makeNoise(image);
+		return image;
+	}
+
+	@Benchmark
+	public BufferedImage noiseSaltAndPepper() {
+		saltAndPepper.makeNoise(image);
+		return image;
+	}
+
+	@Benchmark
+	public BufferedImage backgroundTransparent() {
+		return transparent.getBackground(width, height);
+	}
+
+	@Benchmark
+	public BufferedImage backgroundFlatColor() {
+		return flatColor.getBackground(width, height);
+	}
+
+	@Benchmark
+	public BufferedImage backgroundGradiated() {
+		return gradiated.getBackground(width, height);
+	}
+
+	@Benchmark
+	public BufferedImage backgroundSquiggles() {
+		return squiggles.getBackground(width, height);
+	}
+
+	@Benchmark
+	public ImageCaptcha buildMinimal() {
+		return new ImageCaptcha.Builder(width, height).addContent(content).build();
+	}
+
+	@Benchmark
+	public ImageCaptcha buildDefault() {
+		return new ImageCaptcha.Builder(width, height).addContent(content).addBackground(gradiated).addNoise().addFilter()
+				.addBorder().build();
+	}
+
+	@Benchmark
+	public ImageCaptcha buildFast() {
+		return new ImageCaptcha.Builder(width, height).addContent(content, fastRenderer).addBackground(flatColor)
+				.addNoise(saltAndPepper).addFilter(shear).addBorder().build();
+	}
+
+	/**
+	 * The same benchmarks, on four threads.
+	 */
+	@Threads(4)
+	public static class FourThreads extends ImageCaptchaBenchmark {
+	}
+
+	/**
+	 * The same benchmarks, reporting average time per operation.
+	 */
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public static class AverageTime extends ImageCaptchaBenchmark {
+	}
+}
@@ -0,0 +1,99 @@
+package net.logicsquad.nanocaptcha.image.filter;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.logicsquad.nanocaptcha.image.backgrounds.GradiatedBackgroundProducer;
+import net.logicsquad.nanocaptcha.image.renderer.DefaultWordRenderer;
+
+/**
+ * <p>
+ * Compares {@link ShearImageFilter}'s raster shear, which shifts rows and
+ * columns in the image's pixel array, with the shear built on
+ * {@link Graphics2D#copyArea(int, int, int, int, int, int)} and
+ * {@link Graphics2D#drawLine(int, int, int, int)}, at each {@link #size} in
+ * use. Each works in place on a {@link BufferedImage#TYPE_INT_ARGB} image with
+ * a background and content, as {@link ShearImageFilter} is used by
+ * {@link net.logicsquad.nanocaptcha.image.ImageCaptcha ImageCaptcha}.
+ * </p>
+ *
+ * <p>
+ * Run with:
+ * </p>
+ *
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="ShearImageFilterBenchmark"
+ * </pre>
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ShearImageFilterBenchmark {
+	/**
+	 * Image size, as <em>width</em>{@code x}<em>height</em>
+	 */
+	@Param({ "200x50", "400x100", "600x150" })
+	public String size;
+
+	/**
+	 * Image with background and content, sheared in place
+	 */
+	private BufferedImage image;
+
+	/**
+	 * Filter under test
+	 */
+	private ShearImageFilter filter;
+
+	/**
+	 * Random number generator for shear parameters
+	 */
+	private Random random;
+
+	@Setup
+	public void setup() {
+		String[] dimensions = size.split("x");
+		int width = Integer.parseInt(dimensions[0]);
+		int height = Integer.parseInt(dimensions[1]);
+		image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		g.drawImage(new GradiatedBackgroundProducer().getBackground(width, height), 0, 0, null);
+		g.dispose();
+		new DefaultWordRenderer.Builder().build().render("x7kf2", image);
+		filter = new ShearImageFilter();
+		random = new Random(42);
+		return;
+	}
+
+	@Benchmark
+	public BufferedImage raster() {
+		filter.filter(image, random);
+		return image;
+	}
+
+	@Benchmark
+	public BufferedImage copyArea() {
+		filter.filterWithGraphics(image, random);
+		return image;
+	}
+}
@@ -1,10 +1,19 @@
 package net.logicsquad.nanocaptcha.audio;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.Random;
 
+import net.logicsquad.nanocaptcha.audio.filter.AudioFilter;
+import net.logicsquad.nanocaptcha.audio.filter.EchoAudioFilter;
 import net.logicsquad.nanocaptcha.audio.noise.NoiseProducer;
 import net.logicsquad.nanocaptcha.audio.noise.RandomNoiseProducer;
 import net.logicsquad.nanocaptcha.audio.producer.RandomNumberVoiceProducer;
@@ -20,6 +29,11 @@ import net.logicsquad.nanocaptcha.content.NumbersContentProducer;
  * @since 1.0
  */
 public final class AudioCaptcha {
+	/**
+	 * Number of samples encoded per chunk when writing audio
+	 */
+	private static final int CHUNK_SAMPLES = 2_048;
+
 	/**
 	 * Generated audio
 	 */
@@ -35,6 +49,16 @@ public final class AudioCaptcha {
 	 */
 	private final OffsetDateTime created;
 
+	/**
+	 * Encoding of {@link #wav}, or {@code null} if not pre-encoded
+	 */
+	private final WavEncoding encoding;
+
+	/**
+	 * Complete WAV file in {@link #encoding}, or {@code null} if not pre-encoded
+	 */
+	private final byte[] wav;
+
 	/**
 	 * Constructor
 	 *
@@ -44,6 +68,24 @@ public final class AudioCaptcha {
 		audio = builder.audio;
 		content = builder.content;
 		created = OffsetDateTime.now();
+		encoding = null;
+		wav = null;
+		return;
+	}
+
+	/**
+	 * Constructor for a copy of {@code captcha} with its audio pre-encoded as a
+	 * WAV file in {@code encoding}.
+	 *
+	 * @param captcha  an {@code AudioCaptcha}
+	 * @param encoding a {@link WavEncoding}
+	 */
+	private AudioCaptcha(AudioCaptcha captcha, WavEncoding encoding) {
+		audio = captcha.audio;
+		content = captcha.content;
+		created = captcha.created;
+		this.encoding = encoding;
+		wav = captcha.toWavByteArray(encoding);
 		return;
 	}
 
@@ -87,6 +129,11 @@ public final class AudioCaptcha {
 		 */
 		private Sample audio;
 
+		/**
+		 * Output profile
+		 */
+		private AudioProfile profile = AudioProfile.STANDARD;
+
 		/**
 		 * {@link VoiceProducer}s
 		 */
@@ -97,12 +144,28 @@ public final class AudioCaptcha {
 		 */
 		private final List<NoiseProducer> noiseProducers;
 
+		/**
+		 * {@link AudioFilter}s
+		 */
+		private final List<AudioFilter> filters;
+
+		/**
+		 * Length of crossfade between vocalizations in milliseconds (0 for none)
+		 */
+		private int crossfadeMillis;
+
+		/**
+		 * Normalizer for vocalizations (or {@code null} to use them as recorded)
+		 */
+		private LoudnessNormalizer normalizer;
+
 		/**
 		 * Constructor
 		 */
 		public Builder() {
 			voiceProducers = new ArrayList<>();
 			noiseProducers = new ArrayList<>();
+			filters = new ArrayList<>();
 			return;
 		}
 
@@ -180,6 +243,79 @@ public final class AudioCaptcha {
 			return this;
 		}
 
+		/**
+		 * Adds the default {@link AudioFilter} ({@link EchoAudioFilter}).
+		 *
+		 * @return this
+		 * @since 2.2
+		 */
+		public Builder addFilter() {
+			return addFilter(new EchoAudioFilter());
+		}
+
+		/**
+		 * Adds {@code filter}. Filters are applied in the order they are added, after
+		 * any noise.
+		 *
+		 * @param filter an {@link AudioFilter}
+		 * @return this
+		 * @throws NullPointerException if {@code filter} is {@code null}
+		 * @since 2.2
+		 */
+		public Builder addFilter(AudioFilter filter) {
+			filters.add(Objects.requireNonNull(filter));
+			return this;
+		}
+
+		/**
+		 * Sets the output profile, which determines the sample rate of the audio
+		 * (default: {@link AudioProfile#STANDARD}).
+		 *
+		 * @param profile an {@link AudioProfile}
+		 * @return this
+		 * @throws NullPointerException if {@code profile} is {@code null}
+		 * @since 2.2
+		 */
+		public Builder profile(AudioProfile profile) {
+			this.profile = Objects.requireNonNull(profile);
+			return this;
+		}
+
+		/**
+		 * Joins vocalizations with an overlap-add crossfade of {@code millis}
+		 * milliseconds, after trimming leading and trailing silence from each (see
+		 * {@link Mixer#concatenate(List, int)} and {@link Sample#trimSilence()}).
+		 * This avoids clicks at the joins and gives shorter audio. The default,
+		 * {@code 0}, joins untrimmed vocalizations end to end.
+		 *
+		 * @param millis crossfade length in milliseconds
+		 * @return this
+		 * @throws IllegalArgumentException if {@code millis} is negative
+		 * @since 2.2
+		 */
+		public Builder crossfade(int millis) {
+			if (millis < 0) {
+				throw new IllegalArgumentException("Crossfade must not be negative.");
+			}
+			this.crossfadeMillis = millis;
+			return this;
+		}
+
+		/**
+		 * Normalizes vocalizations in loudness (see
+		 * {@link LoudnessNormalizer#VOICE}), so that voices recorded at different
+		 * levels sound equally loud. Normalized vocalizations are trimmed of silence
+		 * and prepared once, at load. Combined with the (normalized) built-in noise,
+		 * they leave enough headroom that mixing needs no clipping.
+		 *
+		 * @return this
+		 * @since 2.2
+		 */
+		public Builder normalize() {
+			this.normalizer = LoudnessNormalizer.VOICE;
+			return this;
+		}
+
 		/**
 		 * Builds the audio CAPTCHA described by this object.
 		 *
@@ -202,19 +338,61 @@ public final class AudioCaptcha {
 				// Create Sample for this character from one of the
 				// VoiceProducers
 				vProd = voiceProducers.get(RAND.nextInt(voiceProducers.size()));
-				samples.add(vProd.getVocalization(c));
+				Sample vocalization = normalizer == null ? vProd.getVocalization(c, profile)
+						: vProd.getVocalization(c, profile, normalizer);
+				samples.add(crossfadeMillis > 0 ? vocalization.trimSilence() : vocalization);
+			}
+			if (crossfadeMillis > 0) {
+				int crossfade = (int) (profile.getFormat().getSampleRate() * crossfadeMillis / 1000);
+				samples = Collections.singletonList(Mixer.concatenate(samples, crossfade));
 			}
 
-			// 3. Add noise, if any, and return the result
+			// 3. Add noise, if any
 			if (!noiseProducers.isEmpty()) {
 				NoiseProducer nProd = noiseProducers.get(RAND.nextInt(noiseProducers.size()));
-				audio = nProd.addNoise(samples);
-				return new AudioCaptcha(this);
+				audio = nProd.addNoise(samples, profile);
+			} else {
+				audio = SampleSequence.of(samples);
 			}
 
-			audio = Mixer.concatenate(samples);
+			// 4. Apply filters, if any, and return the result
+			if (!filters.isEmpty()) {
+				audio = filter(audio);
+			}
 			return new AudioCaptcha(this);
 		}
+
+		/**
+		 * Renders {@code sample} once, into a new array, and applies each of this
+		 * object's filters to that array in place. Without filters, audio is never
+		 * rendered in full: it's streamed on output instead.
+		 *
+		 * @param sample a {@link Sample}
+		 * @return filtered {@link Sample}
+		 */
+		private Sample filter(Sample sample) {
+			short[] pcm = new short[(int) sample.getSampleCount()];
+			sample.read(0, pcm, 0, pcm.length);
+			for (AudioFilter filter : filters) {
+				filter.filter(pcm, 0, pcm.length, sample.getFormat());
+			}
+			return Sample.wrap(pcm, sample.getFormat());
+		}
+	}
+
+	/**
+	 * Returns a copy of this object with its audio rendered and encoded once, as a
+	 * WAV file in {@code encoding}. Subsequent WAV output in {@code encoding}
+	 * (e.g., {@link #writeWav(OutputStream, WavEncoding)}) writes the encoded file
+	 * directly; output in any other encoding is rendered as usual.
+	 *
+	 * @param encoding a {@link WavEncoding}
+	 * @return pre-encoded {@code AudioCaptcha}
+	 * @see AudioCaptchaPool
+	 */
+	AudioCaptcha preEncode(WavEncoding encoding) {
+		Objects.requireNonNull(encoding);
+		return encoding == this.encoding ? this : new AudioCaptcha(this, encoding);
 	}
 
 	/**
@@ -246,6 +424,235 @@ public final class AudioCaptcha {
 		return audio;
 	}
 
+	/**
+	 * Returns the exact length in bytes of this CAPTCHA's audio as a
+	 * {@link WavEncoding#PCM_16} WAV file, as written by
+	 * {@link #writeWav(OutputStream)} and related methods. This can be used to set
+	 * a {@code Content-Length} header before writing.
+	 *
+	 * @return WAV file length
+	 * @since 2.2
+	 */
+	public int getWavLength() {
+		return getWavLength(WavEncoding.PCM_16);
+	}
+
+	/**
+	 * Returns the exact length in bytes of this CAPTCHA's audio as a WAV file in
+	 * {@code encoding}, as written by {@link #writeWav(OutputStream, WavEncoding)}
+	 * and related methods.
+	 *
+	 * @param encoding a {@link WavEncoding}
+	 * @return WAV file length
+	 * @since 2.2
+	 */
+	public int getWavLength(WavEncoding encoding) {
+		return encoding.wavLength((int) audio.getSampleCount());
+	}
+
+	/**
+	 * Returns this CAPTCHA's audio as a complete {@link WavEncoding#PCM_16} WAV
+	 * file.
+	 *
+	 * @return WAV file
+	 * @since 2.2
+	 */
+	public byte[] toWavByteArray() {
+		return toWavByteArray(WavEncoding.PCM_16);
+	}
+
+	/**
+	 * Returns this CAPTCHA's audio as a complete WAV file in {@code encoding}.
+	 *
+	 * @param encoding a {@link WavEncoding}
+	 * @return WAV file
+	 * @since 2.2
+	 */
+	public byte[] toWavByteArray(WavEncoding encoding) {
+		if (encoding == this.encoding) {
+			return wav.clone();
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(getWavLength(encoding));
+		writeWav(buffer, encoding);
+		return buffer.array();
+	}
+
+	/**
+	 * Writes this CAPTCHA's audio as a complete {@link WavEncoding#PCM_16} WAV
+	 * file to {@code out}. The stream is not closed. Audio is rendered and written
+	 * in fixed-size chunks, so memory use does not depend on the length of the
+	 * audio.
+	 *
+	 * @param out an {@link OutputStream}
+	 * @throws IOException if an I/O error occurs
+	 * @since 2.2
+	 */
+	public void writeWav(OutputStream out) throws IOException {
+		writeWav(out, WavEncoding.PCM_16);
+		return;
+	}
+
+	/**
+	 * Writes this CAPTCHA's audio as a complete WAV file in {@code encoding} to
+	 * {@code out}. The stream is not closed.
+	 *
+	 * @param out      an {@link OutputStream}
+	 * @param encoding a {@link WavEncoding}
+	 * @throws IOException if an I/O error occurs
+	 * @since 2.2
+	 */
+	public void writeWav(OutputStream out, WavEncoding encoding) throws IOException {
+		if (encoding == this.encoding) {
+			out.write(wav);
+			return;
+		}
+		out.write(encoding.header(audio.getFormat(), (int) audio.getSampleCount()));
+		writeData(encoding, out::write);
+		return;
+	}
+
+	/**
+	 * Writes this CAPTCHA's audio as a complete {@link WavEncoding#PCM_16} WAV
+	 * file to {@code channel}. The channel is not closed. Audio is rendered and
+	 * written in fixed-size chunks, so memory use does not depend on the length of
+	 * the audio.
+	 *
+	 * @param channel a {@link WritableByteChannel}
+	 * @throws IOException if an I/O error occurs
+	 * @since 2.2
+	 */
+	public void writeWav(WritableByteChannel channel) throws IOException {
+		writeWav(channel, WavEncoding.PCM_16);
+		return;
+	}
+
+	/**
+	 * Writes this CAPTCHA's audio as a complete WAV file in {@code encoding} to
+	 * {@code channel}. The channel is not closed.
+	 *
+	 * @param channel  a {@link WritableByteChannel}
+	 * @param encoding a {@link WavEncoding}
+	 * @throws IOException if an I/O error occurs
+	 * @since 2.2
+	 */
+	public void writeWav(WritableByteChannel channel, WavEncoding encoding) throws IOException {
+		if (encoding == this.encoding) {
+			writeFully(channel, ByteBuffer.wrap(wav));
+			return;
+		}
+		writeFully(channel, ByteBuffer.wrap(encoding.header(audio.getFormat(), (int) audio.getSampleCount())));
+		writeData(encoding, (chunk, offset, length) -> writeFully(channel, ByteBuffer.wrap(chunk, offset, length)));
+		return;
+	}
+
+	/**
+	 * Writes this CAPTCHA's audio as a complete {@link WavEncoding#PCM_16} WAV
+	 * file into {@code buffer}, starting at its current position. On return, the
+	 * buffer's position has been advanced by {@link #getWavLength()}.
+	 *
+	 * @param buffer a {@link ByteBuffer}
+	 * @throws BufferOverflowException if {@code buffer} has fewer than
+	 *                                 {@link #getWavLength()} bytes remaining, in
+	 *                                 which case nothing is written
+	 * @throws java.nio.ReadOnlyBufferException if {@code buffer} is read-only
+	 * @since 2.2
+	 */
+	public void writeWav(ByteBuffer buffer) {
+		writeWav(buffer, WavEncoding.PCM_16);
+		return;
+	}
+
+	/**
+	 * Writes this CAPTCHA's audio as a complete WAV file in {@code encoding} into
+	 * {@code buffer}, starting at its current position. On return, the buffer's
+	 * position has been advanced by {@link #getWavLength(WavEncoding)}.
+	 *
+	 * @param buffer   a {@link ByteBuffer}
+	 * @param encoding a {@link WavEncoding}
+	 * @throws BufferOverflowException if {@code buffer} has fewer than
+	 *                                 {@link #getWavLength(WavEncoding)} bytes
+	 *                                 remaining, in which case nothing is written
+	 * @throws java.nio.ReadOnlyBufferException if {@code buffer} is read-only
+	 * @since 2.2
+	 */
+	public void writeWav(ByteBuffer buffer, WavEncoding encoding) {
+		if (buffer.remaining() < getWavLength(encoding)) {
+			throw new BufferOverflowException();
+		}
+		if (encoding == this.encoding) {
+			buffer.put(wav);
+			return;
+		}
+		buffer.put(encoding.header(audio.getFormat(), (int) audio.getSampleCount()));
+		try {
+			writeData(encoding, buffer::put);
+		} catch (IOException e) {
+			// ByteBuffer.put() doesn't throw IOException
+			throw new AssertionError(e);
+		}
+		return;
+	}
+
+	/**
+	 * Renders this CAPTCHA's audio and encodes it in {@code encoding}, passing it
+	 * to {@code sink} in chunks of about {@link #CHUNK_SAMPLES} samples (rounded
+	 * to whole blocks of {@code encoding}), followed by a pad byte if the encoded
+	 * audio is of odd length. The chunk buffers are reused, so {@code sink} must
+	 * not retain them.
+	 *
+	 * @param encoding a {@link WavEncoding}
+	 * @param sink     destination for chunks
+	 * @throws IOException if {@code sink} throws {@link IOException}
+	 */
+	private void writeData(WavEncoding encoding, ChunkSink sink) throws IOException {
+		int blockSamples = encoding.samplesPerBlock();
+		int chunkSamples = Math.max(1, CHUNK_SAMPLES / blockSamples) * blockSamples;
+		short[] samples = new short[chunkSamples];
+		byte[] chunk = new byte[encoding.dataLength(chunkSamples)];
+		WavEncoding.Encoder encoder = encoding.newEncoder();
+		int sampleCount = (int) audio.getSampleCount();
+		for (int start = 0; start < sampleCount; start += chunkSamples) {
+			int count = Math.min(chunkSamples, sampleCount - start);
+			audio.read(start, samples, 0, count);
+			sink.write(chunk, 0, encoder.encode(samples, 0, count, chunk, 0));
+		}
+		if (Wav.padLength(encoding.dataLength(sampleCount)) > 0) {
+			chunk[0] = 0;
+			sink.write(chunk, 0, 1);
+		}
+		return;
+	}
+
+	/**
+	 * Writes all remaining bytes in {@code buffer} to {@code channel}.
+	 *
+	 * @param channel a {@link WritableByteChannel}
+	 * @param buffer  a {@link ByteBuffer}
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		return;
+	}
+
+	/**
+	 * Destination for chunks of encoded audio.
+	 */
+	@FunctionalInterface
+	private interface ChunkSink {
+		/**
+		 * Writes {@code length} bytes from {@code chunk}, starting at {@code offset}.
+		 *
+		 * @param chunk  source array
+		 * @param offset offset in {@code chunk}
+		 * @param length number of bytes
+		 * @throws IOException if an I/O error occurs
+		 */
+		void write(byte[] chunk, int offset, int length) throws IOException;
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder(35);
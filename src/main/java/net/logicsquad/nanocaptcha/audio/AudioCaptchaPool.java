@@ -0,0 +1,527 @@
+package net.logicsquad.nanocaptcha.audio;
+
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Thread-safe pool of ready-made {@link AudioCaptcha}s, each already rendered
+ * and encoded as a WAV file (see {@link Builder#encoding(WavEncoding)}).
+ * Generating audio is expensive compared to serving it, so the pool moves that
+ * work off the request path: {@link #take()} returns a pooled CAPTCHA if there
+ * is one, and only generates one synchronously if the pool is empty.
+ * </p>
+ *
+ * <p>
+ * Whenever a {@link #take()} leaves the pool at or below its low watermark,
+ * refill workers are started on the pool's {@link Executor}, and generate
+ * CAPTCHAs until the pool is back up to its capacity (the high watermark).
+ * </p>
+ *
+ * <pre>
+ * AudioCaptchaPool pool = new AudioCaptchaPool.Builder()
+ *         .supplier(() -&gt; new AudioCaptcha.Builder().addContent().addVoice().addNoise().build())
+ *         .encoding(WavEncoding.IMA_ADPCM)
+ *         .capacity(100)
+ *         .lowWatermark(25)
+ *         .build();
+ * AudioCaptcha captcha = pool.take();
+ * captcha.writeWav(out, WavEncoding.IMA_ADPCM);
+ * </pre>
+ *
+ * <p>
+ * A pool should be {@link #close() closed} when no longer required: this stops
+ * refills and, if the pool created its own {@link Executor}, shuts it down.
+ * </p>
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public final class AudioCaptchaPool implements AutoCloseable {
+	/**
+	 * Logger
+	 */
+	private static final Logger LOG = LoggerFactory.getLogger(AudioCaptchaPool.class);
+
+	/**
+	 * Pooled CAPTCHAs
+	 */
+	private final BlockingQueue<AudioCaptcha> queue;
+
+	/**
+	 * Number of CAPTCHAs pooled or being generated by refill workers
+	 */
+	private final AtomicInteger stock = new AtomicInteger();
+
+	/**
+	 * Number of refill workers running
+	 */
+	private final AtomicInteger activeWorkers = new AtomicInteger();
+
+	/**
+	 * Source of new CAPTCHAs
+	 */
+	private final Supplier<AudioCaptcha> supplier;
+
+	/**
+	 * Encoding for pooled CAPTCHAs
+	 */
+	private final WavEncoding encoding;
+
+	/**
+	 * Maximum number of pooled CAPTCHAs (high watermark)
+	 */
+	private final int capacity;
+
+	/**
+	 * Pool size at or below which refill starts
+	 */
+	private final int lowWatermark;
+
+	/**
+	 * Maximum number of concurrent refill workers
+	 */
+	private final int workers;
+
+	/**
+	 * Executor for refill workers
+	 */
+	private final Executor executor;
+
+	/**
+	 * Has this pool created {@link #executor}?
+	 */
+	private final boolean ownsExecutor;
+
+	/**
+	 * Number of {@link #take()} calls served from the pool
+	 */
+	private final LongAdder hits = new LongAdder();
+
+	/**
+	 * Number of {@link #take()} calls that found the pool empty
+	 */
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Number of CAPTCHAs generated by refill workers
+	 */
+	private final LongAdder refills = new LongAdder();
+
+	/**
+	 * Total time spent generating CAPTCHAs in refill workers
+	 */
+	private final LongAdder refillNanos = new LongAdder();
+
+	/**
+	 * Number of failed attempts to generate a CAPTCHA in refill workers
+	 */
+	private final LongAdder refillFailures = new LongAdder();
+
+	/**
+	 * Has this pool been closed?
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * Constructor
+	 *
+	 * @param builder a {@link Builder} object
+	 */
+	private AudioCaptchaPool(Builder builder) {
+		supplier = builder.supplier;
+		encoding = builder.encoding;
+		capacity = builder.capacity;
+		lowWatermark = builder.lowWatermark < 0 ? capacity / 4 : builder.lowWatermark;
+		workers = builder.workers;
+		if (builder.executor == null) {
+			executor = Executors.newFixedThreadPool(workers, runnable -> {
+				Thread thread = new Thread(runnable, "AudioCaptchaPool-refill");
+				thread.setDaemon(true);
+				return thread;
+			});
+			ownsExecutor = true;
+		} else {
+			executor = builder.executor;
+			ownsExecutor = false;
+		}
+		queue = new ArrayBlockingQueue<>(capacity);
+		return;
+	}
+
+	/**
+	 * Builder for {@link AudioCaptchaPool}.
+	 */
+	public static class Builder implements net.logicsquad.nanocaptcha.Builder<AudioCaptchaPool> {
+		/**
+		 * Default capacity
+		 */
+		private static final int DEFAULT_CAPACITY = 64;
+
+		/**
+		 * Source of new CAPTCHAs
+		 */
+		private Supplier<AudioCaptcha> supplier = AudioCaptcha::create;
+
+		/**
+		 * Encoding for pooled CAPTCHAs
+		 */
+		private WavEncoding encoding = WavEncoding.PCM_16;
+
+		/**
+		 * Maximum number of pooled CAPTCHAs
+		 */
+		private int capacity = DEFAULT_CAPACITY;
+
+		/**
+		 * Pool size at or below which refill starts ({@code -1} for a quarter of
+		 * {@link #capacity})
+		 */
+		private int lowWatermark = -1;
+
+		/**
+		 * Maximum number of concurrent refill workers
+		 */
+		private int workers = 1;
+
+		/**
+		 * Executor for refill workers ({@code null} for a pool-owned executor)
+		 */
+		private Executor executor;
+
+		/**
+		 * Constructor
+		 */
+		public Builder() {
+			return;
+		}
+
+		/**
+		 * Sets the source of new CAPTCHAs (default: {@link AudioCaptcha#create()}).
+		 * {@code supplier} will be called concurrently if there is more than one
+		 * refill worker, or if {@link AudioCaptchaPool#take()} finds the pool empty.
+		 *
+		 * @param supplier source of new CAPTCHAs
+		 * @return this
+		 */
+		public Builder supplier(Supplier<AudioCaptcha> supplier) {
+			this.supplier = Objects.requireNonNull(supplier);
+			return this;
+		}
+
+		/**
+		 * Sets the encoding in which pooled CAPTCHAs are pre-encoded (default:
+		 * {@link WavEncoding#PCM_16}).
+		 *
+		 * @param encoding a {@link WavEncoding}
+		 * @return this
+		 */
+		public Builder encoding(WavEncoding encoding) {
+			this.encoding = Objects.requireNonNull(encoding);
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of pooled CAPTCHAs, which is also the level to
+		 * which refill workers fill the pool (default: 64).
+		 *
+		 * @param capacity maximum number of pooled CAPTCHAs
+		 * @return this
+		 * @throws IllegalArgumentException if {@code capacity} is not positive
+		 */
+		public Builder capacity(int capacity) {
+			if (capacity <= 0) {
+				throw new IllegalArgumentException("Capacity must be positive.");
+			}
+			this.capacity = capacity;
+			return this;
+		}
+
+		/**
+		 * Sets the pool size at or below which refill workers are started (default:
+		 * a quarter of the capacity).
+		 *
+		 * @param lowWatermark low watermark
+		 * @return this
+		 * @throws IllegalArgumentException if {@code lowWatermark} is negative
+		 */
+		public Builder lowWatermark(int lowWatermark) {
+			if (lowWatermark < 0) {
+				throw new IllegalArgumentException("Low watermark must not be negative.");
+			}
+			this.lowWatermark = lowWatermark;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of concurrent refill workers (default: 1).
+		 *
+		 * @param workers maximum number of refill workers
+		 * @return this
+		 * @throws IllegalArgumentException if {@code workers} is not positive
+		 */
+		public Builder workers(int workers) {
+			if (workers <= 0) {
+				throw new IllegalArgumentException("Workers must be positive.");
+			}
+			this.workers = workers;
+			return this;
+		}
+
+		/**
+		 * Sets the {@link Executor} on which refill workers run. The pool does not
+		 * shut down an {@link Executor} set here. If none is set, the pool creates
+		 * its own, with a daemon thread per worker, and shuts it down on
+		 * {@link AudioCaptchaPool#close()}.
+		 *
+		 * @param executor an {@link Executor}
+		 * @return this
+		 */
+		public Builder executor(Executor executor) {
+			this.executor = Objects.requireNonNull(executor);
+			return this;
+		}
+
+		/**
+		 * Builds a new {@link AudioCaptchaPool}, and starts filling it in the
+		 * background.
+		 *
+		 * @return new {@link AudioCaptchaPool}
+		 * @throws IllegalArgumentException if the low watermark is not less than the
+		 *                                  capacity
+		 */
+		@Override
+		public AudioCaptchaPool build() {
+			if (lowWatermark >= capacity) {
+				throw new IllegalArgumentException("Low watermark must be less than capacity.");
+			}
+			AudioCaptchaPool pool = new AudioCaptchaPool(this);
+			pool.refill();
+			return pool;
+		}
+	}
+
+	/**
+	 * Returns a pre-encoded {@link AudioCaptcha} from the pool, or, if the pool is
+	 * empty, generates one synchronously. The result has its audio encoded in this
+	 * pool's {@link WavEncoding}.
+	 *
+	 * @return pre-encoded {@link AudioCaptcha}
+	 * @throws IllegalStateException if this pool has been closed
+	 */
+	public AudioCaptcha take() {
+		if (closed) {
+			throw new IllegalStateException("Pool has been closed.");
+		}
+		AudioCaptcha captcha = queue.poll();
+		if (captcha != null) {
+			stock.decrementAndGet();
+			hits.increment();
+		} else {
+			misses.increment();
+		}
+		refill();
+		return captcha != null ? captcha : generate();
+	}
+
+	/**
+	 * Starts refill workers (up to the configured maximum) if the pool is at or
+	 * below its low watermark.
+	 */
+	private void refill() {
+		if (closed || stock.get() > lowWatermark) {
+			return;
+		}
+		for (int i = 0; i < workers; i++) {
+			if (activeWorkers.getAndIncrement() >= workers) {
+				activeWorkers.decrementAndGet();
+				return;
+			}
+			try {
+				executor.execute(this::fill);
+			} catch (RejectedExecutionException e) {
+				activeWorkers.decrementAndGet();
+				LOG.warn("Unable to start refill worker.", e);
+				return;
+			}
+		}
+		return;
+	}
+
+	/**
+	 * Refill worker: generates CAPTCHAs until the pool is full. Stops early if the
+	 * pool is closed, or if generation fails.
+	 */
+	private void fill() {
+		try {
+			while (!closed && reserve()) {
+				AudioCaptcha captcha;
+				try {
+					long start = System.nanoTime();
+					captcha = generate();
+					refillNanos.add(System.nanoTime() - start);
+				} catch (RuntimeException e) {
+					stock.decrementAndGet();
+					refillFailures.increment();
+					LOG.error("Unable to generate AudioCaptcha.", e);
+					return;
+				}
+				refills.increment();
+				if (closed) {
+					return;
+				}
+				queue.add(captcha);
+			}
+		} finally {
+			activeWorkers.decrementAndGet();
+		}
+		return;
+	}
+
+	/**
+	 * Reserves a place in the pool for a CAPTCHA about to be generated.
+	 *
+	 * @return {@code true} if a place was reserved, or {@code false} if the pool
+	 *         is full
+	 */
+	private boolean reserve() {
+		int current;
+		do {
+			current = stock.get();
+			if (current >= capacity) {
+				return false;
+			}
+		} while (!stock.compareAndSet(current, current + 1));
+		return true;
+	}
+
+	/**
+	 * Returns a new pre-encoded {@link AudioCaptcha}.
+	 *
+	 * @return pre-encoded {@link AudioCaptcha}
+	 */
+	private AudioCaptcha generate() {
+		return supplier.get().preEncode(encoding);
+	}
+
+	/**
+	 * Returns the {@link WavEncoding} of pooled CAPTCHAs.
+	 *
+	 * @return {@link WavEncoding}
+	 */
+	public WavEncoding getEncoding() {
+		return encoding;
+	}
+
+	/**
+	 * Returns the maximum number of pooled CAPTCHAs (high watermark).
+	 *
+	 * @return capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the pool size at or below which refill workers are started.
+	 *
+	 * @return low watermark
+	 */
+	public int getLowWatermark() {
+		return lowWatermark;
+	}
+
+	/**
+	 * Returns the number of CAPTCHAs currently pooled.
+	 *
+	 * @return pool depth
+	 */
+	public int getDepth() {
+		return queue.size();
+	}
+
+	/**
+	 * Returns the number of {@link #take()} calls served from the pool.
+	 *
+	 * @return hit count
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of {@link #take()} calls that found the pool empty, and
+	 * generated a CAPTCHA synchronously.
+	 *
+	 * @return miss count
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of CAPTCHAs generated by refill workers. Sampled
+	 * periodically, this gives the refill rate.
+	 *
+	 * @return refill count
+	 */
+	public long getRefillCount() {
+		return refills.sum();
+	}
+
+	/**
+	 * Returns the total time in nanoseconds spent generating CAPTCHAs in refill
+	 * workers. Divided by {@link #getRefillCount()}, this gives the mean
+	 * generation time.
+	 *
+	 * @return total refill time in nanoseconds
+	 */
+	public long getRefillNanos() {
+		return refillNanos.sum();
+	}
+
+	/**
+	 * Returns the number of failed attempts to generate a CAPTCHA in refill
+	 * workers.
+	 *
+	 * @return refill failure count
+	 */
+	public long getRefillFailureCount() {
+		return refillFailures.sum();
+	}
+
+	/**
+	 * Closes this pool: stops refill workers, discards pooled CAPTCHAs, and, if
+	 * the pool created its own {@link Executor}, shuts it down. Workers already
+	 * generating a CAPTCHA finish it, but it is discarded.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		if (ownsExecutor) {
+			((ExecutorService) executor).shutdown();
+		}
+		queue.clear();
+		return;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(96);
+		sb.append("[AudioCaptchaPool: depth=").append(getDepth()).append(" capacity=").append(capacity)
+				.append(" lowWatermark=").append(lowWatermark).append(" hits=").append(getHitCount())
+				.append(" misses=").append(getMissCount()).append(" refills=").append(getRefillCount()).append(']');
+		return sb.toString();
+	}
+}
@@ -0,0 +1,106 @@
+package net.logicsquad.nanocaptcha.audio;
+
+import java.util.Objects;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * <p>
+ * Output profiles for {@link AudioCaptcha}, set with
+ * {@link AudioCaptcha.Builder#profile(AudioProfile)}. Each profile fixes the
+ * sample rate of the generated audio:
+ * </p>
+ *
+ * <ul>
+ * <li>{@link #STANDARD}: 16 kHz, the rate of the built-in voice and noise
+ * resources (the default);</li>
+ * <li>{@link #LOW_BANDWIDTH}: 11.025 kHz; and</li>
+ * <li>{@link #TELEPHONY}: 8 kHz, as for telephony and IVR systems.</li>
+ * </ul>
+ *
+ * <p>
+ * A lower rate reduces both the size of the output and the work done in mixing
+ * it. The built-in producers resample each voice and noise resource once, when
+ * it is first loaded into the {@link SampleCache}, rather than per CAPTCHA.
+ * </p>
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public enum AudioProfile {
+	/**
+	 * 16 kHz (no resampling)
+	 */
+	STANDARD(16_000),
+
+	/**
+	 * 11.025 kHz
+	 */
+	LOW_BANDWIDTH(11_025),
+
+	/**
+	 * 8 kHz
+	 */
+	TELEPHONY(8_000);
+
+	/**
+	 * Audio format
+	 */
+	private final AudioFormat format;
+
+	/**
+	 * Resampler from {@link Sample#SC_AUDIO_FORMAT}, or {@code null} if no
+	 * resampling is required
+	 */
+	private final Resampler resampler;
+
+	/**
+	 * Constructor
+	 *
+	 * @param sampleRate sample rate in Hz
+	 */
+	AudioProfile(int sampleRate) {
+		int sourceRate = (int) Sample.SC_AUDIO_FORMAT.getSampleRate();
+		this.format = new AudioFormat(sampleRate, 16, 1, true, false);
+		this.resampler = sampleRate == sourceRate ? null : new Resampler(sourceRate, sampleRate);
+		return;
+	}
+
+	/**
+	 * Returns the {@link AudioFormat} of audio in this profile.
+	 *
+	 * @return {@link AudioFormat}
+	 */
+	public AudioFormat getFormat() {
+		return format;
+	}
+
+	/**
+	 * Returns {@code sample} (which must be in {@link Sample#SC_AUDIO_FORMAT})
+	 * resampled for this profile. For {@link #STANDARD}, returns {@code sample}
+	 * unchanged. Otherwise, this method does the full conversion on each call, so
+	 * should be used at load time, with the result cached (as
+	 * {@link SampleCache#get(String, AudioProfile)} does).
+	 *
+	 * @param sample a {@link Sample}
+	 * @return resampled {@link Sample}
+	 * @throws NullPointerException     if {@code sample} is {@code null}
+	 * @throws IllegalArgumentException if {@code sample} is not in
+	 *                                  {@link Sample#SC_AUDIO_FORMAT}
+	 */
+	public Sample resample(Sample sample) {
+		Objects.requireNonNull(sample);
+		if (!sample.getFormat().matches(Sample.SC_AUDIO_FORMAT)) {
+			throw new IllegalArgumentException("Unsupported audio format.");
+		}
+		if (resampler == null) {
+			return sample;
+		}
+		// Read into a temporary array, so that a mapped or lazily rendered source
+		// doesn't retain a full copy of itself after this one use
+		short[] source = new short[(int) sample.getSampleCount()];
+		sample.read(0, source, 0, source.length);
+		short[] resampled = resampler.resample(source, 0, source.length);
+		return Sample.wrap(resampled, format, Sample.peak(resampled));
+	}
+}
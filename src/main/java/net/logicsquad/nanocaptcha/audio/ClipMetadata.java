@@ -0,0 +1,146 @@
+package net.logicsquad.nanocaptcha.audio;
+
+/**
+ * Loudness measurements for a {@link Sample}: where its audible region lies,
+ * and the peak and RMS levels of its samples. For a {@link Sample} prepared by
+ * a {@link LoudnessNormalizer}, these describe the prepared audio, and also
+ * record the silence trimmed from the source and the gain applied to it.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ * @see Sample#getMetadata()
+ */
+public final class ClipMetadata {
+	/**
+	 * Magnitude of a full-scale 16-bit sample
+	 */
+	private static final double FULL_SCALE = 32_768.0;
+
+	/**
+	 * Index of the first sample of the audible region (in the source, for a
+	 * prepared {@link Sample})
+	 */
+	private final int trimStart;
+
+	/**
+	 * Number of samples in the audible region
+	 */
+	private final int length;
+
+	/**
+	 * Largest sample magnitude
+	 */
+	private final int peak;
+
+	/**
+	 * Root mean square of the audible region
+	 */
+	private final double rms;
+
+	/**
+	 * Gain applied to the source
+	 */
+	private final double gain;
+
+	/**
+	 * Constructor
+	 *
+	 * @param trimStart index of the first sample of the audible region
+	 * @param length    number of samples in the audible region
+	 * @param peak      largest sample magnitude
+	 * @param rms       root mean square of the audible region
+	 * @param gain      gain applied to the source
+	 */
+	ClipMetadata(int trimStart, int length, int peak, double rms, double gain) {
+		this.trimStart = trimStart;
+		this.length = length;
+		this.peak = peak;
+		this.rms = rms;
+		this.gain = gain;
+		return;
+	}
+
+	/**
+	 * Returns the index of the first sample of the audible region. For a prepared
+	 * {@link Sample}, this is the number of samples of leading silence trimmed
+	 * from the source.
+	 *
+	 * @return start of audible region
+	 */
+	public int getTrimStart() {
+		return trimStart;
+	}
+
+	/**
+	 * Returns the number of samples in the audible region.
+	 *
+	 * @return length of audible region
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Returns the largest sample magnitude (between {@code 0} and {@code 32768}).
+	 *
+	 * @return peak
+	 */
+	public int getPeak() {
+		return peak;
+	}
+
+	/**
+	 * Returns the peak level in dBFS.
+	 *
+	 * @return peak level
+	 */
+	public double getPeakDbfs() {
+		return dbfs(peak);
+	}
+
+	/**
+	 * Returns the root mean square of the samples in the audible region.
+	 *
+	 * @return RMS
+	 */
+	public double getRms() {
+		return rms;
+	}
+
+	/**
+	 * Returns the RMS level of the audible region in dBFS.
+	 *
+	 * @return RMS level
+	 */
+	public double getRmsDbfs() {
+		return dbfs(rms);
+	}
+
+	/**
+	 * Returns the gain applied to the source: {@code 1.0} for a {@link Sample}
+	 * that has not been prepared by a {@link LoudnessNormalizer}.
+	 *
+	 * @return gain
+	 */
+	public double getGain() {
+		return gain;
+	}
+
+	/**
+	 * Returns {@code amplitude} in dBFS.
+	 *
+	 * @param amplitude sample magnitude
+	 * @return level in dBFS
+	 */
+	private static double dbfs(double amplitude) {
+		return 20 * Math.log10(amplitude / FULL_SCALE);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(80);
+		sb.append("[ClipMetadata: trimStart=").append(trimStart).append(" length=").append(length).append(" peak=")
+				.append(peak).append(" rms=").append(rms).append(" gain=").append(gain).append(']');
+		return sb.toString();
+	}
+}
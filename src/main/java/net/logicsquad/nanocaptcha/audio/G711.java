@@ -0,0 +1,119 @@
+package net.logicsquad.nanocaptcha.audio;
+
+/**
+ * Table-driven G.711 µ-law and A-law encoders for 16-bit linear PCM. Each
+ * sample is encoded with a single lookup of its segment number, and no
+ * per-sample branching beyond sign handling and clipping.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+final class G711 {
+	/**
+	 * Bias added to magnitudes before µ-law encoding
+	 */
+	private static final int ULAW_BIAS = 0x84;
+
+	/**
+	 * Largest magnitude encodable without overflow after biasing
+	 */
+	private static final int CLIP = 32_635;
+
+	/**
+	 * µ-law segment number, indexed by bits 7 to 14 of the biased magnitude
+	 */
+	private static final byte[] ULAW_SEGMENT = new byte[256];
+
+	/**
+	 * A-law segment number, indexed by bits 8 to 14 of the magnitude
+	 */
+	private static final byte[] ALAW_SEGMENT = new byte[128];
+
+	static {
+		for (int i = 1; i < ULAW_SEGMENT.length; i++) {
+			ULAW_SEGMENT[i] = (byte) (31 - Integer.numberOfLeadingZeros(i));
+		}
+		for (int i = 1; i < ALAW_SEGMENT.length; i++) {
+			ALAW_SEGMENT[i] = (byte) (32 - Integer.numberOfLeadingZeros(i));
+		}
+	}
+
+	/**
+	 * Private constructor for non-instantiability.
+	 */
+	private G711() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Encodes {@code count} samples from {@code src}, starting at
+	 * {@code srcOffset}, as µ-law into {@code dst} at {@code dstOffset}.
+	 *
+	 * @param src       source samples
+	 * @param srcOffset offset in {@code src}
+	 * @param count     number of samples
+	 * @param dst       destination array
+	 * @param dstOffset offset in {@code dst}
+	 * @return number of bytes written
+	 */
+	static int encodeUlaw(short[] src, int srcOffset, int count, byte[] dst, int dstOffset) {
+		for (int i = 0; i < count; i++) {
+			dst[dstOffset + i] = ulaw(src[srcOffset + i]);
+		}
+		return count;
+	}
+
+	/**
+	 * Encodes {@code count} samples from {@code src}, starting at
+	 * {@code srcOffset}, as A-law into {@code dst} at {@code dstOffset}.
+	 *
+	 * @param src       source samples
+	 * @param srcOffset offset in {@code src}
+	 * @param count     number of samples
+	 * @param dst       destination array
+	 * @param dstOffset offset in {@code dst}
+	 * @return number of bytes written
+	 */
+	static int encodeAlaw(short[] src, int srcOffset, int count, byte[] dst, int dstOffset) {
+		for (int i = 0; i < count; i++) {
+			dst[dstOffset + i] = alaw(src[srcOffset + i]);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns {@code sample} encoded as µ-law.
+	 *
+	 * @param sample 16-bit linear sample
+	 * @return µ-law byte
+	 */
+	static byte ulaw(short sample) {
+		int s = sample;
+		int sign = (s >> 8) & 0x80;
+		if (sign != 0) {
+			s = -s;
+		}
+		s = Math.min(s, CLIP) + ULAW_BIAS;
+		int segment = ULAW_SEGMENT[(s >> 7) & 0xff];
+		int mantissa = (s >> (segment + 3)) & 0x0f;
+		return (byte) ~(sign | (segment << 4) | mantissa);
+	}
+
+	/**
+	 * Returns {@code sample} encoded as A-law.
+	 *
+	 * @param sample 16-bit linear sample
+	 * @return A-law byte
+	 */
+	static byte alaw(short sample) {
+		int s = sample;
+		int sign = (~s >> 8) & 0x80;
+		if (sign == 0) {
+			s = -s - 1;
+		}
+		s = Math.min(s, CLIP);
+		int segment = ALAW_SEGMENT[(s >> 8) & 0x7f];
+		int a = segment == 0 ? s >> 4 : (segment << 4) | ((s >> (segment + 3)) & 0x0f);
+		return (byte) (a ^ sign ^ 0x55);
+	}
+}
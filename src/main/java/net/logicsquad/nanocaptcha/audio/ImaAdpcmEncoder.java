@@ -0,0 +1,149 @@
+package net.logicsquad.nanocaptcha.audio;
+
+/**
+ * <p>
+ * A table-driven IMA-ADPCM encoder producing mono WAV blocks (format tag
+ * {@code 0x0011}) of {@link #BLOCK_ALIGN} bytes, each holding
+ * {@link #SAMPLES_PER_BLOCK} samples at 4 bits per sample.
+ * </p>
+ *
+ * <p>
+ * Each block starts with a 4-byte header: the first sample verbatim (which
+ * seeds the predictor) and the current step index. The step index carries over
+ * from block to block, so an instance holds state and should be used for a
+ * single stream. A final partial block is padded by repeating the last sample.
+ * </p>
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+final class ImaAdpcmEncoder {
+	/**
+	 * Block size in bytes
+	 */
+	static final int BLOCK_ALIGN = 256;
+
+	/**
+	 * Samples per block: one in the header, and two per remaining byte
+	 */
+	static final int SAMPLES_PER_BLOCK = 1 + (BLOCK_ALIGN - 4) * 2;
+
+	/**
+	 * Quantizer step sizes
+	 */
+	private static final short[] STEP = { 7, 8, 9, 10, 11, 12, 13, 14, 16, 17, 19, 21, 23, 25, 28, 31, 34, 37, 41, 45, 50,
+			55, 60, 66, 73, 80, 88, 97, 107, 118, 130, 143, 157, 173, 190, 209, 230, 253, 279, 307, 337, 371, 408, 449, 494,
+			544, 598, 658, 724, 796, 876, 963, 1060, 1166, 1282, 1411, 1552, 1707, 1878, 2066, 2272, 2499, 2749, 3024, 3327,
+			3660, 4026, 4428, 4871, 5358, 5894, 6484, 7132, 7845, 8630, 9493, 10442, 11487, 12635, 13899, 15289, 16818,
+			18500, 20350, 22385, 24623, 27086, 29794, 32767 };
+
+	/**
+	 * Step index adjustment, indexed by 4-bit code
+	 */
+	private static final byte[] INDEX_ADJUST = { -1, -1, -1, -1, 2, 4, 6, 8, -1, -1, -1, -1, 2, 4, 6, 8 };
+
+	/**
+	 * Current step index
+	 */
+	private int index;
+
+	/**
+	 * Current predicted sample
+	 */
+	private int predictor;
+
+	/**
+	 * Returns the number of bytes needed to encode {@code sampleCount} samples.
+	 *
+	 * @param sampleCount number of samples
+	 * @return encoded length in bytes
+	 */
+	static int encodedLength(int sampleCount) {
+		return (sampleCount + SAMPLES_PER_BLOCK - 1) / SAMPLES_PER_BLOCK * BLOCK_ALIGN;
+	}
+
+	/**
+	 * Encodes {@code count} samples from {@code src}, starting at
+	 * {@code srcOffset}, into {@code dst} at {@code dstOffset}. Unless this is the
+	 * final call for the stream, {@code count} must be a multiple of
+	 * {@link #SAMPLES_PER_BLOCK}.
+	 *
+	 * @param src       source samples
+	 * @param srcOffset offset in {@code src}
+	 * @param count     number of samples
+	 * @param dst       destination array, with room for
+	 *                  {@link #encodedLength(int) encodedLength(count)} bytes
+	 * @param dstOffset offset in {@code dst}
+	 * @return number of bytes written
+	 */
+	int encode(short[] src, int srcOffset, int count, byte[] dst, int dstOffset) {
+		int k = dstOffset;
+		for (int block = 0; block < count; block += SAMPLES_PER_BLOCK) {
+			k = encodeBlock(src, srcOffset + block, Math.min(SAMPLES_PER_BLOCK, count - block), dst, k);
+		}
+		return k - dstOffset;
+	}
+
+	/**
+	 * Encodes a single block of {@code count} samples (at most
+	 * {@link #SAMPLES_PER_BLOCK}) from {@code src}, starting at {@code srcOffset},
+	 * into {@code dst} at {@code k}.
+	 *
+	 * @param src       source samples
+	 * @param srcOffset offset in {@code src}
+	 * @param count     number of samples
+	 * @param dst       destination array
+	 * @param k         offset in {@code dst}
+	 * @return offset following written bytes
+	 */
+	private int encodeBlock(short[] src, int srcOffset, int count, byte[] dst, int k) {
+		short first = src[srcOffset];
+		predictor = first;
+		dst[k++] = (byte) first;
+		dst[k++] = (byte) (first >> 8);
+		dst[k++] = (byte) index;
+		dst[k++] = 0;
+		short last = src[srcOffset + count - 1];
+		for (int i = 1; i < SAMPLES_PER_BLOCK; i += 2) {
+			int low = nibble(i < count ? src[srcOffset + i] : last);
+			int high = nibble(i + 1 < count ? src[srcOffset + i + 1] : last);
+			dst[k++] = (byte) (low | (high << 4));
+		}
+		return k;
+	}
+
+	/**
+	 * Returns the 4-bit code for {@code sample}, updating the predictor and step
+	 * index.
+	 *
+	 * @param sample 16-bit linear sample
+	 * @return 4-bit code
+	 */
+	private int nibble(int sample) {
+		int step = STEP[index];
+		int diff = sample - predictor;
+		int code = diff < 0 ? 8 : 0;
+		diff = Math.abs(diff);
+		int delta = step >> 3;
+		if (diff >= step) {
+			code |= 4;
+			diff -= step;
+			delta += step;
+		}
+		step >>= 1;
+		if (diff >= step) {
+			code |= 2;
+			diff -= step;
+			delta += step;
+		}
+		step >>= 1;
+		if (diff >= step) {
+			code |= 1;
+			delta += step;
+		}
+		predictor += (code & 8) != 0 ? -delta : delta;
+		predictor = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, predictor));
+		index = Math.max(0, Math.min(STEP.length - 1, index + INDEX_ADJUST[code]));
+		return code;
+	}
+}
@@ -0,0 +1,165 @@
+package net.logicsquad.nanocaptcha.audio;
+
+import java.util.Objects;
+
+/**
+ * <p>
+ * Prepares {@link Sample}s for mixing by trimming leading and trailing silence
+ * (as {@link Sample#trimSilence()}) and scaling what remains to a target RMS
+ * level, without letting its peak exceed a ceiling: the gain applied is the
+ * smaller of that which reaches the target level and that which reaches the
+ * ceiling. Assets recorded at different levels then sound equally loud.
+ * </p>
+ *
+ * <p>
+ * Preparation is meant to be done once, at load (see
+ * {@link SampleCache#get(String, AudioProfile, LoudnessNormalizer)}). A
+ * prepared {@link Sample} carries its {@link ClipMetadata}, including its peak:
+ * since {@link #VOICE} and {@link #NOISE} ceilings leave headroom for each
+ * other, mixing a prepared voice with prepared noise is a fixed multiply-add,
+ * with no clipping checks.
+ * </p>
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public final class LoudnessNormalizer {
+	/**
+	 * For vocalizations: -18 dBFS RMS, peaking at no more than -6 dBFS
+	 */
+	public static final LoudnessNormalizer VOICE = new LoudnessNormalizer(-18.0, -6.0);
+
+	/**
+	 * For background noise: -28 dBFS RMS, peaking at no more than -9 dBFS
+	 */
+	public static final LoudnessNormalizer NOISE = new LoudnessNormalizer(-28.0, -9.0);
+
+	/**
+	 * Magnitude of a full-scale 16-bit sample
+	 */
+	private static final double FULL_SCALE = 32_768.0;
+
+	/**
+	 * Target RMS level in dBFS
+	 */
+	private final double targetRmsDbfs;
+
+	/**
+	 * Peak ceiling in dBFS
+	 */
+	private final double peakCeilingDbfs;
+
+	/**
+	 * Target RMS as a sample magnitude
+	 */
+	private final double targetRms;
+
+	/**
+	 * Peak ceiling as a sample magnitude
+	 */
+	private final double peakCeiling;
+
+	/**
+	 * Constructor
+	 *
+	 * @param targetRmsDbfs   target RMS level in dBFS
+	 * @param peakCeilingDbfs peak ceiling in dBFS
+	 * @throws IllegalArgumentException if {@code peakCeilingDbfs} is above 0
+	 *                                  dBFS, or {@code targetRmsDbfs} is above
+	 *                                  {@code peakCeilingDbfs}
+	 */
+	public LoudnessNormalizer(double targetRmsDbfs, double peakCeilingDbfs) {
+		if (!(peakCeilingDbfs <= 0.0)) {
+			throw new IllegalArgumentException("Peak ceiling must not be above 0 dBFS.");
+		}
+		if (!(targetRmsDbfs <= peakCeilingDbfs)) {
+			throw new IllegalArgumentException("Target RMS level must not be above peak ceiling.");
+		}
+		this.targetRmsDbfs = targetRmsDbfs;
+		this.peakCeilingDbfs = peakCeilingDbfs;
+		this.targetRms = FULL_SCALE * Math.pow(10, targetRmsDbfs / 20);
+		this.peakCeiling = Math.min(Short.MAX_VALUE, Math.floor(FULL_SCALE * Math.pow(10, peakCeilingDbfs / 20)));
+		return;
+	}
+
+	/**
+	 * Returns target RMS level in dBFS.
+	 *
+	 * @return target RMS level
+	 */
+	public double getTargetRmsDbfs() {
+		return targetRmsDbfs;
+	}
+
+	/**
+	 * Returns peak ceiling in dBFS.
+	 *
+	 * @return peak ceiling
+	 */
+	public double getPeakCeilingDbfs() {
+		return peakCeilingDbfs;
+	}
+
+	/**
+	 * Returns a copy of {@code sample} with leading and trailing silence removed,
+	 * scaled to this object's target RMS level (or to its peak ceiling, if that is
+	 * lower). The result's {@link Sample#getMetadata()} records the trimming and
+	 * gain. A silent {@code sample} yields an empty {@link Sample}.
+	 *
+	 * @param sample a {@link Sample}
+	 * @return prepared {@link Sample}
+	 * @throws NullPointerException if {@code sample} is {@code null}
+	 */
+	public Sample normalize(Sample sample) {
+		ClipMetadata source = sample.getMetadata();
+		short[] pcm = new short[source.getLength()];
+		sample.read(source.getTrimStart(), pcm, 0, pcm.length);
+		double gain = gain(source);
+		int peak = 0;
+		for (int i = 0; i < pcm.length; i++) {
+			pcm[i] = (short) Math.round(pcm[i] * gain);
+			peak = Math.max(peak, Math.abs(pcm[i]));
+		}
+		ClipMetadata metadata = new ClipMetadata(source.getTrimStart(), pcm.length, peak, source.getRms() * gain, gain);
+		return Sample.wrap(pcm, sample.getFormat(), metadata);
+	}
+
+	/**
+	 * Returns the gain to apply to a {@link Sample} measured as {@code metadata}.
+	 *
+	 * @param metadata loudness measurements
+	 * @return gain
+	 */
+	private double gain(ClipMetadata metadata) {
+		if (metadata.getRms() == 0 || metadata.getPeak() == 0) {
+			return 1.0;
+		}
+		return Math.min(targetRms / metadata.getRms(), peakCeiling / metadata.getPeak());
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof LoudnessNormalizer)) {
+			return false;
+		}
+		LoudnessNormalizer other = (LoudnessNormalizer) obj;
+		return Double.compare(targetRmsDbfs, other.targetRmsDbfs) == 0
+				&& Double.compare(peakCeilingDbfs, other.peakCeilingDbfs) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(targetRmsDbfs, peakCeilingDbfs);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(60);
+		sb.append("[LoudnessNormalizer: targetRmsDbfs=").append(targetRmsDbfs).append(" peakCeilingDbfs=")
+				.append(peakCeilingDbfs).append(']');
+		return sb.toString();
+	}
+}
@@ -0,0 +1,100 @@
+package net.logicsquad.nanocaptcha.audio;
+
+import java.nio.ShortBuffer;
+
+/**
+ * A {@link Sample} backed by a region of a {@link ShortBuffer}, typically a
+ * memory-mapped {@link SoundBank}. Reading and mixing go straight to the
+ * buffer, and slices share it, so no samples are copied onto the heap unless
+ * the whole array is requested (e.g., by {@link #getSamples()}), in which case
+ * they are copied once and retained.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+final class MappedSample extends Sample {
+	/**
+	 * PCM data (never modified, and shared with other {@code MappedSample}s)
+	 */
+	private final ShortBuffer data;
+
+	/**
+	 * Index of first sample in {@link #data}
+	 */
+	private final int base;
+
+	/**
+	 * Copy of this object's samples on the heap, once requested
+	 */
+	private volatile short[] copied;
+
+	/**
+	 * Constructor
+	 *
+	 * @param data   PCM data
+	 * @param base   index of first sample in {@code data}
+	 * @param length number of samples
+	 */
+	MappedSample(ShortBuffer data, int base, int length) {
+		super(length, SC_AUDIO_FORMAT);
+		this.data = data;
+		this.base = base;
+		return;
+	}
+
+	@Override
+	Sample sliceOf(int start, int length) {
+		MappedSample slice = new MappedSample(data, base + start, length);
+		slice.setPeakBound(peakBound());
+		return slice;
+	}
+
+	@Override
+	void read(int start, short[] dst, int dstOffset, int count) {
+		int j = base + start;
+		for (int i = dstOffset; i < dstOffset + count; i++) {
+			dst[i] = data.get(j++);
+		}
+		return;
+	}
+
+	@Override
+	void mixInto(int start, short[] dst, int dstOffset, int count, float dstVolume, float volume) {
+		int j = base + start;
+		for (int i = dstOffset; i < dstOffset + count; i++) {
+			dst[i] = Mixer.clip(dst[i] * dstVolume + data.get(j++) * volume);
+		}
+		return;
+	}
+
+	@Override
+	void addInto(int start, short[] dst, int dstOffset, int count, float dstVolume, float volume) {
+		int j = base + start;
+		for (int i = dstOffset; i < dstOffset + count; i++) {
+			dst[i] = (short) (dst[i] * dstVolume + data.get(j++) * volume);
+		}
+		return;
+	}
+
+	/**
+	 * Returns a copy of this object's samples, made on first request and
+	 * retained.
+	 *
+	 * @return PCM data
+	 */
+	@Override
+	short[] pcm() {
+		short[] pcm = copied;
+		if (pcm == null) {
+			pcm = new short[(int) getSampleCount()];
+			read(0, pcm, 0, pcm.length);
+			copied = pcm;
+		}
+		return pcm;
+	}
+
+	@Override
+	int offset() {
+		return 0;
+	}
+}
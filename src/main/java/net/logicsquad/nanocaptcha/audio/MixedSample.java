@@ -0,0 +1,366 @@
+package net.logicsquad.nanocaptcha.audio;
+
+import java.util.Arrays;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * <p>
+ * A lazily rendered {@link Sample}: a sequence of segments, each a reference to
+ * a source {@link Sample} (or a stretch of silence) with its own gain,
+ * optionally mixed with a noise {@link Sample}. Nothing is computed or copied
+ * on construction. Reading a range of this object's audio (via
+ * {@link #read(int, short[], int, int)}) walks the segments and the noise in
+ * step, computing only the samples requested, so that audio can be streamed
+ * out in fixed-size chunks without ever being held in full.
+ * </p>
+ *
+ * <p>
+ * If the audio is requested in full (e.g., by {@link #getSamples()}), it is
+ * rendered once and retained. Mixing this object into other audio (e.g., as
+ * the noise in another {@code MixedSample}) renders only the range mixed, a
+ * chunk at a time, so a looped noise bed is never held in full.
+ * </p>
+ *
+ * <p>
+ * Each segment whose source and the noise have known peaks (see
+ * {@link Sample#peakBound()}), as decoded and normalized {@code Sample}s do,
+ * and whose peaks (scaled by their gains) cannot sum beyond the range of a
+ * 16-bit sample, is rendered as a plain multiply-add, with no clipping. Other
+ * segments are clipped.
+ * </p>
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ * @see SampleSequence
+ */
+final class MixedSample extends Sample {
+	/**
+	 * Number of samples rendered at a time by
+	 * {@link #mixInto(int, short[], int, int, float, float)} and
+	 * {@link #addInto(int, short[], int, int, float, float)}
+	 */
+	private static final int SCRATCH_LENGTH = 2_048;
+
+	/**
+	 * Scratch buffer for rendering chunks, reused by each thread (and taken while
+	 * in use, so that nested renders don't share it)
+	 */
+	private static final ThreadLocal<short[]> SCRATCH = new ThreadLocal<>();
+
+	/**
+	 * Segment sources ({@code null} for silence)
+	 */
+	private final Sample[] segments;
+
+	/**
+	 * Multiplier for each segment
+	 */
+	private final float[] gains;
+
+	/**
+	 * Index of the first sample of each segment in the concatenated audio,
+	 * followed by the total length
+	 */
+	private final int[] starts;
+
+	/**
+	 * Noise (may be {@code null})
+	 */
+	private final Sample noise;
+
+	/**
+	 * Multiplier for noise
+	 */
+	private final float noiseVolume;
+
+	/**
+	 * Can each segment be rendered without clipping?
+	 */
+	private final boolean[] unclipped;
+
+	/**
+	 * Fully rendered audio, once requested
+	 */
+	private volatile short[] rendered;
+
+	/**
+	 * Constructor
+	 *
+	 * @param segments    segment sources ({@code null} for silence)
+	 * @param gains       multiplier for each segment
+	 * @param lengths     length of each segment
+	 * @param noise       noise (may be {@code null}), treated as silence beyond
+	 *                    its end
+	 * @param noiseVolume multiplier for noise
+	 * @param format      format if there are no source {@link Sample}s (i.e., all
+	 *                    segments are silent)
+	 * @throws IllegalArgumentException if {@code segments} and {@code noise}
+	 *                                  differ in format
+	 */
+	MixedSample(Sample[] segments, float[] gains, int[] lengths, Sample noise, float noiseVolume, AudioFormat format) {
+		super(total(lengths), Mixer.formatOf(Arrays.asList(segments), noise, format));
+		this.segments = segments;
+		this.gains = gains;
+		this.starts = new int[segments.length + 1];
+		for (int i = 0; i < segments.length; i++) {
+			starts[i + 1] = starts[i] + lengths[i];
+		}
+		this.noise = noise;
+		this.noiseVolume = noiseVolume;
+		this.unclipped = new boolean[segments.length];
+		long bound = 0;
+		for (int i = 0; i < segments.length; i++) {
+			long segmentBound = peakBound(segments[i], gains[i], noise, noiseVolume);
+			unclipped[i] = segmentBound >= 0 && segmentBound <= Short.MAX_VALUE;
+			bound = bound < 0 || segmentBound < 0 ? -1 : Math.max(bound, segmentBound);
+		}
+		setPeakBound((int) Math.min(bound, -(long) Short.MIN_VALUE));
+		return;
+	}
+
+	/**
+	 * Returns an upper bound on the magnitude of the mix of {@code segment},
+	 * scaled by {@code gain}, and {@code noise}, scaled by {@code noiseVolume},
+	 * or {@code -1} if either source's bound is unknown.
+	 *
+	 * @param segment     segment source ({@code null} for silence)
+	 * @param gain        multiplier for segment
+	 * @param noise       noise (may be {@code null})
+	 * @param noiseVolume multiplier for noise
+	 * @return peak bound, or {@code -1}
+	 */
+	private static long peakBound(Sample segment, float gain, Sample noise, float noiseVolume) {
+		double segmentBound = 0;
+		if (segment != null) {
+			int bound = segment.peakBound();
+			if (bound < 0) {
+				return -1;
+			}
+			segmentBound = bound * Math.abs((double) gain);
+		}
+		double noiseBound = 0;
+		if (noise != null) {
+			int bound = noise.peakBound();
+			if (bound < 0) {
+				return -1;
+			}
+			noiseBound = bound * Math.abs((double) noiseVolume);
+		}
+		return (long) Math.ceil(segmentBound + noiseBound);
+	}
+
+	/**
+	 * Returns the sum of {@code lengths}.
+	 *
+	 * @param lengths segment lengths
+	 * @return total number of samples
+	 */
+	private static int total(int[] lengths) {
+		int total = 0;
+		for (int length : lengths) {
+			total += length;
+		}
+		return total;
+	}
+
+	/**
+	 * Is this object a plain sequence of segments, with no noise?
+	 *
+	 * @return {@code true} if this object has no noise, otherwise {@code false}
+	 */
+	boolean isSequence() {
+		return noise == null;
+	}
+
+	/**
+	 * Appends this object's segments to {@code builder}, with each segment's gain
+	 * multiplied by {@code gain}. Only valid if {@link #isSequence()}.
+	 *
+	 * @param builder a {@link SampleSequence.Builder}
+	 * @param gain    multiplier
+	 */
+	void appendTo(SampleSequence.Builder builder, float gain) {
+		for (int i = 0; i < segments.length; i++) {
+			builder.addSegment(segments[i], gains[i] * gain, starts[i + 1] - starts[i]);
+		}
+		return;
+	}
+
+	/**
+	 * Returns a lazily rendered slice of this object: the segments (and noise)
+	 * overlapping the slice are themselves sliced, so no audio is rendered or
+	 * copied.
+	 */
+	@Override
+	Sample sliceOf(int start, int length) {
+		int end = start + length;
+		SampleSequence.Builder builder = new SampleSequence.Builder().format(getFormat());
+		for (int i = segmentAt(start); i < segments.length && starts[i] < end; i++) {
+			int from = Math.max(start, starts[i]);
+			int to = Math.min(end, starts[i + 1]);
+			Sample source = segments[i];
+			builder.addSegment(source == null ? null : source.sliceOf(from - starts[i], to - from), gains[i], to - from);
+		}
+		Sample slicedNoise = null;
+		if (noise != null && start < noise.getSampleCount()) {
+			slicedNoise = noise.sliceOf(start, Math.min(length, (int) noise.getSampleCount() - start));
+		}
+		return builder.build(1.0f, slicedNoise, noiseVolume);
+	}
+
+	@Override
+	void read(int start, short[] dst, int dstOffset, int count) {
+		short[] done = rendered;
+		if (done != null) {
+			System.arraycopy(done, start, dst, dstOffset, count);
+			return;
+		}
+		int noiseLength = noise == null ? 0 : (int) noise.getSampleCount();
+		int segment = segmentAt(start);
+		int position = start;
+		int end = start + count;
+		int k = dstOffset;
+		while (position < end) {
+			Sample source = segments[segment];
+			float gain = gains[segment];
+			int length = Math.min(starts[segment + 1], end) - position;
+			if (source == null) {
+				Arrays.fill(dst, k, k + length, (short) 0);
+			} else {
+				source.read(position - starts[segment], dst, k, length);
+			}
+			// Samples in this stretch that overlap the noise
+			int overlap = Math.max(0, Math.min(length, noiseLength - position));
+			if (overlap > 0) {
+				if (unclipped[segment]) {
+					noise.addInto(position, dst, k, overlap, gain, noiseVolume);
+				} else {
+					noise.mixInto(position, dst, k, overlap, gain, noiseVolume);
+				}
+			}
+			if (gain != 1.0f && source != null) {
+				if (unclipped[segment]) {
+					for (int i = k + overlap; i < k + length; i++) {
+						dst[i] = (short) (dst[i] * gain);
+					}
+				} else {
+					for (int i = k + overlap; i < k + length; i++) {
+						dst[i] = Mixer.clip(dst[i] * gain);
+					}
+				}
+			}
+			k += length;
+			position += length;
+			segment++;
+		}
+		return;
+	}
+
+	/**
+	 * Renders only the samples mixed, a chunk at a time, unless this object has
+	 * already been rendered in full.
+	 */
+	@Override
+	void mixInto(int start, short[] dst, int dstOffset, int count, float dstVolume, float volume) {
+		if (rendered != null) {
+			super.mixInto(start, dst, dstOffset, count, dstVolume, volume);
+		} else {
+			blendInto(start, dst, dstOffset, count, dstVolume, volume, true);
+		}
+		return;
+	}
+
+	/**
+	 * Renders only the samples added, a chunk at a time, unless this object has
+	 * already been rendered in full.
+	 */
+	@Override
+	void addInto(int start, short[] dst, int dstOffset, int count, float dstVolume, float volume) {
+		if (rendered != null) {
+			super.addInto(start, dst, dstOffset, count, dstVolume, volume);
+		} else {
+			blendInto(start, dst, dstOffset, count, dstVolume, volume, false);
+		}
+		return;
+	}
+
+	/**
+	 * Renders {@code count} samples, starting at sample index {@code start}, into
+	 * a scratch buffer a chunk at a time, and blends each chunk into {@code dst}
+	 * at {@code dstOffset}, as
+	 * {@link #mixInto(int, short[], int, int, float, float)} (if {@code clip} is
+	 * {@code true}) or {@link #addInto(int, short[], int, int, float, float)}.
+	 *
+	 * @param start     index of first sample
+	 * @param dst       destination array
+	 * @param dstOffset offset in {@code dst}
+	 * @param count     number of samples
+	 * @param dstVolume multiplier for samples in {@code dst}
+	 * @param volume    multiplier for samples from this object
+	 * @param clip      should sums be clipped?
+	 */
+	private void blendInto(int start, short[] dst, int dstOffset, int count, float dstVolume, float volume, boolean clip) {
+		short[] scratch = SCRATCH.get();
+		if (scratch == null) {
+			scratch = new short[SCRATCH_LENGTH];
+		} else {
+			SCRATCH.remove();
+		}
+		try {
+			int k = dstOffset;
+			for (int position = start; position < start + count; position += SCRATCH_LENGTH) {
+				int length = Math.min(SCRATCH_LENGTH, start + count - position);
+				read(position, scratch, 0, length);
+				if (clip) {
+					for (int i = 0; i < length; i++, k++) {
+						dst[k] = Mixer.clip(dst[k] * dstVolume + scratch[i] * volume);
+					}
+				} else {
+					for (int i = 0; i < length; i++, k++) {
+						dst[k] = (short) (dst[k] * dstVolume + scratch[i] * volume);
+					}
+				}
+			}
+		} finally {
+			SCRATCH.set(scratch);
+		}
+		return;
+	}
+
+	/**
+	 * Returns the index of the segment containing sample index {@code position}.
+	 *
+	 * @param position sample index
+	 * @return segment index
+	 */
+	private int segmentAt(int position) {
+		int low = 0;
+		int high = segments.length - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (starts[mid] <= position) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+
+	@Override
+	short[] pcm() {
+		short[] done = rendered;
+		if (done == null) {
+			done = new short[(int) getSampleCount()];
+			read(0, done, 0, done.length);
+			rendered = done;
+		}
+		return done;
+	}
+
+	@Override
+	int offset() {
+		return 0;
+	}
+}
@@ -1,12 +1,10 @@
 package net.logicsquad.nanocaptcha.audio;
 
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
-import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioFormat;
 
 /**
  * Helper class for operating on audio {@link Sample}s.
@@ -16,6 +14,30 @@ import javax.sound.sampled.AudioInputStream;
  * @since 1.0
  */
 public final class Mixer {
+	/**
+	 * Number of samples mixed at a time by
+	 * {@link #mixToByteArray(List, double, Sample, double)}
+	 */
+	private static final int CHUNK_LENGTH = 2_048;
+
+	/**
+	 * Number of entries in {@link #FADE}
+	 */
+	private static final int FADE_LENGTH = 1_024;
+
+	/**
+	 * Equal-power fade-in window: entry {@code i} is the gain at fraction
+	 * {@code (i + 0.5) / FADE_LENGTH} of a crossfade, and the fade-out gain is the
+	 * same table read backwards
+	 */
+	private static final float[] FADE = new float[FADE_LENGTH];
+
+	static {
+		for (int i = 0; i < FADE_LENGTH; i++) {
+			FADE[i] = (float) Math.sin(Math.PI / 2 * (i + 0.5) / FADE_LENGTH);
+		}
+	}
+
 	/**
 	 * Private constructor for non-instantiability.
 	 */
@@ -26,131 +48,347 @@ public final class Mixer {
 	/**
 	 * Returns the concatenation of the supplied {@link Sample}s as a new
 	 * {@link Sample}. If {@code samples} is empty, this method returns a new, empty
-	 * {@link Sample}.
+	 * {@link Sample}. No audio is copied: the result is a lazy
+	 * {@link SampleSequence} referring to {@code samples}.
 	 *
 	 * @param samples a list of {@link Sample}s
 	 * @return concatenation {@link Sample}
-	 * @throws NullPointerException if {@code samples} is {@code null}
+	 * @throws NullPointerException     if {@code samples} is {@code null}
+	 * @throws IllegalArgumentException if {@code samples} differ in format
 	 */
 	public static Sample concatenate(List<Sample> samples) {
 		Objects.requireNonNull(samples);
+		return SampleSequence.of(samples);
+	}
 
-		// If we have no samples, return an empty Sample
-		if (samples.isEmpty()) {
-			return buildSample(0, new double[0]);
-		} else {
-			int sampleCount = 0;
-			// append voices to each other
-			double[] first = samples.get(0).getInterleavedSamples();
-			sampleCount += samples.get(0).getSampleCount();
-			double[][] samplesArray = new double[samples.size() - 1][];
-			for (int i = 0; i < samplesArray.length; i++) {
-				samplesArray[i] = samples.get(i + 1).getInterleavedSamples();
-				sampleCount += samples.get(i + 1).getSampleCount();
+	/**
+	 * <p>
+	 * Returns the concatenation of the supplied {@link Sample}s, with each pair
+	 * joined by an overlap-add crossfade of {@code crossfade} samples: the end of
+	 * each {@link Sample} is faded out as the start of the next is faded in over
+	 * the same stretch, so joins don't click, and the result is shorter than
+	 * {@link #concatenate(List)} by {@code crossfade} samples per join. The
+	 * crossfade at each join is limited to half the length of the shorter of the
+	 * two {@link Sample}s.
+	 * </p>
+	 *
+	 * <p>
+	 * This works best on {@link Sample}s without leading or trailing silence (see
+	 * {@link Sample#trimSilence()}). Only the crossfaded stretches are computed by
+	 * this method: the result is a lazy {@link SampleSequence} referring to
+	 * {@code samples} elsewhere.
+	 * </p>
+	 *
+	 * @param samples   a list of {@link Sample}s
+	 * @param crossfade crossfade length in samples
+	 * @return concatenation {@link Sample}
+	 * @throws NullPointerException     if {@code samples} is {@code null} or
+	 *                                  contains {@code null}
+	 * @throws IllegalArgumentException if {@code crossfade} is negative, or
+	 *                                  {@code samples} differ in format
+	 * @since 2.2
+	 */
+	public static Sample concatenate(List<Sample> samples, int crossfade) {
+		Objects.requireNonNull(samples);
+		if (crossfade < 0) {
+			throw new IllegalArgumentException("Crossfade must not be negative.");
+		}
+		SampleSequence.Builder builder = new SampleSequence.Builder();
+		Sample previous = null;
+		// Index of first sample of previous not yet added
+		int previousStart = 0;
+		for (Sample sample : samples) {
+			Objects.requireNonNull(sample);
+			if (previous != null) {
+				int previousLength = (int) previous.getSampleCount();
+				int fade = Math.min(crossfade, Math.min(previousLength, (int) sample.getSampleCount()) / 2);
+				addSlice(builder, previous, previousStart, previousLength - fade);
+				if (fade > 0) {
+					builder.add(crossfade(previous, previousLength - fade, sample, 0, fade));
+				}
+				previousStart = fade;
 			}
-			double[] appended = concatenate(first, samplesArray);
-			return buildSample(sampleCount, appended);
+			previous = sample;
 		}
+		if (previous != null) {
+			addSlice(builder, previous, previousStart, (int) previous.getSampleCount());
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Appends samples {@code start} (inclusive) to {@code end} (exclusive) of
+	 * {@code sample} to {@code builder}, if there are any.
+	 *
+	 * @param builder a {@link SampleSequence.Builder}
+	 * @param sample  a {@link Sample}
+	 * @param start   index of first sample
+	 * @param end     index after last sample
+	 */
+	private static void addSlice(SampleSequence.Builder builder, Sample sample, int start, int end) {
+		if (end > start) {
+			builder.add(start == 0 && end == sample.getSampleCount() ? sample : sample.sliceOf(start, end - start));
+		}
+		return;
 	}
 
 	/**
 	 * Returns {@code sample1} mixed with {@code sample2} as a new {@link Sample}.
 	 * Additionally, {@code sample1}'s volume is adjusted by the multiplier
-	 * {@code volume1}, and {@code sample2}'s by {@code volume2}.
+	 * {@code volume1}, and {@code sample2}'s by {@code volume2}. The result has the
+	 * length of {@code sample1}: if {@code sample2} is shorter, it is treated as
+	 * silence beyond its end.
 	 *
 	 * @param sample1 first {@link Sample}
 	 * @param volume1 first multiplier
 	 * @param sample2 second {@link Sample}
 	 * @param volume2 second multiplier
 	 * @return mixed {@link Sample}
-	 * @throws NullPointerException if {@code sample1} or {@code sample2} is
-	 *                              {@code null}
+	 * @throws NullPointerException     if {@code sample1} or {@code sample2} is
+	 *                                  {@code null}
+	 * @throws IllegalArgumentException if {@code sample1} and {@code sample2}
+	 *                                  differ in format
 	 */
 	public static Sample mix(Sample sample1, double volume1, Sample sample2, double volume2) {
 		Objects.requireNonNull(sample1);
 		Objects.requireNonNull(sample2);
-		double[] s1Array = sample1.getInterleavedSamples();
-		double[] s2Array = sample2.getInterleavedSamples();
-		double[] mixed = mix(s1Array, volume1, s2Array, volume2);
-		return buildSample(sample1.getSampleCount(), mixed);
+		int length = (int) sample1.getSampleCount();
+		int overlap = Math.min(length, (int) sample2.getSampleCount());
+		float v1 = (float) volume1;
+		short[] mixed = new short[length];
+		sample1.read(0, mixed, 0, length);
+		sample2.mixInto(0, mixed, 0, overlap, v1, (float) volume2);
+		for (int i = overlap; i < length; i++) {
+			mixed[i] = clip(mixed[i] * v1);
+		}
+		return Sample.wrap(mixed, formatOf(Collections.singletonList(sample1), sample2, Sample.SC_AUDIO_FORMAT));
 	}
 
 	/**
-	 * Concatenates the supplied arrays of {@code double}s and returns the resulting
-	 * array.
+	 * <p>
+	 * Returns the concatenation of {@code samples} mixed with {@code noise}, as a
+	 * lazily rendered {@link Sample}. The concatenated audio's volume is adjusted
+	 * by the multiplier {@code volume1}, and {@code noise}'s by {@code volume2}.
+	 * The result has the total length of {@code samples}: if {@code noise} is
+	 * shorter, it is treated as silence beyond its end.
+	 * </p>
 	 *
-	 * @param first an array of {@code double}s
-	 * @param rest  additional arrays of {@code double}s
-	 * @return concatenated array
+	 * <p>
+	 * No audio is computed (or copied) by this method: the result is rendered from
+	 * {@code samples} and {@code noise} as it is read, so it can be streamed out
+	 * (e.g., by {@link AudioCaptcha#writeWav(java.io.OutputStream)}) in fixed-size
+	 * chunks. Any {@link SampleSequence}s in {@code samples} are spliced in, so
+	 * they are flattened in the same pass that mixes in {@code noise}.
+	 * </p>
+	 *
+	 * @param samples a list of {@link Sample}s
+	 * @param volume1 multiplier for concatenated {@code samples}
+	 * @param noise   noise {@link Sample}
+	 * @param volume2 multiplier for {@code noise}
+	 * @return mixed {@link Sample}
+	 * @throws NullPointerException     if {@code samples} or {@code noise} is
+	 *                                  {@code null}
+	 * @throws IllegalArgumentException if {@code samples} and {@code noise}
+	 *                                  differ in format
+	 * @since 2.2
 	 */
-	private static double[] concatenate(double[] first, double[]... rest) {
-		int totalLength = first.length;
-		for (double[] array : rest) {
-			totalLength += array.length;
+	public static Sample mix(List<Sample> samples, double volume1, Sample noise, double volume2) {
+		Objects.requireNonNull(samples);
+		Objects.requireNonNull(noise);
+		return new SampleSequence.Builder().addAll(samples).build((float) volume1, noise, (float) volume2);
+	}
+
+	/**
+	 * <p>
+	 * Returns {@code length} samples of {@code sample} played in a loop, starting
+	 * at {@code start}, as a lazily rendered {@link Sample}. {@code length} may
+	 * exceed the length of {@code sample}: playback wraps around to the start as
+	 * often as necessary.
+	 * </p>
+	 *
+	 * <p>
+	 * To avoid a click at each wrap, the last {@code crossfade} samples of
+	 * {@code sample} are faded (equal-power) into its first {@code crossfade}
+	 * samples, so the loop period is {@code sample.getSampleCount() - crossfade}.
+	 * The crossfade is limited to half the length of {@code sample}. Only the
+	 * crossfaded region is computed by this method: the rest of the loop refers to
+	 * {@code sample} and is rendered as it is read.
+	 * </p>
+	 *
+	 * @param sample    a {@link Sample}
+	 * @param start     index of first sample, modulo the loop period
+	 * @param length    number of samples
+	 * @param crossfade crossfade length in samples
+	 * @return looped {@link Sample}
+	 * @throws NullPointerException     if {@code sample} is {@code null}
+	 * @throws IllegalArgumentException if {@code start}, {@code length} or
+	 *                                  {@code crossfade} is negative
+	 * @since 2.2
+	 */
+	public static Sample loop(Sample sample, int start, int length, int crossfade) {
+		Objects.requireNonNull(sample);
+		if (start < 0 || length < 0 || crossfade < 0) {
+			throw new IllegalArgumentException("Loop start, length and crossfade must not be negative.");
 		}
-		double[] result = Arrays.copyOf(first, totalLength);
-		int offset = first.length;
-		for (double[] array : rest) {
-			System.arraycopy(array, 0, result, offset, array.length);
-			offset += array.length;
+		int sampleLength = (int) sample.getSampleCount();
+		SampleSequence.Builder builder = new SampleSequence.Builder().format(sample.getFormat());
+		if (sampleLength == 0) {
+			return builder.addSilence(length).build();
 		}
-		return result;
+		int fade = Math.min(crossfade, sampleLength / 2);
+		int period = sampleLength - fade;
+		Sample bed = fade == 0 ? sample : new SampleSequence.Builder()
+				.add(crossfade(sample, period, sample, 0, fade))
+				.add(sample.sliceOf(fade, period - fade))
+				.build();
+		int position = start % period;
+		int remaining = length;
+		while (remaining > 0) {
+			int count = Math.min(remaining, period - position);
+			builder.add(position == 0 && count == period ? bed : bed.sliceOf(position, count));
+			remaining -= count;
+			position = 0;
+		}
+		return builder.build();
 	}
 
 	/**
-	 * Returns {@code sample1} mixed with {@code sample2} as a new raw array of
-	 * {@code double}s. Additionally, {@code sample1}'s volume is adjusted by the
-	 * multiplier {@code volume1}, and {@code sample2}'s by {@code volume2}.
+	 * Returns {@code fade} samples of {@code out} starting at {@code outStart},
+	 * faded out, mixed with {@code fade} samples of {@code in} starting at
+	 * {@code inStart}, faded in, using the equal-power window {@link #FADE}.
 	 *
-	 * @param sample1 first sample
-	 * @param volume1 first multiplier
-	 * @param sample2 second sample
-	 * @param volume2 second multiplier
-	 * @return mixed sample
+	 * @param out      {@link Sample} to fade out
+	 * @param outStart index of first sample of {@code out}
+	 * @param in       {@link Sample} to fade in
+	 * @param inStart  index of first sample of {@code in}
+	 * @param fade     crossfade length in samples
+	 * @return crossfaded {@link Sample}
+	 */
+	private static Sample crossfade(Sample out, int outStart, Sample in, int inStart, int fade) {
+		short[] mixed = new short[fade];
+		short[] faded = new short[fade];
+		out.read(outStart, mixed, 0, fade);
+		in.read(inStart, faded, 0, fade);
+		int peak = 0;
+		for (int i = 0; i < fade; i++) {
+			int k = (int) ((long) i * FADE_LENGTH / fade);
+			mixed[i] = clip(faded[i] * FADE[k] + mixed[i] * FADE[FADE_LENGTH - 1 - k]);
+			peak = Math.max(peak, Math.abs(mixed[i]));
+		}
+		return Sample.wrap(mixed, in.getFormat(), peak);
+	}
+
+	/**
+	 * <p>
+	 * Concatenates {@code samples}, mixes the result with {@code noise} and returns
+	 * it encoded as little-endian 16-bit PCM. The concatenated audio's volume is
+	 * adjusted by the multiplier {@code volume1}, and {@code noise}'s by
+	 * {@code volume2}. If {@code noise} is shorter than the concatenated audio, it
+	 * is treated as silence beyond its end.
+	 * </p>
+	 *
+	 * <p>
+	 * This method is equivalent to encoding the result of
+	 * {@code mix(concatenate(samples), volume1, noise, volume2)}, but makes a
+	 * single pass over the input, {@link #CHUNK_LENGTH} samples at a time, writing
+	 * directly into the returned array. Each {@link Sample} is read through
+	 * {@link Sample#read(int, short[], int, int)}, so lazily rendered or mapped
+	 * {@link Sample}s are not held in full.
+	 * </p>
+	 *
+	 * @param samples a list of {@link Sample}s
+	 * @param volume1 multiplier for concatenated {@code samples}
+	 * @param noise   noise {@link Sample}
+	 * @param volume2 multiplier for {@code noise}
+	 * @return mixed audio as little-endian 16-bit PCM
+	 * @throws NullPointerException     if {@code samples} or {@code noise} is
+	 *                                  {@code null}
+	 * @throws IllegalArgumentException if {@code samples} and {@code noise}
+	 *                                  differ in format
 	 */
-	private static double[] mix(double[] sample1, double volume1, double[] sample2, double volume2) {
-		for (int i = 0; i < sample1.length; i++) {
-			if (i >= sample2.length) {
-				sample1[i] = 0;
-				break;
+	static byte[] mixToByteArray(List<Sample> samples, double volume1, Sample noise, double volume2) {
+		Objects.requireNonNull(samples);
+		Objects.requireNonNull(noise);
+		formatOf(samples, noise, Sample.SC_AUDIO_FORMAT);
+		int sampleCount = 0;
+		for (Sample sample : samples) {
+			sampleCount += (int) sample.getSampleCount();
+		}
+		byte[] result = new byte[sampleCount * 2];
+		short[] chunk = new short[Math.min(CHUNK_LENGTH, sampleCount)];
+		int noiseLength = (int) noise.getSampleCount();
+		float v1 = (float) volume1;
+		float v2 = (float) volume2;
+		// Position in concatenated audio
+		int position = 0;
+		for (Sample sample : samples) {
+			int length = (int) sample.getSampleCount();
+			for (int start = 0; start < length; start += chunk.length) {
+				int count = Math.min(chunk.length, length - start);
+				sample.read(start, chunk, 0, count);
+				// Samples in this chunk that overlap the noise
+				int overlap = Math.max(0, Math.min(count, noiseLength - position));
+				if (overlap > 0) {
+					noise.mixInto(position, chunk, 0, overlap, v1, v2);
+				}
+				for (int i = overlap; i < count; i++) {
+					chunk[i] = clip(chunk[i] * v1);
+				}
+				Sample.encode(chunk, 0, count, result, position * 2);
+				position += count;
 			}
-			sample1[i] = sample1[i] * volume1 + sample2[i] * volume2;
 		}
-		return sample1;
+		return result;
 	}
 
 	/**
-	 * Returns a {@link Sample} created from the raw {@code sample} data.
+	 * Returns {@code value} rounded towards zero and clipped to the range of a
+	 * 16-bit sample.
 	 *
-	 * @param sampleCount number of samples
-	 * @param sample      raw sample data
-	 * @return {@link Sample} from raw samples
+	 * @param value sample value
+	 * @return clipped sample
 	 */
-	private static Sample buildSample(long sampleCount, double[] sample) {
-		// I'm reasonably sure we don't need to ask for sampleCount here: it's just
-		// going to match sample.length, isn't it?
-		byte[] buffer = asByteArray(sampleCount, sample);
-		InputStream bais = new ByteArrayInputStream(buffer);
-		AudioInputStream ais = new AudioInputStream(bais, Sample.SC_AUDIO_FORMAT, sampleCount);
-		return new Sample(ais);
+	static short clip(float value) {
+		int i = (int) value;
+		return (short) (i > Short.MAX_VALUE ? Short.MAX_VALUE : i < Short.MIN_VALUE ? Short.MIN_VALUE : i);
+	}
+
+	/**
+	 * Returns the common {@link AudioFormat} of {@code samples} and {@code noise},
+	 * ignoring {@code null}s, or {@code fallback} if there are no
+	 * {@link Sample}s.
+	 *
+	 * @param samples  a list of {@link Sample}s (which may contain {@code null}s)
+	 * @param noise    noise {@link Sample} (may be {@code null})
+	 * @param fallback format if there are no {@link Sample}s
+	 * @return common format
+	 * @throws IllegalArgumentException if the {@link Sample}s differ in format
+	 */
+	static AudioFormat formatOf(List<Sample> samples, Sample noise, AudioFormat fallback) {
+		AudioFormat format = noise == null ? null : noise.getFormat();
+		for (Sample sample : samples) {
+			if (sample == null) {
+				continue;
+			}
+			if (format == null) {
+				format = sample.getFormat();
+			}
+			checkFormat(format, sample);
+		}
+		return format == null ? fallback : format;
 	}
 
 	/**
-	 * Returns a sample encoded as {@code double[]} as a {@code byte[]}.
+	 * Checks that {@code sample} is in {@code format}.
 	 *
-	 * @param sampleCount number of samples
-	 * @param sample      raw sample data
-	 * @return sample encoded as {@code byte[]}
+	 * @param format an {@link AudioFormat}
+	 * @param sample a {@link Sample}
+	 * @throws IllegalArgumentException if {@code sample} is not in {@code format}
 	 */
-	private static byte[] asByteArray(long sampleCount, double[] sample) {
-		int bufferLength = (int) sampleCount * (Sample.SC_AUDIO_FORMAT.getSampleSizeInBits() / 8);
-		byte[] buffer = new byte[bufferLength];
-		int in;
-		for (int i = 0; i < sample.length; i++) {
-			in = (int) (sample[i] * 32_767);
-			buffer[2 * i] = (byte) (in & 255);
-			buffer[2 * i + 1] = (byte) (in >> 8);
+	private static void checkFormat(AudioFormat format, Sample sample) {
+		if (!sample.getFormat().matches(format)) {
+			throw new IllegalArgumentException("Samples have different formats: " + format + " and " + sample.getFormat());
 		}
-		return buffer;
+		return;
 	}
 }
@@ -0,0 +1,162 @@
+package net.logicsquad.nanocaptcha.audio;
+
+/**
+ * <p>
+ * Polyphase sample-rate converter for a fixed rational ratio between two
+ * integer sample rates. The input is (notionally) upsampled by {@code up},
+ * low-pass filtered and downsampled by {@code down}, where {@code up/down} is the
+ * ratio of target to source rate in lowest terms. Only the filter phases that
+ * produce output samples are evaluated: each output sample costs
+ * {@link #TAPS} multiply-adds, whatever the ratio.
+ * </p>
+ *
+ * <p>
+ * The filter is a Blackman-windowed sinc, with its cutoff just below the lower
+ * of the two Nyquist frequencies, and each phase normalized to unity DC gain.
+ * Coefficients are computed once, on construction, so an instance should be
+ * reused for a given pair of rates. Instances are immutable and thread-safe.
+ * </p>
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+final class Resampler {
+	/**
+	 * Filter taps per phase
+	 */
+	private static final int TAPS = 32;
+
+	/**
+	 * Cutoff as a fraction of the lower Nyquist frequency, leaving room for the
+	 * filter's transition band
+	 */
+	private static final double CUTOFF = 0.9;
+
+	/**
+	 * Upsampling factor
+	 */
+	private final int up;
+
+	/**
+	 * Downsampling factor
+	 */
+	private final int down;
+
+	/**
+	 * Filter coefficients, {@link #TAPS} per phase, for {@link #up} phases
+	 */
+	private final float[] coefficients;
+
+	/**
+	 * Constructor
+	 *
+	 * @param sourceRate source sample rate in Hz
+	 * @param targetRate target sample rate in Hz
+	 * @throws IllegalArgumentException if either rate is not positive
+	 */
+	Resampler(int sourceRate, int targetRate) {
+		if (sourceRate <= 0 || targetRate <= 0) {
+			throw new IllegalArgumentException("Sample rates must be positive.");
+		}
+		int gcd = gcd(sourceRate, targetRate);
+		this.up = targetRate / gcd;
+		this.down = sourceRate / gcd;
+		double cutoff = CUTOFF * Math.min(1.0, (double) up / down);
+		this.coefficients = new float[up * TAPS];
+		for (int phase = 0; phase < up; phase++) {
+			double fraction = (double) phase / up;
+			double sum = 0;
+			for (int k = 0; k < TAPS; k++) {
+				// Distance in source samples from the output sample's position
+				double distance = k - TAPS / 2 + 1 - fraction;
+				double c = cutoff * sinc(cutoff * distance) * blackman(distance / (TAPS / 2));
+				coefficients[phase * TAPS + k] = (float) c;
+				sum += c;
+			}
+			for (int k = 0; k < TAPS; k++) {
+				coefficients[phase * TAPS + k] /= sum;
+			}
+		}
+		return;
+	}
+
+	/**
+	 * Returns the number of output samples for {@code length} input samples.
+	 *
+	 * @param length number of input samples
+	 * @return number of output samples
+	 */
+	int outputLength(int length) {
+		return (int) ((long) length * up / down);
+	}
+
+	/**
+	 * Resamples {@code length} samples of {@code src}, starting at
+	 * {@code offset}, into a new array of {@link #outputLength(int)} samples.
+	 * Input beyond either end is treated as silence.
+	 *
+	 * @param src    source samples
+	 * @param offset offset in {@code src}
+	 * @param length number of samples
+	 * @return resampled audio
+	 */
+	short[] resample(short[] src, int offset, int length) {
+		short[] dst = new short[outputLength(length)];
+		for (int j = 0; j < dst.length; j++) {
+			long position = (long) j * down;
+			int first = (int) (position / up) - TAPS / 2 + 1;
+			int base = (int) (position % up) * TAPS;
+			// Clamp taps to the input, for the first and last few outputs
+			int from = Math.max(0, -first);
+			int to = Math.min(TAPS, length - first);
+			float sum = 0;
+			for (int k = from; k < to; k++) {
+				sum += coefficients[base + k] * src[offset + first + k];
+			}
+			dst[j] = Mixer.clip(sum);
+		}
+		return dst;
+	}
+
+	/**
+	 * Returns the normalized sinc function of {@code x}.
+	 *
+	 * @param x argument
+	 * @return {@code sin(πx)/(πx)}
+	 */
+	private static double sinc(double x) {
+		if (x == 0) {
+			return 1;
+		}
+		return Math.sin(Math.PI * x) / (Math.PI * x);
+	}
+
+	/**
+	 * Returns the Blackman window at {@code x}, for {@code x} in [-1, 1].
+	 *
+	 * @param x position in window
+	 * @return window value
+	 */
+	private static double blackman(double x) {
+		if (Math.abs(x) >= 1) {
+			return 0;
+		}
+		return 0.42 + 0.5 * Math.cos(Math.PI * x) + 0.08 * Math.cos(2 * Math.PI * x);
+	}
+
+	/**
+	 * Returns the greatest common divisor of {@code a} and {@code b}.
+	 *
+	 * @param a a positive integer
+	 * @param b a positive integer
+	 * @return greatest common divisor
+	 */
+	private static int gcd(int a, int b) {
+		while (b != 0) {
+			int t = a % b;
+			a = b;
+			b = t;
+		}
+		return a;
+	}
+}
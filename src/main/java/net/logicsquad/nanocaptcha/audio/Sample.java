@@ -1,8 +1,11 @@
 package net.logicsquad.nanocaptcha.audio;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Objects;
 
 import javax.sound.sampled.AudioFormat;
@@ -30,7 +33,22 @@ import org.slf4j.LoggerFactory;
  *
  * <p>
  * Data files in other formats will cause an
- * <code>IllegalArgumentException</code> to be thrown.
+ * <code>IllegalArgumentException</code> to be thrown. {@code Sample}s at a
+ * lower sample rate can be derived from these with an {@link AudioProfile} (see
+ * {@link #getFormat()}).
+ * </p>
+ *
+ * <p>
+ * Audio is decoded once, on construction, into an array of 16-bit PCM samples.
+ * A {@code Sample} is immutable: it can be read any number of times, and can be
+ * safely shared between threads (and cached). Several {@code Sample}s may share
+ * the same underlying array (see {@link #slice(int, int)}).
+ * </p>
+ *
+ * <p>
+ * Some {@code Sample}s produced by {@link Mixer} are rendered lazily: their
+ * audio is computed from their sources as it is read, and only held in full if
+ * it is requested in full (e.g., by {@link #getSamples()}).
  * </p>
  *
  * @author <a href="mailto:james.childers@gmail.com">James Childers</a>
@@ -44,7 +62,8 @@ public class Sample {
 	private static final Logger LOG = LoggerFactory.getLogger(Sample.class);
 
 	/**
-	 * {@link AudioFormat} for all {@code Sample}s
+	 * {@link AudioFormat} for decoded {@code Sample}s: those resampled for an
+	 * {@link AudioProfile} differ from it only in sample rate
 	 */
 	public static final AudioFormat SC_AUDIO_FORMAT = new AudioFormat(16_000, // sample rate
 			16, // sample size in bits
@@ -53,9 +72,65 @@ public class Sample {
 			false); // big endian?;
 
 	/**
-	 * {@link AudioInputStream} for this {@code Sample}
+	 * Amplitude at or below which a sample is treated as silence by
+	 * {@link #trimSilence()}
+	 */
+	private static final int SILENCE_THRESHOLD = 256;
+
+	/**
+	 * Audio kept either side of the non-silent region by {@link #trimSilence()},
+	 * in milliseconds
+	 */
+	private static final int TRIM_MARGIN_MILLIS = 5;
+
+	/**
+	 * Number of samples read at a time when scanning audio for
+	 * {@link #getMetadata()}
+	 */
+	private static final int SCAN_CHUNK_SIZE = 4_096;
+
+	/**
+	 * Size of buffer for reading audio streams
+	 */
+	private static final int READ_BUFFER_SIZE = 8_192;
+
+	/**
+	 * PCM data (never modified, and possibly shared with other {@code Sample}s),
+	 * or {@code null} for a lazily rendered {@code Sample}
+	 */
+	private final short[] pcm;
+
+	/**
+	 * Index of first sample in {@link #pcm}
+	 */
+	private final int offset;
+
+	/**
+	 * Number of samples
 	 */
-	private final AudioInputStream audioInputStream;
+	private final int length;
+
+	/**
+	 * Audio format
+	 */
+	private final AudioFormat format;
+
+	/**
+	 * This object without leading and trailing silence, once requested
+	 */
+	private volatile Sample trimmed;
+
+	/**
+	 * Loudness measurements for this object, once requested (or on preparation
+	 * by a {@link LoudnessNormalizer})
+	 */
+	private volatile ClipMetadata metadata;
+
+	/**
+	 * Upper bound on the magnitude of any sample in this object, or {@code -1} if
+	 * none is known
+	 */
+	private volatile int peakBound = -1;
 
 	/**
 	 * Constructor taking a filename.
@@ -64,11 +139,12 @@ public class Sample {
 	 * @throws NullPointerException if {@code filename} is {@code null}
 	 */
 	public Sample(String filename) {
-		this(Sample.class.getResourceAsStream(Objects.requireNonNull(filename)));
+		this(decode(Sample.class.getResourceAsStream(Objects.requireNonNull(filename)), true), false);
 	}
 
 	/**
-	 * Constructor taking an {@link InputStream}.
+	 * Constructor taking an {@link InputStream}. The stream is read to the end,
+	 * but not closed.
 	 *
 	 * @param is an {@link InputStream}
 	 * @throws NullPointerException     if {@code is} is {@code null}
@@ -78,39 +154,146 @@ public class Sample {
 	 *                                  is unable to read the audio stream
 	 */
 	public Sample(InputStream is) {
-		Objects.requireNonNull(is);
-		if (is instanceof AudioInputStream) {
-			audioInputStream = (AudioInputStream) is;
-		} else {
-			try {
-				audioInputStream = AudioSystem.getAudioInputStream(new BufferedInputStream(is));
-			} catch (UnsupportedAudioFileException | IOException e) {
-				LOG.error("Unable to get audio input stream.", e);
-				throw new RuntimeException(e);
-			}
-		}
-		if (!audioInputStream.getFormat().matches(SC_AUDIO_FORMAT)) {
-			throw new IllegalArgumentException("Unsupported audio format.");
-		}
+		this(decode(is, false), false);
+	}
+
+	/**
+	 * Constructor taking 16-bit PCM data in {@link #SC_AUDIO_FORMAT}. The data is
+	 * copied.
+	 *
+	 * @param samples PCM data
+	 * @throws NullPointerException if {@code samples} is {@code null}
+	 * @since 2.2
+	 */
+	public Sample(short[] samples) {
+		this(samples, true);
+	}
+
+	/**
+	 * Constructor taking PCM data, which is copied if {@code copy} is
+	 * {@code true}. Otherwise, this object takes ownership of {@code pcm}, which
+	 * must not be modified after this call.
+	 *
+	 * @param pcm  PCM data
+	 * @param copy should we copy {@code pcm}?
+	 */
+	private Sample(short[] pcm, boolean copy) {
+		this(copy ? Arrays.copyOf(pcm, pcm.length) : pcm, 0, pcm.length, SC_AUDIO_FORMAT);
+		this.peakBound = peak(this.pcm);
+	}
+
+	/**
+	 * Constructor for a view of {@code length} samples of {@code pcm}, starting at
+	 * {@code offset}, in {@code format}. {@code pcm} must not be modified after
+	 * this call.
+	 *
+	 * @param pcm    PCM data
+	 * @param offset index of first sample
+	 * @param length number of samples
+	 * @param format audio format
+	 */
+	Sample(short[] pcm, int offset, int length, AudioFormat format) {
+		this.pcm = pcm;
+		this.offset = offset;
+		this.length = length;
+		this.format = format;
 		return;
 	}
 
 	/**
-	 * Returns {@link AudioInputStream} for this {@code Sample}.
+	 * Constructor for a {@code Sample} of {@code length} samples that is not
+	 * backed by an array (e.g., one that is lazily rendered). Subclasses using
+	 * this constructor must override {@link #pcm()}, {@link #offset()} and
+	 * {@link #read(int, short[], int, int)}, and should override
+	 * {@link #mixInto(int, short[], int, int, float, float)} and
+	 * {@link #addInto(int, short[], int, int, float, float)} if {@link #pcm()} is
+	 * expensive.
+	 *
+	 * @param length number of samples
+	 * @param format audio format
+	 */
+	Sample(int length, AudioFormat format) {
+		this(null, 0, length, format);
+	}
+
+	/**
+	 * Returns a new {@code Sample} in {@code format} taking ownership of
+	 * {@code pcm}, which must not be modified after this call.
+	 *
+	 * @param pcm    PCM data
+	 * @param format audio format
+	 * @return new {@code Sample}
+	 */
+	static Sample wrap(short[] pcm, AudioFormat format) {
+		return new Sample(pcm, 0, pcm.length, format);
+	}
+
+	/**
+	 * Returns a new {@code Sample} in {@code format} taking ownership of
+	 * {@code pcm}, which must not be modified after this call, and in which no
+	 * sample's magnitude exceeds {@code peakBound}.
+	 *
+	 * @param pcm       PCM data
+	 * @param format    audio format
+	 * @param peakBound upper bound on sample magnitude
+	 * @return new {@code Sample}
+	 */
+	static Sample wrap(short[] pcm, AudioFormat format, int peakBound) {
+		Sample sample = wrap(pcm, format);
+		sample.peakBound = peakBound;
+		return sample;
+	}
+
+	/**
+	 * Returns the largest sample magnitude in {@code pcm}.
+	 *
+	 * @param pcm PCM data
+	 * @return peak magnitude
+	 */
+	static int peak(short[] pcm) {
+		int peak = 0;
+		for (short s : pcm) {
+			peak = Math.max(peak, Math.abs(s));
+		}
+		return peak;
+	}
+
+	/**
+	 * Returns a new {@code Sample} in {@code format} taking ownership of
+	 * {@code pcm}, which must not be modified after this call, with loudness
+	 * measurements {@code metadata} already made.
+	 *
+	 * @param pcm      PCM data
+	 * @param format   audio format
+	 * @param metadata loudness measurements for {@code pcm}
+	 * @return new {@code Sample}
+	 */
+	static Sample wrap(short[] pcm, AudioFormat format, ClipMetadata metadata) {
+		Sample sample = wrap(pcm, format, metadata.getPeak());
+		sample.metadata = metadata;
+		return sample;
+	}
+
+	/**
+	 * Returns a new {@link AudioInputStream} for this {@code Sample}. Each call
+	 * returns a new stream positioned at the start of the audio.
 	 *
 	 * @return {@link AudioInputStream}
 	 */
 	public AudioInputStream getAudioInputStream() {
-		return audioInputStream;
+		return new AudioInputStream(new ByteArrayInputStream(toByteArray()), format, length);
 	}
 
 	/**
-	 * Returns {@link AudioFormat} for this {@code Sample}.
+	 * Returns {@link AudioFormat} for this {@code Sample}. This is
+	 * {@link #SC_AUDIO_FORMAT}, unless this {@code Sample} has been resampled for
+	 * an {@link AudioProfile}: formats differ only in sample rate.
 	 *
 	 * @return {@link AudioFormat}
+	 * @since 2.2
 	 */
-	private AudioFormat getFormat() {
-		return audioInputStream.getFormat();
+	public AudioFormat getFormat() {
+		return format;
 	}
 
 	/**
@@ -118,98 +301,368 @@ public class Sample {
 	 *
 	 * @return number of samples for all channels
 	 */
-	long getSampleCount() {
-		long total = (audioInputStream.getFrameLength() * getFormat().getFrameSize() * 8)
-				/ getFormat().getSampleSizeInBits();
-		return total / getFormat().getChannels();
+	public long getSampleCount() {
+		return length;
 	}
 
 	/**
-	 * Returns interleaved samples for this {@code Sample}.
+	 * Returns a copy of the PCM data for this {@code Sample}.
 	 *
-	 * @return interleaved samples
+	 * @return PCM data
+	 * @since 2.2
 	 */
-	double[] getInterleavedSamples() {
-		double[] samples = new double[(int) getSampleCount()];
-		try {
-			getInterleavedSamples(0, getSampleCount(), samples);
-		} catch (IllegalArgumentException | IOException e) {
-			LOG.error("Unable to get interleaved samples.", e);
-		}
+	public short[] getSamples() {
+		return Arrays.copyOfRange(pcm(), offset(), offset() + length);
+	}
 
-		return samples;
+	/**
+	 * Returns a {@code Sample} containing {@code length} samples of this
+	 * {@code Sample}, starting at {@code start}. The new {@code Sample} shares
+	 * this object's data: no samples are copied.
+	 *
+	 * @param start  index of first sample
+	 * @param length number of samples
+	 * @return slice of this {@code Sample}
+	 * @throws IndexOutOfBoundsException if {@code start} or {@code length} is
+	 *                                   negative, or the slice extends beyond the
+	 *                                   end of this {@code Sample}
+	 * @since 2.2
+	 */
+	public Sample slice(int start, int length) {
+		if (start < 0 || length < 0 || start > this.length - length) {
+			throw new IndexOutOfBoundsException("Slice [" + start + ", +" + length + ") outside " + this.length + " samples.");
+		}
+		return sliceOf(start, length);
 	}
 
 	/**
-	 * Returns the interleaved decoded samples for all channels, from sample index
-	 * {@code start} (included) to sample index {@code end} (excluded) and copy them
-	 * into {@code samples}. {@code end} must not exceed {@code getSampleCount()},
-	 * and the number of samples must not be so large that the associated byte array
-	 * cannot be allocated.
+	 * Returns this {@code Sample} with leading and trailing silence removed
+	 * (keeping a margin of a few milliseconds either side of the audible part).
+	 * The result is a slice, so no samples are copied, and it is computed once and
+	 * retained: for a cached {@code Sample} (e.g., from {@link SampleCache}), the
+	 * silence is found only on first request.
 	 *
-	 * @param start   start index
-	 * @param end     end index
-	 * @param samples destination array
-	 * @return interleaved decoded samples for all channels
-	 * @throws IOException              if unable to read from
-	 *                                  {@link AudioInputStream}
-	 * @throws IllegalArgumentException if sample is too large
+	 * @return trimmed {@code Sample}
+	 * @since 2.2
 	 */
-	private double[] getInterleavedSamples(long start, long end, double[] samples) throws IOException {
-		long nbSamples = end - start;
-		long nbBytes = nbSamples * (getFormat().getSampleSizeInBits() / 8) * getFormat().getChannels();
-		if (nbBytes > Integer.MAX_VALUE) {
-			throw new IllegalArgumentException("Too many samples. Try using a smaller wav.");
+	public Sample trimSilence() {
+		Sample result = trimmed;
+		if (result == null) {
+			int[] region = audibleRegion();
+			if (region[0] == 0 && region[1] == length) {
+				result = this;
+			} else {
+				result = sliceOf(region[0], region[1] - region[0]);
+			}
+			trimmed = result;
 		}
-		// allocate a byte buffer
-		byte[] inBuffer = new byte[(int) nbBytes];
-		// read bytes from audio file
-		audioInputStream.read(inBuffer, 0, inBuffer.length);
-		// decode bytes into samples.
-		decodeBytes(inBuffer, samples);
+		return result;
+	}
 
-		return samples;
+	/**
+	 * <p>
+	 * Returns loudness measurements for this {@code Sample}: the audible region
+	 * (as kept by {@link #trimSilence()}), the peak sample magnitude and the RMS
+	 * level of the audible region. They are computed once and retained, so for a
+	 * cached {@code Sample} (e.g., from {@link SampleCache}) the audio is scanned
+	 * only on first request.
+	 * </p>
+	 *
+	 * <p>
+	 * For a {@code Sample} prepared by a {@link LoudnessNormalizer}, the
+	 * measurements are made during preparation, and also record the silence
+	 * trimmed from the source and the gain applied.
+	 * </p>
+	 *
+	 * @return loudness measurements
+	 * @since 2.2
+	 */
+	public ClipMetadata getMetadata() {
+		ClipMetadata result = metadata;
+		if (result == null) {
+			int[] region = audibleRegion();
+			short[] chunk = new short[Math.min(length, SCAN_CHUNK_SIZE)];
+			int peak = 0;
+			double sum = 0;
+			for (int start = 0; start < length; start += chunk.length) {
+				int count = Math.min(chunk.length, length - start);
+				read(start, chunk, 0, count);
+				for (int i = 0; i < count; i++) {
+					peak = Math.max(peak, Math.abs(chunk[i]));
+				}
+				// Part of this chunk inside the audible region
+				for (int i = Math.max(0, region[0] - start); i < Math.min(count, region[1] - start); i++) {
+					sum += (double) chunk[i] * chunk[i];
+				}
+			}
+			int audible = region[1] - region[0];
+			result = new ClipMetadata(region[0], audible, peak, audible == 0 ? 0 : Math.sqrt(sum / audible), 1.0);
+			peakBound = peak;
+			metadata = result;
+		}
+		return result;
 	}
 
 	/**
-	 * Decodes audio as bytes in {@code audioBytes} into audio as samples and writes
-	 * the result into {@code audioSamples}.
+	 * Returns the audible region of this {@code Sample}, from a few milliseconds
+	 * before the first sample above {@link #SILENCE_THRESHOLD} to a few
+	 * milliseconds after the last, as the index of its first sample followed by
+	 * the index after its last. If every sample is silent, the region is empty.
+	 * The audio is scanned in chunks (see {@link #read(int, short[], int, int)}),
+	 * inwards from each end, so it is never copied in full.
 	 *
-	 * @param audioBytes   source audio as bytes
-	 * @param audioSamples destination audio as samples
+	 * @return start and end of audible region
 	 */
-	private void decodeBytes(byte[] audioBytes, double[] audioSamples) {
-		int sampleSizeInBytes = getFormat().getSampleSizeInBits() / 8;
-		int[] sampleBytes = new int[sampleSizeInBytes];
-		int k = 0; // index in audioBytes
-		for (int i = 0; i < audioSamples.length; i++) {
-			// collect sample byte in big-endian order
-			if (getFormat().isBigEndian()) {
-				// bytes start with MSB
-				for (int j = 0; j < sampleSizeInBytes; j++) {
-					sampleBytes[j] = audioBytes[k++];
+	private int[] audibleRegion() {
+		short[] chunk = new short[Math.min(length, SCAN_CHUNK_SIZE)];
+		int first = -1;
+		for (int start = 0; start < length && first < 0; start += chunk.length) {
+			int count = Math.min(chunk.length, length - start);
+			read(start, chunk, 0, count);
+			for (int i = 0; i < count; i++) {
+				if (Math.abs(chunk[i]) > SILENCE_THRESHOLD) {
+					first = start + i;
+					break;
 				}
-			} else {
-				// bytes start with LSB
-				for (int j = sampleSizeInBytes - 1; j >= 0; j--) {
-					sampleBytes[j] = audioBytes[k++];
+			}
+		}
+		if (first < 0) {
+			return new int[] { 0, 0 };
+		}
+		// The chunk containing first has an audible sample, so this terminates
+		int last = -1;
+		for (int end = length; last < 0; end -= chunk.length) {
+			int start = Math.max(first, end - chunk.length);
+			read(start, chunk, 0, end - start);
+			for (int i = end - start - 1; i >= 0; i--) {
+				if (Math.abs(chunk[i]) > SILENCE_THRESHOLD) {
+					last = start + i;
+					break;
 				}
 			}
-			// get integer value from bytes
-			int ival = 0;
-			for (int j = 0; j < sampleSizeInBytes; j++) {
-				ival += sampleBytes[j];
-				if (j < sampleSizeInBytes - 1) {
-					ival <<= 8;
+		}
+		int margin = (int) (format.getSampleRate() * TRIM_MARGIN_MILLIS / 1000);
+		return new int[] { Math.max(0, first - margin), Math.min(length, last + 1 + margin) };
+	}
+
+	/**
+	 * Returns a {@code Sample} containing {@code length} samples of this
+	 * {@code Sample}, starting at {@code start}, which have already been checked
+	 * against this object's bounds.
+	 *
+	 * @param start  index of first sample
+	 * @param length number of samples
+	 * @return slice of this {@code Sample}
+	 */
+	Sample sliceOf(int start, int length) {
+		Sample slice = new Sample(pcm(), offset() + start, length, format);
+		slice.peakBound = peakBound;
+		return slice;
+	}
+
+	/**
+	 * Returns an upper bound on the magnitude of any sample in this object, if
+	 * one is known (e.g., from {@link #getMetadata()}), or {@code -1} otherwise.
+	 * Mixing {@code Sample}s whose bounds leave enough headroom needs no clipping
+	 * (see {@link #addInto(int, short[], int, int, float, float)}).
+	 *
+	 * @return peak bound, or {@code -1}
+	 */
+	int peakBound() {
+		return peakBound;
+	}
+
+	/**
+	 * Sets the bound returned by {@link #peakBound()}. Only for use on a
+	 * {@code Sample} that has not yet been published.
+	 *
+	 * @param peakBound upper bound on sample magnitude
+	 */
+	void setPeakBound(int peakBound) {
+		this.peakBound = peakBound;
+		return;
+	}
+
+	/**
+	 * Returns the underlying PCM array, which must not be modified. Samples for
+	 * this object start at {@link #offset()}.
+	 *
+	 * @return PCM data
+	 */
+	short[] pcm() {
+		return pcm;
+	}
+
+	/**
+	 * Returns the index of this object's first sample in {@link #pcm()}.
+	 *
+	 * @return offset
+	 */
+	int offset() {
+		return offset;
+	}
+
+	/**
+	 * Copies {@code count} samples, starting at sample index {@code start}, into
+	 * {@code dst} at {@code dstOffset}.
+	 *
+	 * @param start     index of first sample
+	 * @param dst       destination array
+	 * @param dstOffset offset in {@code dst}
+	 * @param count     number of samples
+	 */
+	void read(int start, short[] dst, int dstOffset, int count) {
+		System.arraycopy(pcm(), offset() + start, dst, dstOffset, count);
+		return;
+	}
+
+	/**
+	 * Mixes {@code count} samples, starting at sample index {@code start}, into
+	 * {@code dst} at {@code dstOffset}. Each sample in {@code dst} is replaced by
+	 * the sum of itself multiplied by {@code dstVolume} and the corresponding
+	 * sample from this object multiplied by {@code volume}, clipped to the range
+	 * of a 16-bit sample.
+	 *
+	 * @param start     index of first sample
+	 * @param dst       destination array
+	 * @param dstOffset offset in {@code dst}
+	 * @param count     number of samples
+	 * @param dstVolume multiplier for samples in {@code dst}
+	 * @param volume    multiplier for samples from this object
+	 */
+	void mixInto(int start, short[] dst, int dstOffset, int count, float dstVolume, float volume) {
+		short[] src = pcm();
+		int j = offset() + start;
+		for (int i = dstOffset; i < dstOffset + count; i++) {
+			dst[i] = Mixer.clip(dst[i] * dstVolume + src[j++] * volume);
+		}
+		return;
+	}
+
+	/**
+	 * As {@link #mixInto(int, short[], int, int, float, float)}, but without
+	 * clipping: the caller guarantees (e.g., from {@link #peakBound()}) that no
+	 * sum exceeds the range of a 16-bit sample, so each is a plain multiply-add.
+	 *
+	 * @param start     index of first sample
+	 * @param dst       destination array
+	 * @param dstOffset offset in {@code dst}
+	 * @param count     number of samples
+	 * @param dstVolume multiplier for samples in {@code dst}
+	 * @param volume    multiplier for samples from this object
+	 */
+	void addInto(int start, short[] dst, int dstOffset, int count, float dstVolume, float volume) {
+		short[] src = pcm();
+		int j = offset() + start;
+		for (int i = dstOffset; i < dstOffset + count; i++) {
+			dst[i] = (short) (dst[i] * dstVolume + src[j++] * volume);
+		}
+		return;
+	}
+
+	/**
+	 * Returns this {@code Sample} encoded as little-endian 16-bit PCM.
+	 *
+	 * @return encoded audio
+	 */
+	byte[] toByteArray() {
+		byte[] buffer = new byte[length * 2];
+		encode(pcm(), offset(), length, buffer, 0);
+		return buffer;
+	}
+
+	/**
+	 * Encodes {@code count} samples from {@code src}, starting at
+	 * {@code srcOffset}, as little-endian 16-bit PCM into {@code dst} at
+	 * {@code dstOffset}.
+	 *
+	 * @param src       source samples
+	 * @param srcOffset offset in {@code src}
+	 * @param count     number of samples
+	 * @param dst       destination array
+	 * @param dstOffset offset in {@code dst}
+	 * @return number of bytes written
+	 */
+	static int encode(short[] src, int srcOffset, int count, byte[] dst, int dstOffset) {
+		int k = dstOffset;
+		int end = srcOffset + count;
+		for (int i = srcOffset; i < end; i++) {
+			short s = src[i];
+			dst[k++] = (byte) s;
+			dst[k++] = (byte) (s >> 8);
+		}
+		return k - dstOffset;
+	}
+
+	/**
+	 * Reads audio from {@code is} and decodes it into PCM data.
+	 *
+	 * @param is    an {@link InputStream}
+	 * @param close should we close {@code is} when done?
+	 * @return PCM data
+	 * @throws NullPointerException     if {@code is} is {@code null}
+	 * @throws IllegalArgumentException if the audio format is unsupported
+	 * @throws RuntimeException         if the audio stream cannot be read
+	 */
+	private static short[] decode(InputStream is, boolean close) {
+		Objects.requireNonNull(is);
+		try {
+			AudioInputStream audioInputStream;
+			if (is instanceof AudioInputStream) {
+				audioInputStream = (AudioInputStream) is;
+			} else {
+				audioInputStream = AudioSystem.getAudioInputStream(new BufferedInputStream(is));
+			}
+			if (!audioInputStream.getFormat().matches(SC_AUDIO_FORMAT)) {
+				throw new IllegalArgumentException("Unsupported audio format.");
+			}
+			return decodeBytes(readFully(audioInputStream));
+		} catch (UnsupportedAudioFileException | IOException e) {
+			LOG.error("Unable to get audio input stream.", e);
+			throw new RuntimeException(e);
+		} finally {
+			if (close) {
+				try {
+					is.close();
+				} catch (IOException e) {
+					LOG.warn("Unable to close audio input stream.", e);
 				}
 			}
-			// decode value
-			double ratio = Math.pow(2., getFormat().getSampleSizeInBits() - 1);
-			double val = ((double) ival) / ratio;
-			audioSamples[i] = val;
 		}
 	}
 
+	/**
+	 * Reads {@code is} to the end and returns its contents.
+	 *
+	 * @param is an {@link InputStream}
+	 * @return contents of {@code is}
+	 * @throws IOException if unable to read from {@code is}
+	 */
+	private static byte[] readFully(InputStream is) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[READ_BUFFER_SIZE];
+		int read;
+		while ((read = is.read(buffer)) != -1) {
+			baos.write(buffer, 0, read);
+		}
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Decodes little-endian 16-bit audio in {@code audioBytes} into PCM samples.
+	 *
+	 * @param audioBytes source audio as bytes
+	 * @return PCM samples
+	 */
+	private static short[] decodeBytes(byte[] audioBytes) {
+		short[] samples = new short[audioBytes.length / 2];
+		int k = 0;
+		for (int i = 0; i < samples.length; i++) {
+			samples[i] = (short) ((audioBytes[k++] & 0xff) | (audioBytes[k++] << 8));
+		}
+		return samples;
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder(26);
@@ -0,0 +1,398 @@
+package net.logicsquad.nanocaptcha.audio;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Thread-safe cache of decoded {@link Sample}s for audio resources, keyed by
+ * resource name (e.g., {@code /sounds/en/numbers/3_c.wav}). Each resource is
+ * read and decoded once, on first request (or on {@link #preload(Collection)});
+ * every subsequent {@link #get(String)} returns the cached {@link Sample}, with
+ * no I/O or header parsing.
+ * </p>
+ *
+ * <p>
+ * Resources can also be requested for an {@link AudioProfile} (see
+ * {@link #get(String, AudioProfile)}): each is then resampled once, from the
+ * cached decoded {@link Sample}, and the result is cached alongside it.
+ * Similarly, resources can be requested prepared by a
+ * {@link LoudnessNormalizer} (see
+ * {@link #get(String, AudioProfile, LoudnessNormalizer)}): each is then trimmed
+ * and normalized once, at load.
+ * </p>
+ *
+ * <p>
+ * {@link Sample}s are immutable, so those returned from this cache can be
+ * handed out to any number of threads.
+ * </p>
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public final class SampleCache {
+	/**
+	 * Shared instance
+	 */
+	private static final SampleCache SHARED = new SampleCache();
+
+	/**
+	 * Map from resource name to decoded {@link Sample}
+	 */
+	private final ConcurrentMap<String, Sample> samples = new ConcurrentHashMap<>();
+
+	/**
+	 * Number of requests served from the cache
+	 */
+	private final LongAdder hits = new LongAdder();
+
+	/**
+	 * Number of requests that required a resource to be decoded
+	 */
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Constructor
+	 */
+	public SampleCache() {
+		return;
+	}
+
+	/**
+	 * Returns the shared {@code SampleCache} used by the built-in producers.
+	 *
+	 * @return shared {@code SampleCache}
+	 */
+	public static SampleCache shared() {
+		return SHARED;
+	}
+
+	/**
+	 * Returns a {@link Sample} for the resource {@code filename}, decoding and
+	 * caching it if this is the first request for that resource.
+	 *
+	 * @param filename resource name
+	 * @return cached {@link Sample}
+	 * @throws NullPointerException     if {@code filename} is {@code null}, or
+	 *                                  the resource cannot be found
+	 * @throws IllegalArgumentException if the audio format is unsupported
+	 */
+	public Sample get(String filename) {
+		Objects.requireNonNull(filename);
+		Sample sample = samples.get(filename);
+		if (sample == null) {
+			sample = samples.computeIfAbsent(filename, this::decode);
+		} else {
+			hits.increment();
+		}
+		return sample;
+	}
+
+	/**
+	 * Returns a {@link Sample} for the resource {@code filename} resampled for
+	 * {@code profile}, decoding, resampling and caching it if this is the first
+	 * request for that resource in {@code profile}.
+	 *
+	 * @param filename resource name
+	 * @param profile  an {@link AudioProfile}
+	 * @return cached {@link Sample}
+	 * @throws NullPointerException     if either argument is {@code null}, or the
+	 *                                  resource cannot be found
+	 * @throws IllegalArgumentException if the audio format is unsupported
+	 * @since 2.2
+	 */
+	public Sample get(String filename, AudioProfile profile) {
+		Objects.requireNonNull(filename);
+		if (profile == AudioProfile.STANDARD) {
+			return get(filename);
+		}
+		String key = key(filename, profile);
+		Sample sample = samples.get(key);
+		if (sample == null) {
+			Sample source = samples.computeIfAbsent(filename, this::decode);
+			sample = samples.computeIfAbsent(key, k -> resample(source, profile));
+		} else {
+			hits.increment();
+		}
+		return sample;
+	}
+
+	/**
+	 * Returns a {@link Sample} for the resource {@code filename} resampled for
+	 * {@code profile} and prepared by {@code normalizer} (that is, with silence
+	 * trimmed, normalized in loudness, and carrying its {@link ClipMetadata}),
+	 * decoding, resampling, normalizing and caching it if this is the first such
+	 * request.
+	 *
+	 * @param filename   resource name
+	 * @param profile    an {@link AudioProfile}
+	 * @param normalizer a {@link LoudnessNormalizer}
+	 * @return cached {@link Sample}
+	 * @throws NullPointerException     if any argument is {@code null}, or the
+	 *                                  resource cannot be found
+	 * @throws IllegalArgumentException if the audio format is unsupported
+	 * @since 2.2
+	 */
+	public Sample get(String filename, AudioProfile profile, LoudnessNormalizer normalizer) {
+		String key = key(Objects.requireNonNull(filename), Objects.requireNonNull(profile), Objects.requireNonNull(normalizer));
+		Sample sample = samples.get(key);
+		if (sample == null) {
+			Sample source = load(filename, profile);
+			sample = samples.computeIfAbsent(key, k -> normalize(source, normalizer));
+		} else {
+			hits.increment();
+		}
+		return sample;
+	}
+
+	/**
+	 * Returns a {@link Sample} for a window of the resource {@code filename},
+	 * starting at sample index {@code start} and containing at most {@code length}
+	 * samples, decoding and caching the resource if this is the first request for
+	 * it. The window shares the cached data: no samples are copied.
+	 *
+	 * @param filename resource name
+	 * @param start    index of first sample in window
+	 * @param length   maximum number of samples in window
+	 * @return window of cached {@link Sample}
+	 * @throws NullPointerException      if {@code filename} is {@code null}, or
+	 *                                   the resource cannot be found
+	 * @throws IllegalArgumentException  if the audio format is unsupported
+	 * @throws IndexOutOfBoundsException if {@code start} or {@code length} is
+	 *                                   negative, or {@code start} is beyond the
+	 *                                   end of the resource
+	 */
+	public Sample get(String filename, int start, int length) {
+		Sample sample = get(filename);
+		int frames = (int) sample.getSampleCount();
+		if (start < 0 || length < 0 || start > frames) {
+			throw new IndexOutOfBoundsException("Window [" + start + ", +" + length + ") outside " + frames + " samples.");
+		}
+		return sample.slice(start, Math.min(length, frames - start));
+	}
+
+	/**
+	 * Decodes and caches each resource in {@code filenames} that is not already
+	 * cached.
+	 *
+	 * @param filenames resource names
+	 * @throws NullPointerException if {@code filenames} is {@code null}
+	 */
+	public void preload(Collection<String> filenames) {
+		for (String filename : filenames) {
+			samples.computeIfAbsent(Objects.requireNonNull(filename), this::decode);
+		}
+		return;
+	}
+
+	/**
+	 * Decodes, resamples for {@code profile} and caches each resource in
+	 * {@code filenames} that is not already cached in {@code profile}.
+	 *
+	 * @param filenames resource names
+	 * @param profile   an {@link AudioProfile}
+	 * @throws NullPointerException if either argument is {@code null}
+	 * @since 2.2
+	 */
+	public void preload(Collection<String> filenames, AudioProfile profile) {
+		Objects.requireNonNull(profile);
+		if (profile == AudioProfile.STANDARD) {
+			preload(filenames);
+			return;
+		}
+		for (String filename : filenames) {
+			load(Objects.requireNonNull(filename), profile);
+		}
+		return;
+	}
+
+	/**
+	 * Decodes, resamples for {@code profile}, prepares with {@code normalizer} and
+	 * caches each resource in {@code filenames} that is not already cached in that
+	 * form.
+	 *
+	 * @param filenames  resource names
+	 * @param profile    an {@link AudioProfile}
+	 * @param normalizer a {@link LoudnessNormalizer}
+	 * @throws NullPointerException if any argument is {@code null}
+	 * @since 2.2
+	 */
+	public void preload(Collection<String> filenames, AudioProfile profile, LoudnessNormalizer normalizer) {
+		Objects.requireNonNull(profile);
+		Objects.requireNonNull(normalizer);
+		for (String filename : filenames) {
+			String key = key(Objects.requireNonNull(filename), profile, normalizer);
+			if (!samples.containsKey(key)) {
+				Sample source = load(filename, profile);
+				samples.computeIfAbsent(key, k -> normalize(source, normalizer));
+			}
+		}
+		return;
+	}
+
+	/**
+	 * Adds every {@link Sample} in {@code bank} to this cache, under its name in
+	 * {@code bank}, replacing any {@link Sample} already cached under that name.
+	 * Any {@link Sample}s resampled or normalized from a replaced {@link Sample}
+	 * are removed, so they are derived afresh from the bank on next request. The
+	 * cached {@link Sample}s read directly from the bank's mapped file.
+	 *
+	 * @param bank a {@link SoundBank}
+	 * @throws NullPointerException if {@code bank} is {@code null}
+	 * @since 2.2
+	 */
+	public void load(SoundBank bank) {
+		Set<String> replaced = new HashSet<>();
+		for (String name : bank.getNames()) {
+			if (samples.put(name, bank.get(name)) != null) {
+				replaced.add(name);
+			}
+		}
+		if (!replaced.isEmpty()) {
+			// Derived keys are the resource name followed by '@' (see key())
+			samples.keySet().removeIf(key -> {
+				int at = key.lastIndexOf('@');
+				return at >= 0 && replaced.contains(key.substring(0, at));
+			});
+		}
+		return;
+	}
+
+	/**
+	 * Is {@code filename} currently cached?
+	 *
+	 * @param filename resource name
+	 * @return {@code true} if {@code filename} is cached, otherwise {@code false}
+	 */
+	public boolean contains(String filename) {
+		return samples.containsKey(filename);
+	}
+
+	/**
+	 * Returns the number of cached resources.
+	 *
+	 * @return number of cached resources
+	 */
+	public int size() {
+		return samples.size();
+	}
+
+	/**
+	 * Returns the number of requests served from the cache.
+	 *
+	 * @return hit count
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of requests (including preloads) that required a resource
+	 * to be decoded or resampled.
+	 *
+	 * @return miss count
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * Removes all cached resources and resets the hit and miss counts.
+	 */
+	public void clear() {
+		samples.clear();
+		hits.reset();
+		misses.reset();
+		return;
+	}
+
+	/**
+	 * Reads and decodes the resource {@code filename}.
+	 *
+	 * @param filename resource name
+	 * @return decoded {@link Sample}
+	 */
+	private Sample decode(String filename) {
+		misses.increment();
+		return new Sample(filename);
+	}
+
+	/**
+	 * Returns the cached {@link Sample} for the resource {@code filename} in
+	 * {@code profile}, decoding and resampling it if required, without counting a
+	 * hit.
+	 *
+	 * @param filename resource name
+	 * @param profile  an {@link AudioProfile}
+	 * @return cached {@link Sample}
+	 */
+	private Sample load(String filename, AudioProfile profile) {
+		Sample source = samples.computeIfAbsent(filename, this::decode);
+		if (profile == AudioProfile.STANDARD) {
+			return source;
+		}
+		return samples.computeIfAbsent(key(filename, profile), k -> resample(source, profile));
+	}
+
+	/**
+	 * Prepares {@code source} with {@code normalizer}.
+	 *
+	 * @param source     decoded {@link Sample}
+	 * @param normalizer a {@link LoudnessNormalizer}
+	 * @return prepared {@link Sample}
+	 */
+	private Sample normalize(Sample source, LoudnessNormalizer normalizer) {
+		misses.increment();
+		return normalizer.normalize(source);
+	}
+
+	/**
+	 * Resamples {@code source} for {@code profile}.
+	 *
+	 * @param source  decoded {@link Sample}
+	 * @param profile an {@link AudioProfile}
+	 * @return resampled {@link Sample}
+	 */
+	private Sample resample(Sample source, AudioProfile profile) {
+		misses.increment();
+		return profile.resample(source);
+	}
+
+	/**
+	 * Returns the cache key for the resource {@code filename} in {@code profile}.
+	 *
+	 * @param filename resource name
+	 * @param profile  an {@link AudioProfile} other than
+	 *                 {@link AudioProfile#STANDARD}
+	 * @return cache key
+	 */
+	private static String key(String filename, AudioProfile profile) {
+		return filename + '@' + profile.name();
+	}
+
+	/**
+	 * Returns the cache key for the resource {@code filename} in {@code profile},
+	 * prepared by {@code normalizer}.
+	 *
+	 * @param filename   resource name
+	 * @param profile    an {@link AudioProfile}
+	 * @param normalizer a {@link LoudnessNormalizer}
+	 * @return cache key
+	 */
+	private static String key(String filename, AudioProfile profile, LoudnessNormalizer normalizer) {
+		return key(filename, profile) + '#' + normalizer.getTargetRmsDbfs() + '/' + normalizer.getPeakCeilingDbfs();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(48);
+		sb.append("[SampleCache: size=").append(size()).append(" hits=").append(getHitCount()).append(" misses=")
+				.append(getMissCount()).append(']');
+		return sb.toString();
+	}
+}
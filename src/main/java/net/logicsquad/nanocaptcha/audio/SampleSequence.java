@@ -0,0 +1,222 @@
+package net.logicsquad.nanocaptcha.audio;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * <p>
+ * Lazy concatenation of {@link Sample}s. A sequence records, for each segment,
+ * a reference to its source {@link Sample} and a gain, and can also hold
+ * stretches of silence. Building a sequence of <i>n</i> segments costs
+ * <i>O(n)</i>, regardless of their length: no audio is copied. The audio is
+ * rendered only as it is read (e.g., by
+ * {@link AudioCaptcha#writeWav(java.io.OutputStream)}), in the same pass that
+ * mixes in any noise (see {@link Mixer#mix(List, double, Sample, double)}).
+ * </p>
+ *
+ * <pre>
+ * Sample sequence = new SampleSequence.Builder()
+ *         .add(first)
+ *         .addSilence(800)
+ *         .add(second, 0.8)
+ *         .build();
+ * </pre>
+ *
+ * <p>
+ * Adding a sequence to a sequence splices in its segments, so sequences never
+ * nest.
+ * </p>
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public final class SampleSequence {
+	/**
+	 * Private constructor for non-instantiability.
+	 */
+	private SampleSequence() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Returns the lazy concatenation of {@code samples}.
+	 *
+	 * @param samples a list of {@link Sample}s
+	 * @return concatenation {@link Sample}
+	 * @throws NullPointerException     if {@code samples} is {@code null} or
+	 *                                  contains {@code null}
+	 * @throws IllegalArgumentException if {@code samples} differ in format
+	 */
+	public static Sample of(List<Sample> samples) {
+		return new Builder().addAll(samples).build();
+	}
+
+	/**
+	 * Builder for a lazily concatenated {@link Sample}.
+	 */
+	public static final class Builder implements net.logicsquad.nanocaptcha.Builder<Sample> {
+		/**
+		 * Initial capacity for segments
+		 */
+		private static final int INITIAL_CAPACITY = 8;
+
+		/**
+		 * Segment sources ({@code null} for silence)
+		 */
+		private Sample[] segments = new Sample[INITIAL_CAPACITY];
+
+		/**
+		 * Multiplier for each segment
+		 */
+		private float[] gains = new float[INITIAL_CAPACITY];
+
+		/**
+		 * Length of each segment
+		 */
+		private int[] lengths = new int[INITIAL_CAPACITY];
+
+		/**
+		 * Number of segments
+		 */
+		private int size;
+
+		/**
+		 * Format if all segments are silent
+		 */
+		private AudioFormat format = Sample.SC_AUDIO_FORMAT;
+
+		/**
+		 * Constructor
+		 */
+		public Builder() {
+			return;
+		}
+
+		/**
+		 * Appends {@code sample}.
+		 *
+		 * @param sample a {@link Sample}
+		 * @return this
+		 * @throws NullPointerException if {@code sample} is {@code null}
+		 */
+		public Builder add(Sample sample) {
+			return add(sample, 1.0);
+		}
+
+		/**
+		 * Appends {@code sample}, with its volume adjusted by the multiplier
+		 * {@code gain}.
+		 *
+		 * @param sample a {@link Sample}
+		 * @param gain   multiplier
+		 * @return this
+		 * @throws NullPointerException if {@code sample} is {@code null}
+		 */
+		public Builder add(Sample sample, double gain) {
+			Objects.requireNonNull(sample);
+			if (sample instanceof MixedSample && ((MixedSample) sample).isSequence()) {
+				((MixedSample) sample).appendTo(this, (float) gain);
+			} else {
+				addSegment(sample, (float) gain, (int) sample.getSampleCount());
+			}
+			return this;
+		}
+
+		/**
+		 * Appends each of {@code samples}.
+		 *
+		 * @param samples a list of {@link Sample}s
+		 * @return this
+		 * @throws NullPointerException if {@code samples} is {@code null} or
+		 *                              contains {@code null}
+		 */
+		public Builder addAll(List<Sample> samples) {
+			for (Sample sample : samples) {
+				add(sample);
+			}
+			return this;
+		}
+
+		/**
+		 * Appends {@code length} samples of silence.
+		 *
+		 * @param length number of samples
+		 * @return this
+		 * @throws IllegalArgumentException if {@code length} is negative
+		 */
+		public Builder addSilence(int length) {
+			if (length < 0) {
+				throw new IllegalArgumentException("Silence length must not be negative.");
+			}
+			addSegment(null, 1.0f, length);
+			return this;
+		}
+
+		/**
+		 * Sets the format of the result if all segments are silent (default:
+		 * {@link Sample#SC_AUDIO_FORMAT}).
+		 *
+		 * @param format an {@link AudioFormat}
+		 * @return this
+		 */
+		Builder format(AudioFormat format) {
+			this.format = format;
+			return this;
+		}
+
+		/**
+		 * Appends a segment.
+		 *
+		 * @param sample source {@link Sample}, or {@code null} for silence
+		 * @param gain   multiplier
+		 * @param length number of samples
+		 */
+		void addSegment(Sample sample, float gain, int length) {
+			if (size == segments.length) {
+				segments = Arrays.copyOf(segments, size * 2);
+				gains = Arrays.copyOf(gains, size * 2);
+				lengths = Arrays.copyOf(lengths, size * 2);
+			}
+			segments[size] = sample;
+			gains[size] = gain;
+			lengths[size] = length;
+			size++;
+			return;
+		}
+
+		/**
+		 * Returns a lazily rendered {@link Sample} for the segments added so far.
+		 *
+		 * @return concatenation {@link Sample}
+		 * @throws IllegalArgumentException if the added {@link Sample}s differ in
+		 *                                  format
+		 */
+		@Override
+		public Sample build() {
+			return build(1.0f, null, 0.0f);
+		}
+
+		/**
+		 * Returns a lazily rendered {@link Sample} for the segments added so far,
+		 * with each segment's volume adjusted by the multiplier {@code volume},
+		 * mixed with {@code noise}.
+		 *
+		 * @param volume      multiplier for segments
+		 * @param noise       noise (may be {@code null})
+		 * @param noiseVolume multiplier for {@code noise}
+		 * @return mixed {@link Sample}
+		 * @throws IllegalArgumentException if the added {@link Sample}s and
+		 *                                  {@code noise} differ in format
+		 */
+		Sample build(float volume, Sample noise, float noiseVolume) {
+			float[] scaled = Arrays.copyOf(gains, size);
+			for (int i = 0; i < size; i++) {
+				scaled[i] *= volume;
+			}
+			return new MixedSample(Arrays.copyOf(segments, size), scaled, Arrays.copyOf(lengths, size), noise, noiseVolume, format);
+		}
+	}
+}
@@ -0,0 +1,319 @@
+package net.logicsquad.nanocaptcha.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * <p>
+ * A packed bank of audio {@link Sample}s in a single file, memory-mapped for
+ * reading. A bank holds raw 16-bit PCM (in {@link Sample#SC_AUDIO_FORMAT}) for
+ * any number of named samples, typically the built-in voice and noise resources,
+ * preceded by an index. Opening a bank maps the file and reads the index: there
+ * is no per-sample parsing or decoding, and the {@link Sample}s returned by
+ * {@link #get(String)} read directly from the mapping. Pages of the file are
+ * shared (via the operating system's page cache) by every JVM on a host that
+ * maps the same bank.
+ * </p>
+ *
+ * <p>
+ * A bank can be written at build time with {@link #write(Path, Map)}, or on
+ * first run with {@link #openOrCreate(Path, Collection)}. To serve the built-in
+ * producers from a bank, add it to the shared {@link SampleCache}:
+ * </p>
+ *
+ * <pre>
+ * SoundBank bank = SoundBank.openOrCreate(path, resourceNames);
+ * SampleCache.shared().load(bank);
+ * </pre>
+ *
+ * <p>
+ * The file format (all integers little-endian) is:
+ * </p>
+ *
+ * <ul>
+ * <li>magic number {@code NCSB};</li>
+ * <li>format version (32-bit);</li>
+ * <li>number of entries (32-bit);</li>
+ * <li>offset in bytes of PCM data (32-bit);</li>
+ * <li>for each entry: name length (16-bit), UTF-8 name, index of first sample
+ * in PCM data (32-bit), and number of samples (32-bit); and</li>
+ * <li>PCM data.</li>
+ * </ul>
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public final class SoundBank {
+	/**
+	 * Magic number identifying a bank file
+	 */
+	private static final byte[] MAGIC = { 'N', 'C', 'S', 'B' };
+
+	/**
+	 * Current format version
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Length of fixed header
+	 */
+	private static final int HEADER_LENGTH = 16;
+
+	/**
+	 * Alignment of PCM data in file
+	 */
+	private static final int DATA_ALIGNMENT = 8;
+
+	/**
+	 * Map from name to {@link Sample}
+	 */
+	private final Map<String, Sample> samples;
+
+	/**
+	 * Bank file
+	 */
+	private final Path file;
+
+	/**
+	 * Constructor
+	 *
+	 * @param file    bank file
+	 * @param samples map from name to {@link Sample}
+	 */
+	private SoundBank(Path file, Map<String, Sample> samples) {
+		this.file = file;
+		this.samples = Collections.unmodifiableMap(samples);
+		return;
+	}
+
+	/**
+	 * Opens and memory-maps the bank in {@code file}.
+	 *
+	 * @param file bank file
+	 * @return {@code SoundBank}
+	 * @throws NullPointerException     if {@code file} is {@code null}
+	 * @throws IOException              if {@code file} cannot be read
+	 * @throws IllegalArgumentException if {@code file} is not a valid bank
+	 */
+	public static SoundBank open(Path file) throws IOException {
+		Objects.requireNonNull(file);
+		MappedByteBuffer mapped;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		ByteBuffer bytes = mapped.order(ByteOrder.LITTLE_ENDIAN);
+		if (bytes.limit() < HEADER_LENGTH || !hasMagic(bytes)) {
+			throw new IllegalArgumentException("Not a sound bank: " + file);
+		}
+		if (bytes.getInt(4) != VERSION) {
+			throw new IllegalArgumentException("Unsupported sound bank version: " + bytes.getInt(4));
+		}
+		int count = bytes.getInt(8);
+		int dataOffset = bytes.getInt(12);
+		if (count < 0 || dataOffset % DATA_ALIGNMENT != 0 || dataOffset > bytes.limit()) {
+			throw new IllegalArgumentException("Corrupt sound bank: " + file);
+		}
+		ShortBuffer data = bytes.asShortBuffer();
+		int dataBase = dataOffset / 2;
+		int dataLength = (bytes.limit() - dataOffset) / 2;
+		Map<String, Sample> samples = new LinkedHashMap<>();
+		int k = HEADER_LENGTH;
+		try {
+			for (int i = 0; i < count; i++) {
+				byte[] name = new byte[bytes.getShort(k) & 0xffff];
+				k += 2;
+				for (int j = 0; j < name.length; j++) {
+					name[j] = bytes.get(k++);
+				}
+				int start = bytes.getInt(k);
+				int length = bytes.getInt(k + 4);
+				k += 8;
+				if (start < 0 || length < 0 || start > dataLength - length) {
+					throw new IllegalArgumentException("Corrupt sound bank: " + file);
+				}
+				samples.put(new String(name, StandardCharsets.UTF_8), new MappedSample(data, dataBase + start, length));
+			}
+		} catch (IndexOutOfBoundsException e) {
+			throw new IllegalArgumentException("Corrupt sound bank: " + file, e);
+		}
+		return new SoundBank(file, samples);
+	}
+
+	/**
+	 * Opens the bank in {@code file} if it exists and contains all of
+	 * {@code resourceNames}. Otherwise, decodes each of {@code resourceNames} (via
+	 * {@link Sample#Sample(String)}), writes them to {@code file} and opens the
+	 * result.
+	 *
+	 * @param file          bank file
+	 * @param resourceNames names of audio resources
+	 * @return {@code SoundBank}
+	 * @throws NullPointerException if either argument is {@code null}
+	 * @throws IOException          if {@code file} cannot be read or written
+	 */
+	public static SoundBank openOrCreate(Path file, Collection<String> resourceNames) throws IOException {
+		Objects.requireNonNull(file);
+		Objects.requireNonNull(resourceNames);
+		if (Files.isRegularFile(file)) {
+			try {
+				SoundBank bank = open(file);
+				if (bank.getNames().containsAll(resourceNames)) {
+					return bank;
+				}
+			} catch (IllegalArgumentException e) {
+				// Fall through and rewrite it
+			}
+		}
+		Map<String, Sample> samples = new LinkedHashMap<>();
+		for (String name : resourceNames) {
+			samples.put(name, new Sample(name));
+		}
+		write(file, samples);
+		return open(file);
+	}
+
+	/**
+	 * Writes {@code samples} to {@code file} as a bank. The bank is written to a
+	 * temporary file, which then replaces {@code file}, so that a bank being read
+	 * concurrently is never seen partially written.
+	 *
+	 * @param file    bank file
+	 * @param samples map from name to {@link Sample}
+	 * @throws NullPointerException     if either argument is {@code null}
+	 * @throws IOException              if {@code file} cannot be written
+	 * @throws IllegalArgumentException if a name is longer than 65,535 bytes in
+	 *                                  UTF-8, or a {@link Sample} is not in
+	 *                                  {@link Sample#SC_AUDIO_FORMAT}
+	 */
+	public static void write(Path file, Map<String, Sample> samples) throws IOException {
+		Objects.requireNonNull(file);
+		Objects.requireNonNull(samples);
+		int indexLength = 0;
+		long totalSamples = 0;
+		for (Map.Entry<String, Sample> entry : samples.entrySet()) {
+			int nameLength = entry.getKey().getBytes(StandardCharsets.UTF_8).length;
+			if (nameLength > 0xffff) {
+				throw new IllegalArgumentException("Name too long: " + entry.getKey());
+			}
+			if (!entry.getValue().getFormat().matches(Sample.SC_AUDIO_FORMAT)) {
+				throw new IllegalArgumentException("Unsupported audio format: " + entry.getKey());
+			}
+			indexLength += 2 + nameLength + 8;
+			totalSamples += entry.getValue().getSampleCount();
+		}
+		int dataOffset = (HEADER_LENGTH + indexLength + DATA_ALIGNMENT - 1) / DATA_ALIGNMENT * DATA_ALIGNMENT;
+		if (dataOffset + totalSamples * 2 > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many samples for a single sound bank.");
+		}
+		byte[] headerBytes = new byte[dataOffset];
+		ByteBuffer header = ByteBuffer.wrap(headerBytes).order(ByteOrder.LITTLE_ENDIAN);
+		header.put(MAGIC).putInt(VERSION).putInt(samples.size()).putInt(dataOffset);
+		int start = 0;
+		for (Map.Entry<String, Sample> entry : samples.entrySet()) {
+			byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+			int length = (int) entry.getValue().getSampleCount();
+			header.putShort((short) name.length).put(name).putInt(start).putInt(length);
+			start += length;
+		}
+		Path directory = file.toAbsolutePath().getParent();
+		Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				writeFully(channel, ByteBuffer.wrap(headerBytes));
+				for (Sample sample : samples.values()) {
+					writeFully(channel, ByteBuffer.wrap(sample.toByteArray()));
+				}
+			}
+			try {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+		return;
+	}
+
+	/**
+	 * Returns the {@link Sample} named {@code name}, which reads directly from the
+	 * mapped bank, or {@code null} if there is no such {@link Sample}.
+	 *
+	 * @param name sample name
+	 * @return {@link Sample}, or {@code null}
+	 */
+	public Sample get(String name) {
+		return samples.get(name);
+	}
+
+	/**
+	 * Returns the names of all {@link Sample}s in this bank.
+	 *
+	 * @return sample names
+	 */
+	public Set<String> getNames() {
+		return samples.keySet();
+	}
+
+	/**
+	 * Returns the number of {@link Sample}s in this bank.
+	 *
+	 * @return number of {@link Sample}s
+	 */
+	public int size() {
+		return samples.size();
+	}
+
+	/**
+	 * Does {@code bytes} start with {@link #MAGIC}?
+	 *
+	 * @param bytes a {@link ByteBuffer}
+	 * @return {@code true} if {@code bytes} starts with {@link #MAGIC}, otherwise
+	 *         {@code false}
+	 */
+	private static boolean hasMagic(ByteBuffer bytes) {
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (bytes.get(i) != MAGIC[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes all remaining bytes in {@code buffer} to {@code channel}.
+	 *
+	 * @param channel a {@link FileChannel}
+	 * @param buffer  a {@link ByteBuffer}
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		return;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(32);
+		sb.append("[SoundBank: file=").append(file).append(" samples=").append(size()).append(']');
+		return sb.toString();
+	}
+}
@@ -0,0 +1,179 @@
+package net.logicsquad.nanocaptcha.audio;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Helper class for writing RIFF/WAV files.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+final class Wav {
+	/**
+	 * Length of a canonical PCM WAV header
+	 */
+	static final int HEADER_LENGTH = 44;
+
+	/**
+	 * WAV format tag for linear PCM
+	 */
+	private static final int WAVE_FORMAT_PCM = 1;
+
+	/**
+	 * Private constructor for non-instantiability.
+	 */
+	private Wav() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Returns a canonical 44-byte WAV header for {@code dataLength} bytes of linear
+	 * PCM audio in {@code format}.
+	 *
+	 * @param format     an {@link AudioFormat}
+	 * @param dataLength length of audio data in bytes
+	 * @return WAV header
+	 */
+	static byte[] header(AudioFormat format, int dataLength) {
+		int channels = format.getChannels();
+		int sampleRate = (int) format.getSampleRate();
+		int blockAlign = format.getFrameSize();
+		byte[] header = new byte[HEADER_LENGTH];
+		int k = putAscii(header, 0, "RIFF");
+		k = putInt(header, k, HEADER_LENGTH - 8 + dataLength + padLength(dataLength));
+		k = putAscii(header, k, "WAVE");
+		k = putAscii(header, k, "fmt ");
+		k = putInt(header, k, 16);
+		k = putShort(header, k, WAVE_FORMAT_PCM);
+		k = putShort(header, k, channels);
+		k = putInt(header, k, sampleRate);
+		k = putInt(header, k, sampleRate * blockAlign);
+		k = putShort(header, k, blockAlign);
+		k = putShort(header, k, format.getSampleSizeInBits());
+		k = putAscii(header, k, "data");
+		putInt(header, k, dataLength);
+		return header;
+	}
+
+	/**
+	 * <p>
+	 * Returns a WAV header for {@code dataLength} bytes of mono audio in a
+	 * non-PCM format (i.e., {@code formatTag} is not {@code 1}). The header has an
+	 * extended {@code fmt } chunk and a {@code fact} chunk giving
+	 * {@code sampleCount}, as required for compressed formats.
+	 * </p>
+	 *
+	 * <p>
+	 * If {@code samplesPerBlock} is greater than {@code 1}, it is written to the
+	 * {@code fmt } chunk as the format's only extra field (as for IMA-ADPCM).
+	 * </p>
+	 *
+	 * @param formatTag       WAV format tag
+	 * @param sampleRate      sample rate in Hz
+	 * @param bitsPerSample   bits per sample
+	 * @param blockAlign      block size in bytes
+	 * @param samplesPerBlock samples per block
+	 * @param sampleCount     number of samples
+	 * @param dataLength      length of audio data in bytes
+	 * @return WAV header
+	 */
+	static byte[] header(int formatTag, int sampleRate, int bitsPerSample, int blockAlign, int samplesPerBlock, int sampleCount, int dataLength) {
+		int extraLength = samplesPerBlock > 1 ? 2 : 0;
+		int fmtLength = 18 + extraLength;
+		byte[] header = new byte[headerLength(samplesPerBlock)];
+		int k = putAscii(header, 0, "RIFF");
+		k = putInt(header, k, header.length - 8 + dataLength + padLength(dataLength));
+		k = putAscii(header, k, "WAVE");
+		k = putAscii(header, k, "fmt ");
+		k = putInt(header, k, fmtLength);
+		k = putShort(header, k, formatTag);
+		k = putShort(header, k, 1);
+		k = putInt(header, k, sampleRate);
+		k = putInt(header, k, (int) ((long) sampleRate * blockAlign / samplesPerBlock));
+		k = putShort(header, k, blockAlign);
+		k = putShort(header, k, bitsPerSample);
+		k = putShort(header, k, extraLength);
+		if (extraLength > 0) {
+			k = putShort(header, k, samplesPerBlock);
+		}
+		k = putAscii(header, k, "fact");
+		k = putInt(header, k, 4);
+		k = putInt(header, k, sampleCount);
+		k = putAscii(header, k, "data");
+		putInt(header, k, dataLength);
+		return header;
+	}
+
+	/**
+	 * Returns the length of the header written by
+	 * {@link #header(int, int, int, int, int, int, int)} for a format with
+	 * {@code samplesPerBlock} samples per block.
+	 *
+	 * @param samplesPerBlock samples per block
+	 * @return header length in bytes
+	 */
+	static int headerLength(int samplesPerBlock) {
+		// RIFF/WAVE (12) + fmt (8 + 18 [+ 2]) + fact (12) + data (8)
+		return 58 + (samplesPerBlock > 1 ? 2 : 0);
+	}
+
+	/**
+	 * Returns the number of pad bytes following a chunk of {@code chunkLength}
+	 * bytes. RIFF chunks are word-aligned, so an odd-length chunk is followed by a
+	 * single zero byte, which counts towards the {@code RIFF} chunk's size but not
+	 * its own.
+	 *
+	 * @param chunkLength chunk length in bytes
+	 * @return pad length in bytes
+	 */
+	static int padLength(int chunkLength) {
+		return chunkLength & 1;
+	}
+
+	/**
+	 * Writes {@code value} into {@code buffer} at {@code offset} as ASCII.
+	 *
+	 * @param buffer destination
+	 * @param offset destination offset
+	 * @param value  string to write
+	 * @return offset following written bytes
+	 */
+	private static int putAscii(byte[] buffer, int offset, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			buffer[offset++] = (byte) value.charAt(i);
+		}
+		return offset;
+	}
+
+	/**
+	 * Writes {@code value} into {@code buffer} at {@code offset} as a
+	 * little-endian 32-bit integer.
+	 *
+	 * @param buffer destination
+	 * @param offset destination offset
+	 * @param value  value to write
+	 * @return offset following written bytes
+	 */
+	private static int putInt(byte[] buffer, int offset, int value) {
+		buffer[offset++] = (byte) value;
+		buffer[offset++] = (byte) (value >> 8);
+		buffer[offset++] = (byte) (value >> 16);
+		buffer[offset++] = (byte) (value >> 24);
+		return offset;
+	}
+
+	/**
+	 * Writes {@code value} into {@code buffer} at {@code offset} as a
+	 * little-endian 16-bit integer.
+	 *
+	 * @param buffer destination
+	 * @param offset destination offset
+	 * @param value  value to write
+	 * @return offset following written bytes
+	 */
+	private static int putShort(byte[] buffer, int offset, int value) {
+		buffer[offset++] = (byte) value;
+		buffer[offset++] = (byte) (value >> 8);
+		return offset;
+	}
+}
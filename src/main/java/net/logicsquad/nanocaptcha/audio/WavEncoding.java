@@ -0,0 +1,190 @@
+package net.logicsquad.nanocaptcha.audio;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * <p>
+ * Encodings for WAV output from {@link AudioCaptcha}. All encodings are mono at
+ * the sample rate of the CAPTCHA's audio (see {@link AudioProfile}), and differ
+ * only in how each sample is stored:
+ * </p>
+ *
+ * <ul>
+ * <li>{@link #PCM_16}: 16-bit linear PCM (the default);</li>
+ * <li>{@link #MU_LAW} and {@link #A_LAW}: 8-bit G.711, half the size of
+ * {@link #PCM_16}; and</li>
+ * <li>{@link #IMA_ADPCM}: 4-bit IMA-ADPCM, about a quarter the size of
+ * {@link #PCM_16}.</li>
+ * </ul>
+ *
+ * <p>
+ * Encoding is done chunk by chunk as audio is rendered, so a compressed
+ * encoding costs no extra pass over the audio and no extra buffer.
+ * </p>
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public enum WavEncoding {
+	/**
+	 * 16-bit little-endian linear PCM
+	 */
+	PCM_16(1, 16, 2, 1) {
+		@Override
+		Encoder newEncoder() {
+			return Sample::encode;
+		}
+
+		@Override
+		byte[] header(AudioFormat format, int sampleCount) {
+			return Wav.header(format, dataLength(sampleCount));
+		}
+
+		@Override
+		int wavLength(int sampleCount) {
+			return Wav.HEADER_LENGTH + dataLength(sampleCount) + Wav.padLength(dataLength(sampleCount));
+		}
+	},
+
+	/**
+	 * 8-bit G.711 µ-law
+	 */
+	MU_LAW(7, 8, 1, 1) {
+		@Override
+		Encoder newEncoder() {
+			return G711::encodeUlaw;
+		}
+	},
+
+	/**
+	 * 8-bit G.711 A-law
+	 */
+	A_LAW(6, 8, 1, 1) {
+		@Override
+		Encoder newEncoder() {
+			return G711::encodeAlaw;
+		}
+	},
+
+	/**
+	 * 4-bit IMA-ADPCM
+	 */
+	IMA_ADPCM(0x11, 4, ImaAdpcmEncoder.BLOCK_ALIGN, ImaAdpcmEncoder.SAMPLES_PER_BLOCK) {
+		@Override
+		Encoder newEncoder() {
+			return new ImaAdpcmEncoder()::encode;
+		}
+
+		@Override
+		int dataLength(int sampleCount) {
+			return ImaAdpcmEncoder.encodedLength(sampleCount);
+		}
+	};
+
+	/**
+	 * WAV format tag
+	 */
+	private final int formatTag;
+
+	/**
+	 * Bits per sample
+	 */
+	private final int bitsPerSample;
+
+	/**
+	 * Block size in bytes
+	 */
+	private final int blockAlign;
+
+	/**
+	 * Samples per block
+	 */
+	private final int samplesPerBlock;
+
+	/**
+	 * Constructor
+	 *
+	 * @param formatTag       WAV format tag
+	 * @param bitsPerSample   bits per sample
+	 * @param blockAlign      block size in bytes
+	 * @param samplesPerBlock samples per block
+	 */
+	WavEncoding(int formatTag, int bitsPerSample, int blockAlign, int samplesPerBlock) {
+		this.formatTag = formatTag;
+		this.bitsPerSample = bitsPerSample;
+		this.blockAlign = blockAlign;
+		this.samplesPerBlock = samplesPerBlock;
+		return;
+	}
+
+	/**
+	 * Returns a new {@link Encoder} for a single stream.
+	 *
+	 * @return {@link Encoder}
+	 */
+	abstract Encoder newEncoder();
+
+	/**
+	 * Returns the number of samples in each block: chunks passed to an
+	 * {@link Encoder} must be a multiple of this, except for the last.
+	 *
+	 * @return samples per block
+	 */
+	int samplesPerBlock() {
+		return samplesPerBlock;
+	}
+
+	/**
+	 * Returns the length in bytes of {@code sampleCount} encoded samples.
+	 *
+	 * @param sampleCount number of samples
+	 * @return encoded length in bytes
+	 */
+	int dataLength(int sampleCount) {
+		return sampleCount * blockAlign;
+	}
+
+	/**
+	 * Returns the WAV header for {@code sampleCount} samples of audio in
+	 * {@code format} in this encoding.
+	 *
+	 * @param format      format of source audio
+	 * @param sampleCount number of samples
+	 * @return WAV header
+	 */
+	byte[] header(AudioFormat format, int sampleCount) {
+		return Wav.header(formatTag, (int) format.getSampleRate(), bitsPerSample, blockAlign, samplesPerBlock, sampleCount,
+				dataLength(sampleCount));
+	}
+
+	/**
+	 * Returns the length in bytes of a complete WAV file holding
+	 * {@code sampleCount} samples in this encoding, including any pad byte after
+	 * the audio data (see {@link Wav#padLength(int)}).
+	 *
+	 * @param sampleCount number of samples
+	 * @return WAV file length
+	 */
+	int wavLength(int sampleCount) {
+		return Wav.headerLength(samplesPerBlock) + dataLength(sampleCount) + Wav.padLength(dataLength(sampleCount));
+	}
+
+	/**
+	 * Encoder for a single stream of samples.
+	 */
+	@FunctionalInterface
+	interface Encoder {
+		/**
+		 * Encodes {@code count} samples from {@code src}, starting at
+		 * {@code srcOffset}, into {@code dst} at {@code dstOffset}.
+		 *
+		 * @param src       source samples
+		 * @param srcOffset offset in {@code src}
+		 * @param count     number of samples
+		 * @param dst       destination array
+		 * @param dstOffset offset in {@code dst}
+		 * @return number of bytes written
+		 */
+		int encode(short[] src, int srcOffset, int count, byte[] dst, int dstOffset);
+	}
+}
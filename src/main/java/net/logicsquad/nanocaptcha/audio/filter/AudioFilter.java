@@ -0,0 +1,43 @@
+package net.logicsquad.nanocaptcha.audio.filter;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * <p>
+ * A filter that can distort an audio CAPTCHA in some way. Filters operate in
+ * place on 16-bit PCM samples, as held by
+ * {@link net.logicsquad.nanocaptcha.audio.Sample Sample}, so a chain of
+ * filters costs no conversion or copying.
+ * </p>
+ *
+ * <p>
+ * Implementations should be thread-safe, and should not allocate in
+ * {@link #filter(short[], int, int, AudioFormat)}: anything that can be
+ * computed ahead of time (e.g., tables) should be computed on construction.
+ * </p>
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public interface AudioFilter {
+	/**
+	 * Transforms {@code length} samples of {@code samples}, starting at
+	 * {@code offset}, in-place.
+	 *
+	 * @param samples 16-bit PCM samples
+	 * @param offset  index of first sample
+	 * @param length  number of samples
+	 * @param format  format of {@code samples} (for the sample rate)
+	 */
+	void filter(short[] samples, int offset, int length, AudioFormat format);
+
+	/**
+	 * Returns {@code value} clipped to the range of a 16-bit sample.
+	 *
+	 * @param value sample value
+	 * @return clipped sample
+	 */
+	static short clip(int value) {
+		return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+	}
+}
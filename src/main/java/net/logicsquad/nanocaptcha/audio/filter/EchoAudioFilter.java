@@ -0,0 +1,72 @@
+package net.logicsquad.nanocaptcha.audio.filter;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Adds a short-delay echo: each sample has added to it the output from
+ * {@code delay} milliseconds earlier, scaled by {@code feedback}. Since output
+ * is fed back, the echo repeats, decaying by {@code feedback} each time. The
+ * gain is held in 15-bit fixed point, so the filter does no floating-point
+ * arithmetic per sample.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public class EchoAudioFilter implements AudioFilter {
+	/**
+	 * Default delay in milliseconds
+	 */
+	private static final int DEFAULT_DELAY = 60;
+
+	/**
+	 * Default feedback
+	 */
+	private static final double DEFAULT_FEEDBACK = 0.35;
+
+	/**
+	 * Delay in milliseconds
+	 */
+	private final int delay;
+
+	/**
+	 * Feedback in 15-bit fixed point
+	 */
+	private final int feedback;
+
+	/**
+	 * Constructor for an echo with default delay and feedback.
+	 */
+	public EchoAudioFilter() {
+		this(DEFAULT_DELAY, DEFAULT_FEEDBACK);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param delay    delay in milliseconds
+	 * @param feedback multiplier for each repeat
+	 * @throws IllegalArgumentException if {@code delay} is not positive, or
+	 *                                  {@code feedback} is not in [0, 1)
+	 */
+	public EchoAudioFilter(int delay, double feedback) {
+		if (delay <= 0) {
+			throw new IllegalArgumentException("Delay must be positive.");
+		}
+		if (feedback < 0 || feedback >= 1) {
+			throw new IllegalArgumentException("Feedback must be in [0, 1).");
+		}
+		this.delay = delay;
+		this.feedback = (int) Math.round(feedback * (1 << 15));
+		return;
+	}
+
+	@Override
+	public void filter(short[] samples, int offset, int length, AudioFormat format) {
+		int d = (int) (format.getSampleRate() * delay / 1000);
+		int end = offset + length;
+		for (int i = offset + d; i < end; i++) {
+			samples[i] = AudioFilter.clip(samples[i] + ((samples[i - d] * feedback) >> 15));
+		}
+		return;
+	}
+}
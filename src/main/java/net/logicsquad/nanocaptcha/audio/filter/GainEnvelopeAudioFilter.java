@@ -0,0 +1,143 @@
+package net.logicsquad.nanocaptcha.audio.filter;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Applies a random gain envelope: the audio is divided into segments of
+ * {@code segment} milliseconds, and the gain moves smoothly from one random
+ * level to the next across each segment. Levels are chosen between
+ * {@code minGain} and {@code maxGain} on each application. The shape of each
+ * transition (a raised cosine) is precomputed into a table, and gains are held
+ * in 15-bit fixed point.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public class GainEnvelopeAudioFilter implements AudioFilter {
+	/**
+	 * Default minimum gain
+	 */
+	private static final double DEFAULT_MIN_GAIN = 0.4;
+
+	/**
+	 * Default maximum gain
+	 */
+	private static final double DEFAULT_MAX_GAIN = 1.0;
+
+	/**
+	 * Default segment length in milliseconds
+	 */
+	private static final int DEFAULT_SEGMENT = 250;
+
+	/**
+	 * Number of entries in {@link #RAMP}
+	 */
+	private static final int RAMP_LENGTH = 1_024;
+
+	/**
+	 * Transition from 0 to 1 (as a raised cosine) in 15-bit fixed point
+	 */
+	private static final short[] RAMP = new short[RAMP_LENGTH];
+
+	static {
+		for (int i = 0; i < RAMP_LENGTH; i++) {
+			RAMP[i] = (short) Math.round((1 - Math.cos(Math.PI * i / RAMP_LENGTH)) / 2 * Short.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * Minimum gain in 15-bit fixed point
+	 */
+	private final int minGain;
+
+	/**
+	 * Maximum gain in 15-bit fixed point
+	 */
+	private final int maxGain;
+
+	/**
+	 * Segment length in milliseconds
+	 */
+	private final int segment;
+
+	/**
+	 * Constructor for an envelope with default gains and segment length.
+	 */
+	public GainEnvelopeAudioFilter() {
+		this(DEFAULT_MIN_GAIN, DEFAULT_MAX_GAIN, DEFAULT_SEGMENT);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param minGain minimum gain
+	 * @param maxGain maximum gain
+	 * @param segment segment length in milliseconds
+	 * @throws IllegalArgumentException if the gains are not in [0, 1], or
+	 *                                  {@code minGain} is greater than
+	 *                                  {@code maxGain}, or {@code segment} is not
+	 *                                  positive
+	 */
+	public GainEnvelopeAudioFilter(double minGain, double maxGain, int segment) {
+		if (minGain < 0 || maxGain > 1 || minGain > maxGain) {
+			throw new IllegalArgumentException("Gains must satisfy 0 <= minGain <= maxGain <= 1.");
+		}
+		if (segment <= 0) {
+			throw new IllegalArgumentException("Segment length must be positive.");
+		}
+		this.minGain = (int) Math.round(minGain * Short.MAX_VALUE);
+		this.maxGain = (int) Math.round(maxGain * Short.MAX_VALUE);
+		this.segment = segment;
+		return;
+	}
+
+	@Override
+	public void filter(short[] samples, int offset, int length, AudioFormat format) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int segmentLength = Math.max(1, (int) (format.getSampleRate() * segment / 1000));
+		int from = nextGain(random);
+		int end = offset + length;
+		for (int start = offset; start < end; start += segmentLength) {
+			int to = nextGain(random);
+			int count = Math.min(segmentLength, end - start);
+			for (int i = 0; i < count; i++) {
+				int ramp = ramp(i, segmentLength);
+				int gain = from + (((to - from) * ramp) >> 15);
+				samples[start + i] = (short) ((samples[start + i] * gain) >> 15);
+			}
+			from = to;
+		}
+		return;
+	}
+
+	/**
+	 * Returns the value of {@link #RAMP} at {@code i} samples into a segment of
+	 * {@code segmentLength} samples, interpolating linearly between entries so
+	 * that the ramp is smooth whatever the segment length.
+	 *
+	 * @param i             index in segment
+	 * @param segmentLength segment length in samples
+	 * @return ramp value in 15-bit fixed point
+	 */
+	private static int ramp(int i, int segmentLength) {
+		// Position in RAMP in 16.16 fixed point
+		long position = ((long) i * RAMP_LENGTH << 16) / segmentLength;
+		int index = (int) (position >> 16);
+		int fraction = (int) (position & 0xFFFF);
+		int from = RAMP[index];
+		int to = index + 1 < RAMP_LENGTH ? RAMP[index + 1] : Short.MAX_VALUE;
+		return from + (((to - from) * fraction) >> 16);
+	}
+
+	/**
+	 * Returns a random gain between {@link #minGain} and {@link #maxGain}.
+	 *
+	 * @param random a random number generator
+	 * @return gain in 15-bit fixed point
+	 */
+	private int nextGain(ThreadLocalRandom random) {
+		return minGain + random.nextInt(maxGain - minGain + 1);
+	}
+}
@@ -0,0 +1,86 @@
+package net.logicsquad.nanocaptcha.audio.filter;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Applies tremolo: the volume is modulated by a low-frequency sine wave. The
+ * gain for one cycle of the wave is precomputed into a table, which is read
+ * with a fixed-point phase accumulator, so the filter does no trigonometry or
+ * floating-point arithmetic per sample. Each application starts at a random
+ * phase.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public class TremoloAudioFilter implements AudioFilter {
+	/**
+	 * Default modulation rate in Hz
+	 */
+	private static final double DEFAULT_RATE = 6.0;
+
+	/**
+	 * Default modulation depth
+	 */
+	private static final double DEFAULT_DEPTH = 0.5;
+
+	/**
+	 * Bits of phase used to index {@link #table}
+	 */
+	private static final int TABLE_BITS = 10;
+
+	/**
+	 * Modulation rate in Hz
+	 */
+	private final double rate;
+
+	/**
+	 * Gain for one cycle in 15-bit fixed point, indexed by phase
+	 */
+	private final short[] table = new short[1 << TABLE_BITS];
+
+	/**
+	 * Constructor for tremolo with default rate and depth.
+	 */
+	public TremoloAudioFilter() {
+		this(DEFAULT_RATE, DEFAULT_DEPTH);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param rate  modulation rate in Hz
+	 * @param depth modulation depth: the gain varies between {@code 1 - depth}
+	 *              and {@code 1}
+	 * @throws IllegalArgumentException if {@code rate} is not positive, or
+	 *                                  {@code depth} is not in [0, 1]
+	 */
+	public TremoloAudioFilter(double rate, double depth) {
+		if (rate <= 0) {
+			throw new IllegalArgumentException("Rate must be positive.");
+		}
+		if (depth < 0 || depth > 1) {
+			throw new IllegalArgumentException("Depth must be in [0, 1].");
+		}
+		this.rate = rate;
+		for (int i = 0; i < table.length; i++) {
+			double gain = 1 - depth * (1 - Math.cos(2 * Math.PI * i / table.length)) / 2;
+			table[i] = (short) Math.min(Short.MAX_VALUE, Math.round(gain * (1 << 15)));
+		}
+		return;
+	}
+
+	@Override
+	public void filter(short[] samples, int offset, int length, AudioFormat format) {
+		// Phase is a fraction of a cycle in 32-bit fixed point
+		int increment = (int) (rate / format.getSampleRate() * 4_294_967_296.0);
+		int phase = ThreadLocalRandom.current().nextInt();
+		int end = offset + length;
+		for (int i = offset; i < end; i++) {
+			samples[i] = (short) ((samples[i] * table[phase >>> (32 - TABLE_BITS)]) >> 15);
+			phase += increment;
+		}
+		return;
+	}
+}
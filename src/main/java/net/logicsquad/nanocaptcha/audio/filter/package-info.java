@@ -0,0 +1,4 @@
+/**
+ * Provides filters for audio CAPTCHAs.
+ */
+package net.logicsquad.nanocaptcha.audio.filter;
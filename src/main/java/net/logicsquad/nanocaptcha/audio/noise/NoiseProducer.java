@@ -2,6 +2,7 @@ package net.logicsquad.nanocaptcha.audio.noise;
 
 import java.util.List;
 
+import net.logicsquad.nanocaptcha.audio.AudioProfile;
 import net.logicsquad.nanocaptcha.audio.Sample;
 
 /**
@@ -19,4 +20,19 @@ public interface NoiseProducer {
 	 * @return concatenated {@link Sample}s with added noise
 	 */
 	Sample addNoise(List<Sample> samples);
+
+	/**
+	 * Concatenates {@code samples}, which are in the format of {@code profile},
+	 * adds background noise in the same format and returns the result. The
+	 * default implementation calls {@link #addNoise(List)}, which is sufficient
+	 * for implementations that don't draw on fixed-rate audio of their own.
+	 *
+	 * @param samples a list of {@link Sample}s
+	 * @param profile an {@link AudioProfile}
+	 * @return concatenated {@link Sample}s with added noise
+	 * @since 2.2
+	 */
+	default Sample addNoise(List<Sample> samples, AudioProfile profile) {
+		return addNoise(samples);
+	}
 }
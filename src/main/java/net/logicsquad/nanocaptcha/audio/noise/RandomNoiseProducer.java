@@ -1,12 +1,16 @@
 package net.logicsquad.nanocaptcha.audio.noise;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.stream.Collectors;
 
+import net.logicsquad.nanocaptcha.audio.AudioProfile;
+import net.logicsquad.nanocaptcha.audio.LoudnessNormalizer;
 import net.logicsquad.nanocaptcha.audio.Mixer;
 import net.logicsquad.nanocaptcha.audio.Sample;
+import net.logicsquad.nanocaptcha.audio.SampleCache;
 
 /**
  * <p>
@@ -20,15 +24,33 @@ import net.logicsquad.nanocaptcha.audio.Sample;
  * <li>{@code swimming.wav}</li>
  * </ul>
  *
+ * <p>
+ * Noise files are decoded once, trimmed and normalized in loudness (see
+ * {@link LoudnessNormalizer#NOISE}), and held in the shared
+ * {@link SampleCache}. Each call to {@link #addNoise(List)} mixes in a window of the noise starting
+ * at a random offset, so no I/O or decoding is required per CAPTCHA. If the
+ * window runs past the end of the noise, it wraps around to the start, with a
+ * short crossfade (see {@link Mixer#loop(Sample, int, int, int)}), so noise
+ * covers the whole CAPTCHA however long it is. The result is rendered lazily
+ * (see {@link Mixer#mix(List, double, Sample, double)}).
+ * </p>
+ *
  * @author <a href="mailto:james.childers@gmail.com">James Childers</a>
  * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
  * @since 1.0
  */
 public class RandomNoiseProducer implements NoiseProducer {
 	/**
-	 * Relative volume of background noise
+	 * Relative volume of background noise: noise is normalized at load to a level
+	 * that leaves voices audible (on average, within half a decibel of the raw
+	 * built-in noises at 0.6), so it is mixed in as is
+	 */
+	private static final double NOISE_VOLUME = 1.0;
+
+	/**
+	 * Length of crossfade where noise wraps around, in milliseconds
 	 */
-	private static final double NOISE_VOLUME = 0.6;
+	private static final int CROSSFADE_MILLIS = 50;
 
 	/**
 	 * Random number generator
@@ -74,11 +96,81 @@ public class RandomNoiseProducer implements NoiseProducer {
 	 */
 	@Override
 	public Sample addNoise(List<Sample> samples) {
-		Sample appended = Mixer.concatenate(samples);
+		return addNoise(samples, AudioProfile.STANDARD);
+	}
+
+	/**
+	 * Concatenates {@code samples}, then adds a random background noise sample
+	 * (from this object's list of samples) resampled for {@code profile},
+	 * returning the resulting {@link Sample}.
+	 *
+	 * @param samples a list of {@link Sample}s
+	 * @param profile an {@link AudioProfile}
+	 * @return concatenated {@link Sample}s with added noise
+	 * @since 2.2
+	 */
+	@Override
+	public Sample addNoise(List<Sample> samples, AudioProfile profile) {
+		int length = 0;
+		for (Sample sample : samples) {
+			length += (int) sample.getSampleCount();
+		}
 		String noiseFile = noiseFiles[RAND.nextInt(noiseFiles.length)];
-		Sample noise = new Sample(noiseFile);
-		// Decrease the volume of the noise to make sure the voices can be heard
-		return Mixer.mix(appended, 1.0, noise, NOISE_VOLUME);
+		Sample noise = noiseWindow(noiseFile, length, profile);
+		return Mixer.mix(samples, 1.0, noise, NOISE_VOLUME);
+	}
+
+	/**
+	 * Decodes and normalizes all of this object's noise files into the shared
+	 * {@link SampleCache}, so that no I/O or normalization is required on first
+	 * use.
+	 *
+	 * @since 2.2
+	 */
+	public void preload() {
+		preload(AudioProfile.STANDARD);
+		return;
+	}
+
+	/**
+	 * Decodes all of this object's noise files, resamples them for
+	 * {@code profile} and normalizes them into the shared {@link SampleCache}, so
+	 * that no I/O, resampling or normalization is required on first use.
+	 *
+	 * @param profile an {@link AudioProfile}
+	 * @since 2.2
+	 */
+	public void preload(AudioProfile profile) {
+		SampleCache.shared().preload(getResourceNames(), profile, LoudnessNormalizer.NOISE);
+		return;
+	}
+
+	/**
+	 * Returns the names of this object's noise files, e.g., for packing into a
+	 * {@link net.logicsquad.nanocaptcha.audio.SoundBank SoundBank}.
+	 *
+	 * @return noise filenames
+	 * @since 2.2
+	 */
+	public List<String> getResourceNames() {
+		return Collections.unmodifiableList(Arrays.asList(noiseFiles));
+	}
+
+	/**
+	 * Returns a window of {@code length} samples of the noise in
+	 * {@code noiseFile} in {@code profile}, starting at a random offset and
+	 * looping (with a short crossfade) if it runs past the end of the noise.
+	 *
+	 * @param noiseFile noise filename
+	 * @param length    required length in samples
+	 * @param profile   an {@link AudioProfile}
+	 * @return window of noise
+	 */
+	private static Sample noiseWindow(String noiseFile, int length, AudioProfile profile) {
+		Sample noise = SampleCache.shared().get(noiseFile, profile, LoudnessNormalizer.NOISE);
+		int available = (int) noise.getSampleCount();
+		int crossfade = (int) (noise.getFormat().getSampleRate() * CROSSFADE_MILLIS / 1000);
+		return Mixer.loop(noise, available == 0 ? 0 : RAND.nextInt(available), length, crossfade);
 	}
 
 	@Override
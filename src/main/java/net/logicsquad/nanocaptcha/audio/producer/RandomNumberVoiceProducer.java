@@ -1,19 +1,20 @@
 package net.logicsquad.nanocaptcha.audio.producer;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Random;
 
+import net.logicsquad.nanocaptcha.audio.AudioProfile;
+import net.logicsquad.nanocaptcha.audio.LoudnessNormalizer;
 import net.logicsquad.nanocaptcha.audio.Sample;
+import net.logicsquad.nanocaptcha.audio.SampleCache;
 
 /**
  * A {@link VoiceProducer} that can generate a vocalization for a given number
- * in a randomly chosen voice.
+ * in a randomly chosen voice. Vocalizations are drawn from a {@link VoiceBank}:
+ * by default, the built-in voices, which are decoded once and served from the
+ * shared {@link SampleCache}.
  *
  * @author <a href="mailto:james.childers@gmail.com">James Childers</a>
  * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
@@ -25,11 +26,6 @@ public class RandomNumberVoiceProducer implements VoiceProducer {
 	 */
 	private static final Random RAND = new Random();
 
-	/**
-	 * List of supported languages
-	 */
-	private static final List<Locale> SUPPORTED_LANGUAGES = Arrays.asList(Locale.ENGLISH, Locale.GERMAN);
-
 	/**
 	 * Property key for declaring a default language (which will be used in the
 	 * no-args constructor) via 2-digit ISO 639 code
@@ -41,51 +37,20 @@ public class RandomNumberVoiceProducer implements VoiceProducer {
 	 */
 	private static final Locale FALLBACK_LANGUAGE = Locale.ENGLISH;
 
-	/**
-	 * Prefix for locating voices
-	 */
-	private static final String PATH_PREFIX_TEMPLATE = "/sounds/%s/numbers/";
-
-	/**
-	 * English voices
-	 */
-	private static final List<String> VOICES_EN = Arrays.asList("a", "b", "c", "d", "e", "f", "g");
-
-	/**
-	 * German voices
-	 */
-	private static final List<String> VOICES_DE = Arrays.asList("a", "b");
-
-	/**
-	 * Map from language to list of voice names
-	 */
-	private static final Map<Locale, List<String>> VOICES = new HashMap<>();
-
-	static {
-		VOICES.put(Locale.ENGLISH, VOICES_EN);
-		VOICES.put(Locale.GERMAN, VOICES_DE);
-	}
-
 	/**
 	 * Default {@link Locale}
 	 */
 	static volatile Locale defaultLanguage;
 
-	/**
-	 * Map from each single digit to list of vocalizations to choose from for that
-	 * digit
-	 */
-	private Map<Integer, List<String>> vocalizations;
-
 	/**
 	 * Language to use for vocalizations
 	 */
 	final Locale language;
 
 	/**
-	 * Prefix to path for vocalizations
+	 * Source of vocalizations
 	 */
-	private String pathPrefix;
+	private final VoiceBank bank;
 
 	/**
 	 * Constructor resulting in object providing built-in voices to vocalize digits.
@@ -103,22 +68,110 @@ public class RandomNumberVoiceProducer implements VoiceProducer {
 	 * @since 1.4
 	 */
 	public RandomNumberVoiceProducer(Locale language) {
+		this(language, VoiceBank.builtIn());
+	}
+
+	/**
+	 * Constructor taking a language {@link Locale} and a {@link VoiceBank} to
+	 * draw vocalizations from. If {@code bank} does not support
+	 * {@code language}, the default language will be used.
+	 *
+	 * @param language a {@link Locale} representing a language
+	 * @param bank     a {@link VoiceBank}
+	 * @throws NullPointerException     if either argument is {@code null}
+	 * @throws IllegalArgumentException if {@code bank} supports neither
+	 *                                  {@code language} nor the default language
+	 * @since 2.2
+	 */
+	public RandomNumberVoiceProducer(Locale language, VoiceBank bank) {
 		Objects.requireNonNull(language);
-		this.language = SUPPORTED_LANGUAGES.contains(language) ? language : defaultLanguage();
+		this.bank = Objects.requireNonNull(bank);
+		this.language = bank.supports(language) ? language : defaultLanguage();
+		if (!bank.supports(this.language)) {
+			throw new IllegalArgumentException("VoiceBank supports neither " + language + " nor " + this.language + ".");
+		}
 		return;
 	}
 
 	@Override
 	public final Sample getVocalization(char number) {
-		String stringNumber = Character.toString(number);
-		try {
-			int idx = Integer.parseInt(stringNumber);
-			List<String> files = vocalizations().get(idx);
-			String filename = files.get(RAND.nextInt(files.size()));
-			return new Sample(filename);
-		} catch (NumberFormatException e) {
-			throw new IllegalArgumentException("RandomNumberVoiceProducer can only vocalize numbers.", e);
+		return getVocalization(number, AudioProfile.STANDARD);
+	}
+
+	/**
+	 * Returns a vocalization for {@code number} resampled for {@code profile}.
+	 * Resampled vocalizations are held in this object's {@link VoiceBank}, so each
+	 * is resampled only once.
+	 *
+	 * @param number  digit to vocalize
+	 * @param profile an {@link AudioProfile}
+	 * @return a {@link Sample} containing the vocalization
+	 * @since 2.2
+	 */
+	@Override
+	public final Sample getVocalization(char number, AudioProfile profile) {
+		if (number < '0' || number > '9') {
+			throw new IllegalArgumentException("RandomNumberVoiceProducer can only vocalize numbers.");
 		}
+		List<Sample> samples = bank.getVocalizations(language, number - '0', profile);
+		return samples.get(RAND.nextInt(samples.size()));
+	}
+
+	/**
+	 * Returns a vocalization for {@code number} resampled for {@code profile} and
+	 * prepared by {@code normalizer}. Resampled and prepared vocalizations are
+	 * held in this object's {@link VoiceBank}, so each is resampled and normalized
+	 * only once.
+	 *
+	 * @param number     digit to vocalize
+	 * @param profile    an {@link AudioProfile}
+	 * @param normalizer a {@link LoudnessNormalizer}
+	 * @return a {@link Sample} containing the vocalization
+	 * @since 2.2
+	 */
+	@Override
+	public final Sample getVocalization(char number, AudioProfile profile, LoudnessNormalizer normalizer) {
+		if (number < '0' || number > '9') {
+			throw new IllegalArgumentException("RandomNumberVoiceProducer can only vocalize numbers.");
+		}
+		List<Sample> samples = bank.getVocalizations(language, number - '0', profile, Objects.requireNonNull(normalizer));
+		return samples.get(RAND.nextInt(samples.size()));
+	}
+
+	/**
+	 * Decodes all vocalizations for this object's language into its
+	 * {@link VoiceBank}, so that no I/O is required on first use.
+	 *
+	 * @since 2.2
+	 */
+	public void preload() {
+		preload(AudioProfile.STANDARD);
+		return;
+	}
+
+	/**
+	 * Decodes all vocalizations for this object's language and resamples them for
+	 * {@code profile} into its {@link VoiceBank}, so that no I/O or resampling is
+	 * required on first use.
+	 *
+	 * @param profile an {@link AudioProfile}
+	 * @since 2.2
+	 */
+	public void preload(AudioProfile profile) {
+		bank.load(language, profile);
+		return;
+	}
+
+	/**
+	 * Returns the names of the audio resources containing this object's
+	 * vocalizations, e.g., for packing into a
+	 * {@link net.logicsquad.nanocaptcha.audio.SoundBank SoundBank}.
+	 *
+	 * @return resource names
+	 * @since 2.2
+	 */
+	public List<String> getResourceNames() {
+		return bank.getResourceNames(language);
 	}
 
 	/**
@@ -133,7 +186,7 @@ public class RandomNumberVoiceProducer implements VoiceProducer {
 			synchronized (RandomNumberVoiceProducer.class) {
 				if (defaultLanguage == null) {
 					String language = System.getProperty(DEFAULT_LANGUAGE_KEY);
-					if (language == null || !SUPPORTED_LANGUAGES.stream().map(l -> l.getLanguage()).anyMatch(s -> s.equals(language))) {
+					if (language == null || !VoiceBank.builtIn().supports(new Locale(language))) {
 						defaultLanguage = FALLBACK_LANGUAGE;
 					} else {
 						defaultLanguage = new Locale(language);
@@ -143,43 +196,4 @@ public class RandomNumberVoiceProducer implements VoiceProducer {
 		}
 		return defaultLanguage;
 	}
-
-	/**
-	 * Returns a localized path prefix to find the vocalizations.
-	 *
-	 * @return path prefix
-	 * @see <a href="https://github.com/logicsquad/nanocaptcha/issues/7">#7</a>
-	 * @since 1.4
-	 */
-	private String pathPrefix() {
-		if (pathPrefix == null) {
-			pathPrefix = String.format(PATH_PREFIX_TEMPLATE, language.getLanguage());
-		}
-		return pathPrefix;
-	}
-
-	/**
-	 * Returns the map from numbers to vocalization samples.
-	 *
-	 * @return map of vocalizations
-	 * @see <a href="https://github.com/logicsquad/nanocaptcha/issues/7">#7</a>
-	 * @since 1.4
-	 */
-	private Map<Integer, List<String>> vocalizations() {
-		if (vocalizations == null) {
-			vocalizations = new HashMap<>();
-			List<String> sampleNames;
-			for (int i = 0; i < 10; i++) {
-				sampleNames = new ArrayList<>();
-				StringBuilder sb;
-				for (String name : VOICES.get(language)) {
-					sb = new StringBuilder(pathPrefix());
-					sb.append(i).append("_").append(name).append(".wav");
-					sampleNames.add(sb.toString());
-				}
-				vocalizations.put(i, sampleNames);
-			}
-		}
-		return vocalizations;
-	}
 }
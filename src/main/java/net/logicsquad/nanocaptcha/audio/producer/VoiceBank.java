@@ -0,0 +1,776 @@
+package net.logicsquad.nanocaptcha.audio.producer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.logicsquad.nanocaptcha.audio.AudioProfile;
+import net.logicsquad.nanocaptcha.audio.LoudnessNormalizer;
+import net.logicsquad.nanocaptcha.audio.Sample;
+import net.logicsquad.nanocaptcha.audio.SampleCache;
+
+/**
+ * <p>
+ * A bank of vocalized digits in any number of languages, discovered from a
+ * directory tree laid out as:
+ * </p>
+ *
+ * <pre>
+ * &lt;root&gt;/&lt;locale&gt;/numbers/&lt;digit&gt;_&lt;variant&gt;.wav
+ * </pre>
+ *
+ * <p>
+ * where {@code <locale>} is a language tag (e.g., {@code en} or {@code pt-BR}),
+ * {@code <digit>} is 0&ndash;9 and {@code <variant>} names a voice. The tree can
+ * be a filesystem directory ({@link #fromDirectory(Path, long)}) or a classpath
+ * root ({@link #fromClasspath(String, long)}). It is indexed once, on creation;
+ * a locale is only included if it has at least one variant of every digit.
+ * </p>
+ *
+ * <p>
+ * No audio is decoded until it is requested: on first use of a locale in a
+ * given {@link AudioProfile}, all of its vocalizations are decoded (and
+ * resampled) together, and its leading and trailing silence is found (see
+ * {@link Sample#trimSilence()}). If decoded audio exceeds the bank's memory budget, the
+ * least recently used locales are evicted, to be decoded again if they are
+ * requested later.
+ * </p>
+ *
+ * <p>
+ * The built-in voices are available as {@link #builtIn()}. It holds no audio
+ * of its own, and has no memory budget: every lookup is resolved through the
+ * shared {@link SampleCache}, so it always serves the audio held there,
+ * including from any {@link net.logicsquad.nanocaptcha.audio.SoundBank
+ * SoundBank} loaded into it, whenever it was loaded. Its index is fixed, rather
+ * than discovered, so it works whatever the classpath is packaged in.
+ * </p>
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ * @see RandomNumberVoiceProducer#RandomNumberVoiceProducer(Locale, VoiceBank)
+ */
+public final class VoiceBank {
+	/**
+	 * Logger
+	 */
+	private static final Logger LOG = LoggerFactory.getLogger(VoiceBank.class);
+
+	/**
+	 * Classpath root of built-in voices
+	 */
+	private static final String BUILT_IN_ROOT = "/sounds";
+
+	/**
+	 * Map from built-in locale to its voice variants
+	 */
+	private static final Map<Locale, List<String>> BUILT_IN_VOICES = new LinkedHashMap<>();
+
+	static {
+		BUILT_IN_VOICES.put(Locale.ENGLISH, Arrays.asList("a", "b", "c", "d", "e", "f", "g"));
+		BUILT_IN_VOICES.put(Locale.GERMAN, Arrays.asList("a", "b"));
+	}
+
+	/**
+	 * Directory under each locale holding vocalized digits
+	 */
+	private static final String NUMBERS = "numbers";
+
+	/**
+	 * Pattern for vocalization filenames
+	 */
+	private static final Pattern FILENAME = Pattern.compile("([0-9])_([^.]+)\\.wav");
+
+	/**
+	 * Memory budget meaning "unlimited"
+	 */
+	private static final long UNLIMITED = Long.MAX_VALUE;
+
+	/**
+	 * Built-in voices
+	 */
+	private static volatile VoiceBank builtIn;
+
+	/**
+	 * Map from locale to vocalization names for each digit
+	 */
+	private final Map<Locale, List<List<String>>> index;
+
+	/**
+	 * Decodes a named vocalization for an {@link AudioProfile}
+	 */
+	private final BiFunction<String, AudioProfile, Sample> loader;
+
+	/**
+	 * Maximum number of bytes of decoded audio to retain
+	 */
+	private final long memoryBudget;
+
+	/**
+	 * Cache resolving every lookup, in place of {@link #loaded} (may be
+	 * {@code null})
+	 */
+	private final SampleCache cache;
+
+	/**
+	 * Decoded locales, in order of least recent use
+	 */
+	private final LinkedHashMap<Key, Voices> loaded = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * Bytes of decoded audio in {@link #loaded}
+	 */
+	private long memoryUsage;
+
+	/**
+	 * Number of times a locale has been decoded
+	 */
+	private final LongAdder loads = new LongAdder();
+
+	/**
+	 * Number of times a locale has been evicted
+	 */
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Constructor
+	 *
+	 * @param index        map from locale to vocalization names for each digit
+	 * @param loader       decodes a named vocalization for an
+	 *                     {@link AudioProfile}
+	 * @param memoryBudget maximum number of bytes of decoded audio to retain
+	 */
+	private VoiceBank(Map<Locale, List<List<String>>> index, BiFunction<String, AudioProfile, Sample> loader, long memoryBudget) {
+		this.index = index;
+		this.loader = loader;
+		this.memoryBudget = memoryBudget;
+		this.cache = null;
+		return;
+	}
+
+	/**
+	 * Constructor for a bank that holds no audio, resolving every lookup through
+	 * {@code cache}.
+	 *
+	 * @param index map from locale to vocalization names for each digit
+	 * @param cache a {@link SampleCache}
+	 */
+	private VoiceBank(Map<Locale, List<List<String>>> index, SampleCache cache) {
+		this.index = index;
+		this.loader = null;
+		this.memoryBudget = UNLIMITED;
+		this.cache = cache;
+		return;
+	}
+
+	/**
+	 * Returns the bank of built-in voices.
+	 *
+	 * @return built-in {@code VoiceBank}
+	 */
+	public static VoiceBank builtIn() {
+		if (builtIn == null) {
+			synchronized (VoiceBank.class) {
+				if (builtIn == null) {
+					builtIn = new VoiceBank(builtInIndex(), SampleCache.shared());
+				}
+			}
+		}
+		return builtIn;
+	}
+
+	/**
+	 * Returns the index of the built-in voices, from {@link #BUILT_IN_VOICES}.
+	 *
+	 * @return index
+	 */
+	private static Map<Locale, List<List<String>>> builtInIndex() {
+		Map<Locale, List<List<String>>> index = new LinkedHashMap<>();
+		for (Map.Entry<Locale, List<String>> entry : BUILT_IN_VOICES.entrySet()) {
+			List<List<String>> digits = new ArrayList<>(10);
+			for (int i = 0; i < 10; i++) {
+				List<String> names = new ArrayList<>();
+				for (String variant : entry.getValue()) {
+					names.add(BUILT_IN_ROOT + '/' + entry.getKey().toLanguageTag() + '/' + NUMBERS + '/' + i + '_' + variant + ".wav");
+				}
+				digits.add(Collections.unmodifiableList(names));
+			}
+			index.put(entry.getKey(), Collections.unmodifiableList(digits));
+		}
+		return Collections.unmodifiableMap(index);
+	}
+
+	/**
+	 * Returns a new {@code VoiceBank} indexing the directory tree under
+	 * {@code root}.
+	 *
+	 * @param root         root directory
+	 * @param memoryBudget maximum number of bytes of decoded audio to retain
+	 * @return new {@code VoiceBank}
+	 * @throws NullPointerException     if {@code root} is {@code null}
+	 * @throws IllegalArgumentException if {@code memoryBudget} is not positive
+	 * @throws IOException              if {@code root} cannot be read
+	 */
+	public static VoiceBank fromDirectory(Path root, long memoryBudget) throws IOException {
+		Objects.requireNonNull(root);
+		checkBudget(memoryBudget);
+		return new VoiceBank(index(root, path -> path.toAbsolutePath().toString()), VoiceBank::loadFile, memoryBudget);
+	}
+
+	/**
+	 * Returns a new {@code VoiceBank} indexing the tree under the classpath
+	 * resource {@code root} (e.g., {@code /voices}), which may be a directory or
+	 * inside a JAR file.
+	 *
+	 * @param root         classpath root, starting with {@code /}
+	 * @param memoryBudget maximum number of bytes of decoded audio to retain
+	 * @return new {@code VoiceBank}
+	 * @throws NullPointerException     if {@code root} is {@code null}
+	 * @throws IllegalArgumentException if {@code root} is not found, or
+	 *                                  {@code memoryBudget} is not positive
+	 */
+	public static VoiceBank fromClasspath(String root, long memoryBudget) {
+		checkBudget(memoryBudget);
+		return new VoiceBank(classpathIndex(root), (name, profile) -> profile.resample(new Sample(name)), memoryBudget);
+	}
+
+	/**
+	 * Checks that {@code memoryBudget} is positive.
+	 *
+	 * @param memoryBudget memory budget in bytes
+	 * @throws IllegalArgumentException if {@code memoryBudget} is not positive
+	 */
+	private static void checkBudget(long memoryBudget) {
+		if (memoryBudget <= 0) {
+			throw new IllegalArgumentException("Memory budget must be positive.");
+		}
+		return;
+	}
+
+	/**
+	 * Returns the index of the tree under the classpath resource {@code root}.
+	 *
+	 * @param root classpath root, starting with {@code /}
+	 * @return index
+	 * @throws IllegalArgumentException if {@code root} is not found
+	 * @throws UncheckedIOException     if {@code root} cannot be read
+	 */
+	private static Map<Locale, List<List<String>>> classpathIndex(String root) {
+		String prefix = root.endsWith("/") ? root.substring(0, root.length() - 1) : root;
+		URL url = VoiceBank.class.getResource(prefix);
+		if (url == null) {
+			throw new IllegalArgumentException("Classpath root not found: " + root);
+		}
+		try {
+			URI uri = url.toURI();
+			if (!"jar".equals(uri.getScheme())) {
+				Path path = Paths.get(uri);
+				return index(path, file -> prefix + '/' + slashed(path.relativize(file)));
+			}
+			FileSystem created = null;
+			try {
+				created = FileSystems.newFileSystem(uri, Collections.emptyMap());
+			} catch (FileSystemAlreadyExistsException e) {
+				// Another caller has it open: use theirs
+			}
+			try {
+				Path path = Paths.get(uri);
+				return index(path, file -> prefix + '/' + slashed(path.relativize(file)));
+			} finally {
+				if (created != null) {
+					created.close();
+				}
+			}
+		} catch (URISyntaxException e) {
+			throw new IllegalArgumentException("Invalid classpath root: " + root, e);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Returns {@code path} with its elements separated by {@code /}.
+	 *
+	 * @param path a relative {@link Path}
+	 * @return {@code path} as a resource name
+	 */
+	private static String slashed(Path path) {
+		StringBuilder sb = new StringBuilder();
+		for (Path element : path) {
+			if (sb.length() > 0) {
+				sb.append('/');
+			}
+			sb.append(element.toString());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the index of the tree under {@code root}, naming each vocalization
+	 * with {@code namer}.
+	 *
+	 * @param root  root directory
+	 * @param namer maps a vocalization's {@link Path} to its name
+	 * @return index
+	 * @throws IOException if {@code root} cannot be read
+	 */
+	private static Map<Locale, List<List<String>>> index(Path root, Function<Path, String> namer) throws IOException {
+		Map<Locale, List<List<String>>> index = new LinkedHashMap<>();
+		try (DirectoryStream<Path> locales = Files.newDirectoryStream(root, Files::isDirectory)) {
+			for (Path localeDir : locales) {
+				Path numbers = localeDir.resolve(NUMBERS);
+				if (!Files.isDirectory(numbers)) {
+					continue;
+				}
+				// Sorted by name for a stable order of variants
+				Map<String, Path> files = new TreeMap<>();
+				try (DirectoryStream<Path> stream = Files.newDirectoryStream(numbers, "*.wav")) {
+					for (Path file : stream) {
+						files.put(file.getFileName().toString(), file);
+					}
+				}
+				List<List<String>> digits = new ArrayList<>(10);
+				for (int i = 0; i < 10; i++) {
+					digits.add(new ArrayList<>());
+				}
+				for (Map.Entry<String, Path> entry : files.entrySet()) {
+					Matcher matcher = FILENAME.matcher(entry.getKey());
+					if (matcher.matches()) {
+						digits.get(Integer.parseInt(matcher.group(1))).add(namer.apply(entry.getValue()));
+					}
+				}
+				// Directory names inside a JAR file may have a trailing slash
+				String tag = localeDir.getFileName().toString().replaceAll("/$", "");
+				if (digits.stream().anyMatch(List::isEmpty)) {
+					LOG.warn("Skipping locale '{}': not all digits have a vocalization.", tag);
+					continue;
+				}
+				for (int i = 0; i < 10; i++) {
+					digits.set(i, Collections.unmodifiableList(digits.get(i)));
+				}
+				index.put(Locale.forLanguageTag(tag.replace('_', '-')), Collections.unmodifiableList(digits));
+			}
+		}
+		return Collections.unmodifiableMap(index);
+	}
+
+	/**
+	 * Decodes the file {@code name} for {@code profile}.
+	 *
+	 * @param name    absolute path of a WAV file
+	 * @param profile an {@link AudioProfile}
+	 * @return decoded {@link Sample}
+	 * @throws UncheckedIOException if the file cannot be read
+	 */
+	private static Sample loadFile(String name, AudioProfile profile) {
+		try (InputStream is = Files.newInputStream(Paths.get(name))) {
+			return profile.resample(new Sample(is));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Returns the locales in this bank.
+	 *
+	 * @return locales
+	 */
+	public Set<Locale> getLocales() {
+		return index.keySet();
+	}
+
+	/**
+	 * Does this bank have vocalizations for {@code locale}?
+	 *
+	 * @param locale a {@link Locale}
+	 * @return {@code true} if {@code locale} is in this bank, otherwise
+	 *         {@code false}
+	 */
+	public boolean supports(Locale locale) {
+		return index.containsKey(locale);
+	}
+
+	/**
+	 * Returns the names of the vocalizations for {@code locale}: classpath resource
+	 * names for a bank from the classpath, or absolute paths for a bank from a
+	 * directory.
+	 *
+	 * @param locale a {@link Locale} in this bank
+	 * @return vocalization names
+	 * @throws IllegalArgumentException if {@code locale} is not in this bank
+	 */
+	public List<String> getResourceNames(Locale locale) {
+		List<String> names = new ArrayList<>();
+		for (List<String> variants : digits(locale)) {
+			names.addAll(variants);
+		}
+		return names;
+	}
+
+	/**
+	 * Returns the vocalizations of {@code digit} for {@code locale} in
+	 * {@code profile}, decoding all of the locale's vocalizations on first use.
+	 *
+	 * @param locale  a {@link Locale} in this bank
+	 * @param digit   digit to vocalize
+	 * @param profile an {@link AudioProfile}
+	 * @return vocalizations (one per variant)
+	 * @throws IllegalArgumentException if {@code locale} is not in this bank, or
+	 *                                  {@code digit} is not 0&ndash;9
+	 */
+	public List<Sample> getVocalizations(Locale locale, int digit, AudioProfile profile) {
+		if (digit < 0 || digit > 9) {
+			throw new IllegalArgumentException("Digit must be 0-9.");
+		}
+		return vocalizations(locale, digit, profile, null);
+	}
+
+	/**
+	 * Returns the vocalizations of {@code digit} for {@code locale} in
+	 * {@code profile}, prepared by {@code normalizer}, decoding and normalizing all
+	 * of the locale's vocalizations on first use. Prepared vocalizations are held
+	 * (and count against the memory budget) separately from unprepared ones.
+	 *
+	 * @param locale     a {@link Locale} in this bank
+	 * @param digit      digit to vocalize
+	 * @param profile    an {@link AudioProfile}
+	 * @param normalizer a {@link LoudnessNormalizer}
+	 * @return vocalizations (one per variant)
+	 * @throws IllegalArgumentException if {@code locale} is not in this bank, or
+	 *                                  {@code digit} is not 0&ndash;9
+	 * @since 2.2
+	 */
+	public List<Sample> getVocalizations(Locale locale, int digit, AudioProfile profile, LoudnessNormalizer normalizer) {
+		if (digit < 0 || digit > 9) {
+			throw new IllegalArgumentException("Digit must be 0-9.");
+		}
+		return vocalizations(locale, digit, profile, Objects.requireNonNull(normalizer));
+	}
+
+	/**
+	 * Decodes all vocalizations for {@code locale} in {@code profile}, if they
+	 * are not already held.
+	 *
+	 * @param locale  a {@link Locale} in this bank
+	 * @param profile an {@link AudioProfile}
+	 * @throws IllegalArgumentException if {@code locale} is not in this bank
+	 */
+	public void load(Locale locale, AudioProfile profile) {
+		prepare(locale, profile, null);
+		return;
+	}
+
+	/**
+	 * Decodes all vocalizations for {@code locale} in {@code profile} and prepares
+	 * them with {@code normalizer}, if they are not already held.
+	 *
+	 * @param locale     a {@link Locale} in this bank
+	 * @param profile    an {@link AudioProfile}
+	 * @param normalizer a {@link LoudnessNormalizer}
+	 * @throws IllegalArgumentException if {@code locale} is not in this bank
+	 * @since 2.2
+	 */
+	public void load(Locale locale, AudioProfile profile, LoudnessNormalizer normalizer) {
+		prepare(locale, profile, Objects.requireNonNull(normalizer));
+		return;
+	}
+
+	/**
+	 * Decodes all vocalizations for {@code locale} in {@code profile}, preparing
+	 * them with {@code normalizer} if it is not {@code null}, if they are not
+	 * already held.
+	 *
+	 * @param locale     a {@link Locale} in this bank
+	 * @param profile    an {@link AudioProfile}
+	 * @param normalizer a {@link LoudnessNormalizer} (may be {@code null})
+	 * @throws IllegalArgumentException if {@code locale} is not in this bank
+	 */
+	private void prepare(Locale locale, AudioProfile profile, LoudnessNormalizer normalizer) {
+		if (cache == null) {
+			voices(locale, profile, normalizer);
+			return;
+		}
+		for (int digit = 0; digit < 10; digit++) {
+			vocalizations(locale, digit, profile, normalizer);
+		}
+		return;
+	}
+
+	/**
+	 * Returns the vocalizations of {@code digit} for {@code locale} in
+	 * {@code profile}, prepared by {@code normalizer} if it is not {@code null}.
+	 * Without a {@link #cache}, they come from the locale's decoded vocalizations;
+	 * with one, each is resolved through it on every call, so that changes to the
+	 * cache are seen.
+	 *
+	 * @param locale     a {@link Locale} in this bank
+	 * @param digit      digit to vocalize
+	 * @param profile    an {@link AudioProfile}
+	 * @param normalizer a {@link LoudnessNormalizer} (may be {@code null})
+	 * @return vocalizations (one per variant)
+	 * @throws IllegalArgumentException if {@code locale} is not in this bank
+	 */
+	private List<Sample> vocalizations(Locale locale, int digit, AudioProfile profile, LoudnessNormalizer normalizer) {
+		if (cache == null) {
+			return voices(locale, profile, normalizer).digits.get(digit);
+		}
+		Objects.requireNonNull(profile);
+		List<String> names = digits(locale).get(digit);
+		List<Sample> samples = new ArrayList<>(names.size());
+		for (String name : names) {
+			Sample sample = normalizer == null ? cache.get(name, profile) : cache.get(name, profile, normalizer);
+			// Retained by the cached sample, so found only on first use
+			sample.trimSilence();
+			samples.add(sample);
+		}
+		return Collections.unmodifiableList(samples);
+	}
+
+	/**
+	 * Returns the decoded vocalizations for {@code locale} in {@code profile},
+	 * decoding them if necessary, and evicting other locales to keep within the
+	 * memory budget. Decoding is done outside the lock, so requests for other
+	 * (already decoded) locales are not held up.
+	 *
+	 * @param locale     a {@link Locale} in this bank
+	 * @param profile    an {@link AudioProfile}
+	 * @param normalizer a {@link LoudnessNormalizer}, or {@code null} to leave
+	 *                   vocalizations as decoded
+	 * @return decoded vocalizations
+	 * @throws IllegalArgumentException if {@code locale} is not in this bank
+	 */
+	private Voices voices(Locale locale, AudioProfile profile, LoudnessNormalizer normalizer) {
+		List<List<String>> names = digits(locale);
+		Key key = new Key(locale, Objects.requireNonNull(profile), normalizer);
+		synchronized (loaded) {
+			Voices voices = loaded.get(key);
+			if (voices != null) {
+				return voices;
+			}
+		}
+		Voices decoded = decode(names, profile, normalizer);
+		loads.increment();
+		synchronized (loaded) {
+			Voices voices = loaded.putIfAbsent(key, decoded);
+			if (voices != null) {
+				// Another thread got there first
+				return voices;
+			}
+			memoryUsage += decoded.bytes;
+			while (memoryUsage > memoryBudget && loaded.size() > 1) {
+				Map.Entry<Key, Voices> eldest = loaded.entrySet().iterator().next();
+				memoryUsage -= eldest.getValue().bytes;
+				loaded.remove(eldest.getKey());
+				evictions.increment();
+				LOG.debug("Evicted {} from voice bank.", eldest.getKey());
+			}
+		}
+		return decoded;
+	}
+
+	/**
+	 * Decodes the vocalizations in {@code names} for {@code profile}, preparing
+	 * them with {@code normalizer} if it is not {@code null}.
+	 *
+	 * @param names      vocalization names for each digit
+	 * @param profile    an {@link AudioProfile}
+	 * @param normalizer a {@link LoudnessNormalizer} (may be {@code null})
+	 * @return decoded vocalizations
+	 */
+	private Voices decode(List<List<String>> names, AudioProfile profile, LoudnessNormalizer normalizer) {
+		List<List<Sample>> digits = new ArrayList<>(10);
+		long bytes = 0;
+		for (List<String> variants : names) {
+			List<Sample> samples = new ArrayList<>(variants.size());
+			for (String name : variants) {
+				Sample sample = loader.apply(name, profile);
+				if (normalizer != null) {
+					sample = normalizer.normalize(sample);
+				}
+				// Find silence now, rather than on first crossfaded use
+				sample.trimSilence();
+				bytes += sample.getSampleCount() * 2;
+				samples.add(sample);
+			}
+			digits.add(Collections.unmodifiableList(samples));
+		}
+		return new Voices(digits, bytes);
+	}
+
+	/**
+	 * Returns the vocalization names for each digit for {@code locale}.
+	 *
+	 * @param locale a {@link Locale}
+	 * @return vocalization names for each digit
+	 * @throws IllegalArgumentException if {@code locale} is not in this bank
+	 */
+	private List<List<String>> digits(Locale locale) {
+		List<List<String>> digits = index.get(Objects.requireNonNull(locale));
+		if (digits == null) {
+			throw new IllegalArgumentException("Unsupported locale: " + locale);
+		}
+		return digits;
+	}
+
+	/**
+	 * Returns the maximum number of bytes of decoded audio this bank retains.
+	 *
+	 * @return memory budget in bytes
+	 */
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * Returns the number of bytes of decoded audio this bank currently holds
+	 * (always {@code 0} for {@link #builtIn()}, whose audio is held by the shared
+	 * {@link SampleCache}).
+	 *
+	 * @return memory usage in bytes
+	 */
+	public long getMemoryUsage() {
+		synchronized (loaded) {
+			return memoryUsage;
+		}
+	}
+
+	/**
+	 * Returns the number of times a locale has been decoded (always {@code 0} for
+	 * {@link #builtIn()}: see {@link SampleCache#getMissCount()}).
+	 *
+	 * @return load count
+	 */
+	public long getLoadCount() {
+		return loads.sum();
+	}
+
+	/**
+	 * Returns the number of times a locale has been evicted to keep within the
+	 * memory budget.
+	 *
+	 * @return eviction count
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(64);
+		sb.append("[VoiceBank: locales=").append(index.keySet()).append(" memoryUsage=").append(getMemoryUsage())
+				.append(" loads=").append(getLoadCount()).append(" evictions=").append(getEvictionCount()).append(']');
+		return sb.toString();
+	}
+
+	/**
+	 * Key for decoded vocalizations: a locale in a profile, possibly prepared by
+	 * a {@link LoudnessNormalizer}.
+	 */
+	private static final class Key {
+		/**
+		 * Locale
+		 */
+		private final Locale locale;
+
+		/**
+		 * Profile
+		 */
+		private final AudioProfile profile;
+
+		/**
+		 * Normalizer (may be {@code null})
+		 */
+		private final LoudnessNormalizer normalizer;
+
+		/**
+		 * Constructor
+		 *
+		 * @param locale     a {@link Locale}
+		 * @param profile    an {@link AudioProfile}
+		 * @param normalizer a {@link LoudnessNormalizer} (may be {@code null})
+		 */
+		private Key(Locale locale, AudioProfile profile, LoudnessNormalizer normalizer) {
+			this.locale = locale;
+			this.profile = profile;
+			this.normalizer = normalizer;
+			return;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return locale.equals(other.locale) && profile == other.profile && Objects.equals(normalizer, other.normalizer);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(locale, profile, normalizer);
+		}
+
+		@Override
+		public String toString() {
+			String key = locale.toLanguageTag() + '@' + profile.name();
+			return normalizer == null ? key : key + '#' + normalizer.getTargetRmsDbfs() + '/' + normalizer.getPeakCeilingDbfs();
+		}
+	}
+
+	/**
+	 * Decoded vocalizations for a locale.
+	 */
+	private static final class Voices {
+		/**
+		 * Vocalizations for each digit
+		 */
+		private final List<List<Sample>> digits;
+
+		/**
+		 * Bytes of decoded audio
+		 */
+		private final long bytes;
+
+		/**
+		 * Constructor
+		 *
+		 * @param digits vocalizations for each digit
+		 * @param bytes  bytes of decoded audio
+		 */
+		private Voices(List<List<Sample>> digits, long bytes) {
+			this.digits = digits;
+			this.bytes = bytes;
+			return;
+		}
+	}
+}
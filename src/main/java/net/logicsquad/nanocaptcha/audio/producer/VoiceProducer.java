@@ -1,5 +1,7 @@
 package net.logicsquad.nanocaptcha.audio.producer;
 
+import net.logicsquad.nanocaptcha.audio.AudioProfile;
+import net.logicsquad.nanocaptcha.audio.LoudnessNormalizer;
 import net.logicsquad.nanocaptcha.audio.Sample;
 
 /**
@@ -17,4 +19,38 @@ public interface VoiceProducer {
 	 * @return a {@link Sample} containing the vocalization
 	 */
 	Sample getVocalization(char letter);
+
+	/**
+	 * Generates a vocalization for a single character, in the format of
+	 * {@code profile}. The default implementation resamples the result of
+	 * {@link #getVocalization(char)} on every call: implementations that can
+	 * cache resampled audio (as {@link RandomNumberVoiceProducer} does) should
+	 * override this method.
+	 *
+	 * @param letter  character to vocalize
+	 * @param profile an {@link AudioProfile}
+	 * @return a {@link Sample} containing the vocalization
+	 * @since 2.2
+	 */
+	default Sample getVocalization(char letter, AudioProfile profile) {
+		return profile.resample(getVocalization(letter));
+	}
+
+	/**
+	 * Generates a vocalization for a single character, in the format of
+	 * {@code profile}, prepared by {@code normalizer} (trimmed of silence and
+	 * normalized in loudness). The default implementation normalizes the result of
+	 * {@link #getVocalization(char, AudioProfile)} on every call: implementations
+	 * that can cache normalized audio (as {@link RandomNumberVoiceProducer} does)
+	 * should override this method.
+	 *
+	 * @param letter     character to vocalize
+	 * @param profile    an {@link AudioProfile}
+	 * @param normalizer a {@link LoudnessNormalizer}
+	 * @return a {@link Sample} containing the vocalization
+	 * @since 2.2
+	 */
+	default Sample getVocalization(char letter, AudioProfile profile, LoudnessNormalizer normalizer) {
+		return normalizer.normalize(getVocalization(letter, profile));
+	}
 }
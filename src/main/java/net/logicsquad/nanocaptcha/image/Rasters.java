@@ -0,0 +1,104 @@
+package net.logicsquad.nanocaptcha.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
+
+/**
+ * Helper class for working directly on image pixels, shared by the built-in
+ * filters and noise producers. It is public only so that they can reach it
+ * across packages: it is not intended for use outside this library, and may
+ * change without notice.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public final class Rasters {
+	/**
+	 * Private constructor for non-instantiability.
+	 */
+	private Rasters() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Returns the pixel array of {@code image} if it is a
+	 * {@link BufferedImage#TYPE_INT_ARGB} or {@link BufferedImage#TYPE_INT_RGB}
+	 * image whose {@link DataBufferInt} holds exactly its pixels, row by row, or
+	 * {@code null} otherwise. Writes to the array change {@code image}.
+	 *
+	 * @param image an image
+	 * @return pixel array, or {@code null}
+	 */
+	public static int[] intPixels(BufferedImage image) {
+		if (image.getType() != BufferedImage.TYPE_INT_ARGB && image.getType() != BufferedImage.TYPE_INT_RGB) {
+			return null;
+		}
+		WritableRaster raster = image.getRaster();
+		if (raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0
+				|| !(raster.getDataBuffer() instanceof DataBufferInt)) {
+			return null;
+		}
+		int[] pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+		return pixels.length == image.getWidth() * image.getHeight() ? pixels : null;
+	}
+
+	/**
+	 * Composites non-premultiplied ARGB pixel {@code src} over {@code dst}, with
+	 * the same 8-bit arithmetic as Java2D's {@code SrcOver} loops, so that the
+	 * result matches drawing {@code src} over {@code dst} with a
+	 * {@link java.awt.Graphics2D Graphics2D}.
+	 *
+	 * @param src source pixel
+	 * @param dst destination pixel
+	 * @return composited pixel
+	 */
+	public static int srcOver(int src, int dst) {
+		int srcA = src >>> 24;
+		if (srcA == 0) {
+			return dst;
+		}
+		if (srcA == 0xff) {
+			return src;
+		}
+		int dstF = mul8(0xff - srcA, dst >>> 24);
+		int resA = srcA + dstF;
+		int resR = mul8(srcA, (src >> 16) & 0xff) + mul8(dstF, (dst >> 16) & 0xff);
+		int resG = mul8(srcA, (src >> 8) & 0xff) + mul8(dstF, (dst >> 8) & 0xff);
+		int resB = mul8(srcA, src & 0xff) + mul8(dstF, dst & 0xff);
+		if (resA < 0xff) {
+			resR = div8(resR, resA);
+			resG = div8(resG, resA);
+			resB = div8(resB, resA);
+		}
+		return (resA << 24) | (resR << 16) | (resG << 8) | resB;
+	}
+
+	/**
+	 * Multiplies 8-bit values {@code a} and {@code b}, as fractions of 255, as
+	 * Java2D's {@code mul8table} does.
+	 *
+	 * @param a first value
+	 * @param b second value
+	 * @return product
+	 */
+	private static int mul8(int a, int b) {
+		return (int) ((a * b * 0x010101L + (1 << 23)) >>> 24);
+	}
+
+	/**
+	 * Divides 8-bit value {@code b} by {@code a}, as fractions of 255, as
+	 * Java2D's {@code div8table} does.
+	 *
+	 * @param b dividend
+	 * @param a divisor
+	 * @return quotient
+	 */
+	private static int div8(int b, int a) {
+		if (b >= a) {
+			return 0xff;
+		}
+		long inc = ((0xffL << 24) + a / 2) / a;
+		return (int) ((b * inc + (1 << 23)) >>> 24);
+	}
+}
@@ -3,10 +3,24 @@ package net.logicsquad.nanocaptcha.image.filter;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.logicsquad.nanocaptcha.image.Rasters;
 
 /**
  * Overlays a warped grid to the image.
  *
+ * <p>
+ * The fish-eye distortion moves each pixel within a randomly sized distance
+ * of the centre outwards. Which source pixel lands where depends only on the
+ * image size and that distance, so it is computed once as a {@link Remap}
+ * table, cached for each combination, and applied as a single gather over the
+ * image's pixels.
+ * </p>
+ *
  * @author <a href="mailto:james.childers@gmail.com">James Childers</a>
  * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
  * @since 1.0
@@ -17,6 +31,16 @@ public class FishEyeImageFilter implements ImageFilter {
 	 */
 	private static final Color DEFAULT_COLOR = Color.BLACK;
 
+	/**
+	 * Maximum number of remap tables cached
+	 */
+	private static final int MAX_REMAPS = 64;
+
+	/**
+	 * Cached remap tables
+	 */
+	private static final Map<RemapKey, Remap> REMAPS = new ConcurrentHashMap<>();
+
 	/**
 	 * Horizontal line {@link Color}
 	 */
@@ -72,42 +96,57 @@ public class FishEyeImageFilter implements ImageFilter {
 			graph.drawLine(i, 0, i, height);
 		}
 
-		// Create a pixel array of the original image.
-		// we need this later to do the operations on..
-		int[] pix = new int[height * width];
-		int j = 0;
+		graph.dispose();
+
+		distort(image, ranInt(width / 4, width / 3));
+		return;
+	}
 
-		for (int j1 = 0; j1 < width; j1++) {
-			for (int k1 = 0; k1 < height; k1++) {
-				pix[j] = image.getRGB(j1, k1);
-				j++;
+	/**
+	 * Applies the fish-eye distortion to {@code image}, moving pixels within
+	 * {@code distance} of the centre.
+	 *
+	 * @param image    image to distort
+	 * @param distance radius of distortion
+	 */
+	void distort(BufferedImage image, int distance) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		Remap remap = remap(width, height, distance);
+		int[] pixels = Rasters.intPixels(image);
+		if (pixels != null) {
+			remap.apply(pixels.clone(), pixels);
+		} else {
+			int[] source = image.getRGB(0, 0, width, height, null, 0, width);
+			for (int i = 0; i < remap.targets.length; i++) {
+				int target = remap.targets[i];
+				image.setRGB(target % width, target / width, source[remap.sources[i]]);
 			}
 		}
+		return;
+	}
 
-		double distance = ranInt(width / 4, width / 3);
-
-		// put the distortion in the (dead) middle
-		int wMid = image.getWidth() / 2;
-		int hMid = image.getHeight() / 2;
-
-		// again iterate over all pixels..
-		for (int x = 0; x < image.getWidth(); x++) {
-			for (int y = 0; y < image.getHeight(); y++) {
-
-				int relX = x - wMid;
-				int relY = y - hMid;
-
-				double d1 = Math.sqrt(relX * relX + relY * relY);
-				if (d1 < distance) {
-
-					int j2 = wMid + (int) (((fishEyeFormula(d1 / distance) * distance) / d1) * (x - wMid));
-					int k2 = hMid + (int) (((fishEyeFormula(d1 / distance) * distance) / d1) * (y - hMid));
-					image.setRGB(x, y, pix[j2 * height + k2]);
-				}
+	/**
+	 * Returns the {@link Remap} for an image of {@code width} by {@code height}
+	 * pixels distorted within {@code distance} of the centre, computing and
+	 * caching it if necessary.
+	 *
+	 * @param width    image width
+	 * @param height   image height
+	 * @param distance radius of distortion
+	 * @return remap table
+	 */
+	private static Remap remap(int width, int height, int distance) {
+		RemapKey key = new RemapKey(width, height, distance);
+		Remap remap = REMAPS.get(key);
+		if (remap == null) {
+			remap = new Remap(width, height, distance);
+			if (REMAPS.size() >= MAX_REMAPS) {
+				REMAPS.clear();
 			}
+			REMAPS.put(key, remap);
 		}
-
-		graph.dispose();
+		return remap;
 	}
 
 	private int ranInt(int i, int j) {
@@ -115,7 +154,7 @@ public class FishEyeImageFilter implements ImageFilter {
 		return (int) (i + ((j - i) + 1) * d);
 	}
 
-	private double fishEyeFormula(double s) {
+	private static double fishEyeFormula(double s) {
 		// implementation of:
 		// g(s) = - (3/4)s3 + (3/2)s2 + (1/4)s, with s from 0 to 1.
 		if (s < 0.0D) {
@@ -127,4 +166,131 @@ public class FishEyeImageFilter implements ImageFilter {
 
 		return -0.75D * s * s * s + 1.5D * s * s + 0.25D * s;
 	}
+
+	/**
+	 * Source-index remap table for the fish-eye distortion: pixel
+	 * {@code targets[i]} takes its value from pixel {@code sources[i]}, both as
+	 * row-major indexes. Pixels that would take their own value are left out.
+	 */
+	private static final class Remap {
+		/**
+		 * Indexes of pixels to set
+		 */
+		private final int[] targets;
+
+		/**
+		 * Indexes of pixels to take values from
+		 */
+		private final int[] sources;
+
+		/**
+		 * Constructor
+		 *
+		 * @param width    image width
+		 * @param height   image height
+		 * @param distance radius of distortion
+		 */
+		private Remap(int width, int height, int distance) {
+			int wMid = width / 2;
+			int hMid = height / 2;
+			int[] targets = new int[width * height];
+			int[] sources = new int[width * height];
+			int count = 0;
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					int relX = x - wMid;
+					int relY = y - hMid;
+					double d1 = Math.sqrt(relX * relX + relY * relY);
+					if (d1 < distance) {
+						double scale = (fishEyeFormula(d1 / distance) * distance) / d1;
+						int j2 = wMid + (int) (scale * relX);
+						int k2 = hMid + (int) (scale * relY);
+						int target = y * width + x;
+						int source = k2 * width + j2;
+						if (source != target) {
+							targets[count] = target;
+							sources[count] = source;
+							count++;
+						}
+					}
+				}
+			}
+			this.targets = Arrays.copyOf(targets, count);
+			this.sources = Arrays.copyOf(sources, count);
+			return;
+		}
+
+		/**
+		 * Sets pixels in {@code pixels} from {@code source}, a copy of their
+		 * original values.
+		 *
+		 * @param source original pixels
+		 * @param pixels pixels to set
+		 */
+		private void apply(int[] source, int[] pixels) {
+			for (int i = 0; i < targets.length; i++) {
+				pixels[targets[i]] = source[sources[i]];
+			}
+			return;
+		}
+	}
+
+	/**
+	 * Key for a cached {@link Remap}.
+	 */
+	private static final class RemapKey {
+		/**
+		 * Image width
+		 */
+		private final int width;
+
+		/**
+		 * Image height
+		 */
+		private final int height;
+
+		/**
+		 * Radius of distortion
+		 */
+		private final int distance;
+
+		/**
+		 * Constructor
+		 *
+		 * @param width    image width
+		 * @param height   image height
+		 * @param distance radius of distortion
+		 */
+		private RemapKey(int width, int height, int distance) {
+			this.width = width;
+			this.height = height;
+			this.distance = distance;
+			return;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof RemapKey)) {
+				return false;
+			}
+			RemapKey other = (RemapKey) obj;
+			return width == other.width && height == other.height && distance == other.distance;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(width, height, distance);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder(50);
+			sb.append("[RemapKey: width=").append(width).append(" height=").append(height).append(" distance=")
+					.append(distance).append(']');
+			return sb.toString();
+		}
+	}
 }
@@ -7,10 +7,23 @@ import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.BufferedImageOp;
 import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.logicsquad.nanocaptcha.image.Rasters;
 
 /**
- * Applies a {@link RippleFilter} to the image.
+ * Applies a {@link RippleFilter} to the image. The image is transformed in
+ * place: the source pixels are read once, and each output pixel is composited
+ * over the original (as drawing the filtered image over it would) and written
+ * back in a single pass. For a {@link BufferedImage#TYPE_INT_ARGB} image (as
+ * used by {@link net.logicsquad.nanocaptcha.image.ImageCaptcha ImageCaptcha})
+ * or a {@link BufferedImage#TYPE_INT_RGB} image, pixels are read from and
+ * written to its {@link DataBufferInt} directly. Ripple displacements are
+ * looked up in per-row and per-column tables, cached for each image size.
  *
  * @author <a href="mailto:james.childers@gmail.com">James Childers</a>
  * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
@@ -26,7 +39,8 @@ public class RippleImageFilter implements ImageFilter {
 		filter.setYAmplitude(1.7f);
 		filter.setXWavelength(15);
 		filter.setYWavelength(5);
-		ImageFilter.applyFilter(image, filter);
+		filter.filterInPlace(image);
+		return;
 	}
 
 	// The following code has been modified by Logic Squad, and originally carried
@@ -74,6 +88,16 @@ public class RippleImageFilter implements ImageFilter {
 		 */
 		public final static int NOISE = 3;
 
+		/**
+		 * Maximum number of displacement tables cached
+		 */
+		private static final int MAX_DISPLACEMENTS = 64;
+
+		/**
+		 * Cached displacement tables
+		 */
+		private static final Map<DisplacementKey, float[]> DISPLACEMENTS = new ConcurrentHashMap<>();
+
 		private float xAmplitude, yAmplitude;
 		private float xWavelength, yWavelength;
 		private int waveType;
@@ -149,30 +173,172 @@ public class RippleImageFilter implements ImageFilter {
 
 		@Override
 		protected void transformInverse(int x, int y, float[] out) {
-			float nx = (float) y / xWavelength;
-			float ny = (float) x / yWavelength;
-			float fx, fy;
+			out[0] = x + xAmplitude * wave((float) y / xWavelength);
+			out[1] = y + yAmplitude * wave((float) x / yWavelength);
+		}
+
+		/**
+		 * Returns the value of this filter's wave at {@code n}.
+		 *
+		 * @param n position, in wavelengths
+		 * @return wave value
+		 */
+		private float wave(float n) {
 			switch (waveType) {
 			case SINE:
 			default:
-				fx = (float) Math.sin(nx);
-				fy = (float) Math.sin(ny);
-				break;
+				return (float) Math.sin(n);
 			case SAWTOOTH:
-				fx = ImageMath.mod(nx, 1);
-				fy = ImageMath.mod(ny, 1);
-				break;
+				return ImageMath.mod(n, 1);
 			case TRIANGLE:
-				fx = ImageMath.triangle(nx);
-				fy = ImageMath.triangle(ny);
-				break;
+				return ImageMath.triangle(n);
 			case NOISE:
-				fx = Noise.noise1(nx);
-				fy = Noise.noise1(ny);
-				break;
+				return Noise.noise1(n);
 			}
-			out[0] = x + xAmplitude * fx;
-			out[1] = y + yAmplitude * fy;
+		}
+
+		/**
+		 * Transforms {@code image} in place, as
+		 * {@link TransformFilter#filterInPlace(BufferedImage)}. The x displacement
+		 * depends only on y, and the y displacement only on x, so with bilinear
+		 * interpolation, both are looked up in tables (see
+		 * {@link #displacements(int, int, float, float)}) rather than computed for
+		 * each pixel. In rows and columns far enough from the edges that every
+		 * source neighbourhood lies inside the image, pixels are interpolated
+		 * without edge checks.
+		 *
+		 * @param image image to transform
+		 */
+		@Override
+		void filterInPlace(BufferedImage image) {
+			if (interpolation != BILINEAR) {
+				super.filterInPlace(image);
+				return;
+			}
+			int width = image.getWidth();
+			int height = image.getHeight();
+			transformedSpace = new Rectangle(0, 0, width, height);
+			transformSpace(transformedSpace);
+			int outWidth = Math.min(width, transformedSpace.width);
+			int outHeight = Math.min(height, transformedSpace.height);
+			float[] xDisplacements = displacements(transformedSpace.y, outHeight, xAmplitude, xWavelength);
+			float[] yDisplacements = displacements(transformedSpace.x, outWidth, yAmplitude, yWavelength);
+			// Output pixels in these rows and columns have all four source corners in the image
+			int xReach = reach(xDisplacements);
+			int yReach = reach(yDisplacements);
+			int firstColumn = Math.max(0, xReach - transformedSpace.x);
+			int lastColumn = Math.max(firstColumn, Math.min(outWidth, width - 1 - xReach - transformedSpace.x));
+			int firstRow = Math.max(0, yReach - transformedSpace.y);
+			int lastRow = Math.min(outHeight, height - 1 - yReach - transformedSpace.y);
+			boolean opaque = !image.getColorModel().hasAlpha();
+			int[] pixels = Rasters.intPixels(image);
+			int[] inPixels = pixels == null ? getRGB(image, 0, 0, width, height, null) : pixels.clone();
+			int[] outPixels = pixels == null ? new int[width * height] : pixels;
+			float[] out = new float[2];
+			for (int y = 0; y < height; y++) {
+				int row = y * width;
+				int copyFrom = 0;
+				if (y < outHeight) {
+					boolean interior = y >= firstRow && y < lastRow;
+					int interiorStart = interior ? firstColumn : outWidth;
+					int interiorEnd = interior ? lastColumn : outWidth;
+					float xDisplacement = xDisplacements[y];
+					int outY = transformedSpace.y + y;
+					filterEdge(inPixels, outPixels, width, height, y, 0, interiorStart, xDisplacements, yDisplacements,
+							opaque, out);
+					for (int x = interiorStart; x < interiorEnd; x++) {
+						float srcXf = transformedSpace.x + x + xDisplacement;
+						float srcYf = outY + yDisplacements[x];
+						// Source coordinates are non-negative here, so casting floors them
+						int srcX = (int) srcXf;
+						int srcY = (int) srcYf;
+						int j = width * srcY + srcX;
+						int pixel = ImageMath.bilinearInterpolate(srcXf - srcX, srcYf - srcY, inPixels[j], inPixels[j + 1],
+								inPixels[j + width], inPixels[j + width + 1]);
+						outPixels[row + x] = composite(pixel, inPixels[row + x], opaque);
+					}
+					filterEdge(inPixels, outPixels, width, height, y, interiorEnd, outWidth, xDisplacements,
+							yDisplacements, opaque, out);
+					copyFrom = outWidth;
+				}
+				System.arraycopy(inPixels, row + copyFrom, outPixels, row + copyFrom, width - copyFrom);
+			}
+			if (pixels == null) {
+				image.setRGB(0, 0, width, height, outPixels, 0, width);
+			}
+			return;
+		}
+
+		/**
+		 * Transforms output pixels {@code fromX} (inclusive) to {@code toX}
+		 * (exclusive) of row {@code y}, checking each source corner against the
+		 * image edges.
+		 *
+		 * @param inPixels       source pixels
+		 * @param outPixels      output pixels
+		 * @param width          image width
+		 * @param height         image height
+		 * @param y              row
+		 * @param fromX          first column
+		 * @param toX            column after last
+		 * @param xDisplacements x displacements for each row
+		 * @param yDisplacements y displacements for each column
+		 * @param opaque         whether the image lacks alpha
+		 * @param out            scratch array for source position
+		 */
+		private void filterEdge(int[] inPixels, int[] outPixels, int width, int height, int y, int fromX, int toX,
+				float[] xDisplacements, float[] yDisplacements, boolean opaque, float[] out) {
+			int row = y * width;
+			int outY = transformedSpace.y + y;
+			for (int x = fromX; x < toX; x++) {
+				out[0] = transformedSpace.x + x + xDisplacements[y];
+				out[1] = outY + yDisplacements[x];
+				outPixels[row + x] = composite(transformedPixel(inPixels, width, height, out), inPixels[row + x], opaque);
+			}
+			return;
+		}
+
+		/**
+		 * Returns a table of displacements, by this filter's wave type, of the given
+		 * amplitude and wavelength: element {@code i} is the displacement at position
+		 * {@code origin + i} along the other axis. Tables are cached, so filtering
+		 * images of the same size with the same parameters computes them once.
+		 *
+		 * @param origin     first position
+		 * @param length     number of positions
+		 * @param amplitude  amplitude
+		 * @param wavelength wavelength
+		 * @return displacement table (not to be modified)
+		 */
+		private float[] displacements(int origin, int length, float amplitude, float wavelength) {
+			DisplacementKey key = new DisplacementKey(origin, length, amplitude, wavelength, waveType);
+			float[] table = DISPLACEMENTS.get(key);
+			if (table == null) {
+				table = new float[length];
+				for (int i = 0; i < length; i++) {
+					table[i] = amplitude * wave((float) (origin + i) / wavelength);
+				}
+				if (DISPLACEMENTS.size() >= MAX_DISPLACEMENTS) {
+					DISPLACEMENTS.clear();
+				}
+				DISPLACEMENTS.put(key, table);
+			}
+			return table;
+		}
+
+		/**
+		 * Returns the largest magnitude in {@code displacements}, rounded up to a
+		 * whole number of pixels.
+		 *
+		 * @param displacements displacement table
+		 * @return largest displacement
+		 */
+		private static int reach(float[] displacements) {
+			float reach = 0;
+			for (float displacement : displacements) {
+				reach = Math.max(reach, Math.abs(displacement));
+			}
+			return (int) Math.ceil(reach);
 		}
 
 		@Override
@@ -184,6 +350,82 @@ public class RippleImageFilter implements ImageFilter {
 		public RenderingHints getRenderingHints() {
 			return null;
 		}
+
+		/**
+		 * Key for a cached displacement table.
+		 */
+		private static final class DisplacementKey {
+			/**
+			 * First position
+			 */
+			private final int origin;
+
+			/**
+			 * Number of positions
+			 */
+			private final int length;
+
+			/**
+			 * Amplitude
+			 */
+			private final float amplitude;
+
+			/**
+			 * Wavelength
+			 */
+			private final float wavelength;
+
+			/**
+			 * Wave type
+			 */
+			private final int waveType;
+
+			/**
+			 * Constructor
+			 *
+			 * @param origin     first position
+			 * @param length     number of positions
+			 * @param amplitude  amplitude
+			 * @param wavelength wavelength
+			 * @param waveType   wave type
+			 */
+			private DisplacementKey(int origin, int length, float amplitude, float wavelength, int waveType) {
+				this.origin = origin;
+				this.length = length;
+				this.amplitude = amplitude;
+				this.wavelength = wavelength;
+				this.waveType = waveType;
+				return;
+			}
+
+			@Override
+			public boolean equals(Object obj) {
+				if (this == obj) {
+					return true;
+				}
+				if (!(obj instanceof DisplacementKey)) {
+					return false;
+				}
+				DisplacementKey other = (DisplacementKey) obj;
+				return origin == other.origin && length == other.length
+						&& Float.compare(amplitude, other.amplitude) == 0
+						&& Float.compare(wavelength, other.wavelength) == 0 && waveType == other.waveType;
+			}
+
+			@Override
+			public int hashCode() {
+				return Objects.hash(origin, length, amplitude, wavelength, waveType);
+			}
+
+			@Override
+			public String toString() {
+				StringBuilder sb = new StringBuilder(80);
+				sb.append("[DisplacementKey: origin=").append(origin).append(" length=").append(length)
+						.append(" amplitude=").append(amplitude).append(" wavelength=").append(wavelength)
+						.append(" waveType=").append(waveType).append(']');
+				return sb.toString();
+			}
+		}
 	}
 
 	// The following code has been modified by Logic Squad, and originally carried
@@ -274,6 +516,101 @@ public class RippleImageFilter implements ImageFilter {
 		 */
 		protected abstract void transformSpace(Rectangle rect);
 
+		/**
+		 * Transforms {@code image} in place. The result is the same as drawing the
+		 * output of {@link #filter(BufferedImage, BufferedImage)} over {@code image}
+		 * (with {@link java.awt.AlphaComposite#SrcOver SrcOver} compositing, if
+		 * {@code image} has alpha), but the source pixels are read once, and each
+		 * output pixel is computed, composited and stored in one pass.
+		 *
+		 * @param image image to transform
+		 */
+		void filterInPlace(BufferedImage image) {
+			int width = image.getWidth();
+			int height = image.getHeight();
+			transformedSpace = new Rectangle(0, 0, width, height);
+			transformSpace(transformedSpace);
+			boolean opaque = !image.getColorModel().hasAlpha();
+			int[] pixels = Rasters.intPixels(image);
+			int[] inPixels = pixels == null ? getRGB(image, 0, 0, width, height, null) : pixels.clone();
+			int[] outPixels = pixels == null ? new int[width * height] : pixels;
+			int outWidth = Math.min(width, transformedSpace.width);
+			int outHeight = Math.min(height, transformedSpace.height);
+			float[] out = new float[2];
+			for (int y = 0; y < height; y++) {
+				int row = y * width;
+				for (int x = 0; x < width; x++) {
+					int i = row + x;
+					if (x < outWidth && y < outHeight) {
+						transformInverse(transformedSpace.x + x, transformedSpace.y + y, out);
+						outPixels[i] = composite(transformedPixel(inPixels, width, height, out), inPixels[i], opaque);
+					} else {
+						outPixels[i] = inPixels[i];
+					}
+				}
+			}
+			if (pixels == null) {
+				image.setRGB(0, 0, width, height, outPixels, 0, width);
+			}
+			return;
+		}
+
+		/**
+		 * Returns the pixel of {@code inPixels} at source position {@code out},
+		 * interpolated according to {@link #interpolation}.
+		 *
+		 * @param inPixels source pixels
+		 * @param width    source width
+		 * @param height   source height
+		 * @param out      position in source image
+		 * @return ARGB pixel
+		 */
+		int transformedPixel(int[] inPixels, int width, int height, float[] out) {
+			if (interpolation == NEAREST_NEIGHBOUR) {
+				int srcX = (int) out[0];
+				int srcY = (int) out[1];
+				// int casting rounds towards zero, so we check out[0] < 0, not srcX < 0
+				if (out[0] < 0 || srcX >= width || out[1] < 0 || srcY >= height) {
+					return getPixel(inPixels, srcX, srcY, width, height);
+				}
+				return inPixels[width * srcY + srcX];
+			}
+			int srcX = (int) Math.floor(out[0]);
+			int srcY = (int) Math.floor(out[1]);
+			float xWeight = out[0] - srcX;
+			float yWeight = out[1] - srcY;
+			int nw, ne, sw, se;
+			if (srcX >= 0 && srcX < width - 1 && srcY >= 0 && srcY < height - 1) {
+				// Easy case, all corners are in the image
+				int i = width * srcY + srcX;
+				nw = inPixels[i];
+				ne = inPixels[i + 1];
+				sw = inPixels[i + width];
+				se = inPixels[i + width + 1];
+			} else {
+				// Some of the corners are off the image
+				nw = getPixel(inPixels, srcX, srcY, width, height);
+				ne = getPixel(inPixels, srcX + 1, srcY, width, height);
+				sw = getPixel(inPixels, srcX, srcY + 1, width, height);
+				se = getPixel(inPixels, srcX + 1, srcY + 1, width, height);
+			}
+			return ImageMath.bilinearInterpolate(xWeight, yWeight, nw, ne, sw, se);
+		}
+
+		/**
+		 * Returns transformed pixel {@code pixel} composited over original pixel
+		 * {@code dst}, or just {@code pixel} (without alpha) if the image is
+		 * {@code opaque}.
+		 *
+		 * @param pixel  transformed pixel
+		 * @param dst    original pixel
+		 * @param opaque whether the image lacks alpha
+		 * @return output pixel
+		 */
+		static int composite(int pixel, int dst, boolean opaque) {
+			return opaque ? pixel & 0x00ffffff : Rasters.srcOver(pixel, dst);
+		}
+
 		@Override
 		public BufferedImage filter(BufferedImage src, BufferedImage dst) {
 			int width = src.getWidth();
@@ -3,10 +3,27 @@ package net.logicsquad.nanocaptcha.image.filter;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
 import java.util.Random;
 
+import net.logicsquad.nanocaptcha.image.Rasters;
+
 /**
+ * <p>
  * Applies a shear effect to the image.
+ * </p>
+ *
+ * <p>
+ * For a {@link BufferedImage#TYPE_INT_ARGB} or
+ * {@link BufferedImage#TYPE_INT_RGB} image, and an opaque {@link Color}, rows
+ * and columns are shifted directly in the image's pixel array, and the gaps
+ * left behind filled in. Otherwise, each row and column is shifted with
+ * {@link Graphics2D#copyArea(int, int, int, int, int, int)}, and the gaps
+ * drawn in. Both give the same result: like {@code copyArea}, the raster
+ * version composites shifted pixels over those they replace if the image has
+ * alpha, and copies them with {@link System#arraycopy(Object, int, Object, int, int)}
+ * otherwise.
+ * </p>
  *
  * @author <a href="mailto:james.childers@gmail.com">James Childers</a>
  * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
@@ -53,41 +70,201 @@ public class ShearImageFilter implements ImageFilter {
 
 	@Override
 	public void filter(BufferedImage bi) {
+		filter(bi, RAND);
+		return;
+	}
+
+	/**
+	 * Shears {@code bi}, choosing periods and phase with {@code random}.
+	 *
+	 * @param bi     image to shear
+	 * @param random random number generator
+	 */
+	void filter(BufferedImage bi, Random random) {
+		int[] pixels = Rasters.intPixels(bi);
+		if (pixels == null || color.getAlpha() != 0xff) {
+			filterWithGraphics(bi, random);
+			return;
+		}
+		int fill = color.getRGB();
+		boolean blend = bi.getColorModel().hasAlpha();
+		shearX(pixels, bi.getWidth(), bi.getHeight(), random.nextInt(10) + 5, random.nextInt(5) + 2, fill, blend);
+		shearY(pixels, bi.getWidth(), bi.getHeight(), random.nextInt(30) + 10, fill, blend);
+		return;
+	}
+
+	/**
+	 * Shears {@code bi} with {@link Graphics2D} operations, choosing periods and
+	 * phase with {@code random}.
+	 *
+	 * @param bi     image to shear
+	 * @param random random number generator
+	 */
+	void filterWithGraphics(BufferedImage bi, Random random) {
 		Graphics2D g = bi.createGraphics();
-		shearX(g, bi.getWidth(), bi.getHeight());
-		shearY(g, bi.getWidth(), bi.getHeight());
+		shearX(g, bi.getWidth(), bi.getHeight(), random);
+		shearY(g, bi.getWidth(), bi.getHeight(), random);
 		g.dispose();
 	}
 
-	private void shearX(Graphics2D g, int w1, int h1) {
-		int period = RAND.nextInt(10) + 5;
+	private void shearX(Graphics2D g, int w1, int h1, Random random) {
+		int period = random.nextInt(10) + 5;
 		boolean borderGap = true;
-		int frames = 15;
-		int phase = RAND.nextInt(5) + 2;
+		int phase = random.nextInt(5) + 2;
 		for (int i = 0; i < h1; i++) {
-			double d = (period >> 1) * Math.sin((double) i / (double) period + (TWO_PI * phase) / frames);
-			g.copyArea(0, i, w1, 1, (int) d, 0);
+			int d = xShift(i, period, phase);
+			g.copyArea(0, i, w1, 1, d, 0);
 			if (borderGap) {
 				g.setColor(color);
-				g.drawLine((int) d, i, 0, i);
-				g.drawLine((int) d + w1, i, w1, i);
+				g.drawLine(d, i, 0, i);
+				g.drawLine(d + w1, i, w1, i);
 			}
 		}
 	}
 
-	private void shearY(Graphics2D g, int w1, int h1) {
-		int period = RAND.nextInt(30) + 10;
+	private void shearY(Graphics2D g, int w1, int h1, Random random) {
+		int period = random.nextInt(30) + 10;
 		boolean borderGap = true;
-		int frames = 15;
-		int phase = 7;
 		for (int i = 0; i < w1; i++) {
-			double d = (period >> 1) * Math.sin((float) i / period + (TWO_PI * phase) / frames);
-			g.copyArea(i, 0, 1, h1, 0, (int) d);
+			int d = yShift(i, period);
+			g.copyArea(i, 0, 1, h1, 0, d);
 			if (borderGap) {
 				g.setColor(color);
-				g.drawLine(i, (int) d, i, 0);
-				g.drawLine(i, (int) d + h1, i, h1);
+				g.drawLine(i, d, i, 0);
+				g.drawLine(i, d + h1, i, h1);
+			}
+		}
+	}
+
+	/**
+	 * Shifts each row of {@code pixels} horizontally, filling the gaps with
+	 * {@code fill}. As {@link #shearX(Graphics2D, int, int, Random)} draws its
+	 * border lines from column {@code 0}, that column is always filled.
+	 *
+	 * @param pixels image pixels, row by row
+	 * @param width  image width
+	 * @param height image height
+	 * @param period period
+	 * @param phase  phase
+	 * @param fill   pixel value for gaps
+	 * @param blend  whether to composite shifted pixels
+	 */
+	private static void shearX(int[] pixels, int width, int height, int period, int phase, int fill,
+			boolean blend) {
+		for (int i = 0; i < height; i++) {
+			int d = xShift(i, period, phase);
+			int row = i * width;
+			if (d > 0) {
+				if (d < width) {
+					shift(pixels, row, row + d, width - d, blend);
+				}
+				Arrays.fill(pixels, row, row + Math.min(d + 1, width), fill);
+			} else {
+				if (-d < width) {
+					shift(pixels, row - d, row, width + d, blend);
+				}
+				Arrays.fill(pixels, row + Math.max(0, width + d), row + width, fill);
+				pixels[row] = fill;
 			}
 		}
+		return;
+	}
+
+	/**
+	 * Shifts each column of {@code pixels} vertically, filling the gaps with
+	 * {@code fill}. Adjacent columns shifted by the same amount are moved
+	 * together, a row segment at a time. As
+	 * {@link #shearY(Graphics2D, int, int, Random)} draws its border lines from
+	 * row {@code 0}, that row is always filled.
+	 *
+	 * @param pixels image pixels, row by row
+	 * @param width  image width
+	 * @param height image height
+	 * @param period period
+	 * @param fill   pixel value for gaps
+	 * @param blend  whether to composite shifted pixels
+	 */
+	private static void shearY(int[] pixels, int width, int height, int period, int fill, boolean blend) {
+		int start = 0;
+		while (start < width) {
+			int d = yShift(start, period);
+			int end = start + 1;
+			while (end < width && yShift(end, period) == d) {
+				end++;
+			}
+			int length = end - start;
+			if (d > 0) {
+				for (int y = height - 1; y >= d; y--) {
+					shift(pixels, (y - d) * width + start, y * width + start, length, blend);
+				}
+				for (int y = 0; y <= d && y < height; y++) {
+					Arrays.fill(pixels, y * width + start, y * width + end, fill);
+				}
+			} else {
+				for (int y = 0; y < height + d; y++) {
+					shift(pixels, (y - d) * width + start, y * width + start, length, blend);
+				}
+				for (int y = Math.max(0, height + d); y < height; y++) {
+					Arrays.fill(pixels, y * width + start, y * width + end, fill);
+				}
+				Arrays.fill(pixels, start, end, fill);
+			}
+			start = end;
+		}
+		return;
+	}
+
+	/**
+	 * Moves {@code length} pixels of {@code pixels} from index {@code from} to
+	 * index {@code to} (where the ranges may overlap). As
+	 * {@link Graphics2D#copyArea(int, int, int, int, int, int)} does, if
+	 * {@code blend} is {@code true}, each pixel is composited over the one it
+	 * replaces.
+	 *
+	 * @param pixels image pixels
+	 * @param from   first index to move from
+	 * @param to     first index to move to
+	 * @param length number of pixels
+	 * @param blend  whether to composite moved pixels
+	 */
+	private static void shift(int[] pixels, int from, int to, int length, boolean blend) {
+		if (!blend) {
+			System.arraycopy(pixels, from, pixels, to, length);
+		} else if (from < to) {
+			for (int i = length - 1; i >= 0; i--) {
+				pixels[to + i] = Rasters.srcOver(pixels[from + i], pixels[to + i]);
+			}
+		} else {
+			for (int i = 0; i < length; i++) {
+				pixels[to + i] = Rasters.srcOver(pixels[from + i], pixels[to + i]);
+			}
+		}
+		return;
+	}
+
+	/**
+	 * Returns the horizontal shift of row {@code i}.
+	 *
+	 * @param i      row
+	 * @param period period
+	 * @param phase  phase
+	 * @return shift in pixels
+	 */
+	private static int xShift(int i, int period, int phase) {
+		int frames = 15;
+		return (int) ((period >> 1) * Math.sin((double) i / (double) period + (TWO_PI * phase) / frames));
+	}
+
+	/**
+	 * Returns the vertical shift of column {@code i}.
+	 *
+	 * @param i      column
+	 * @param period period
+	 * @return shift in pixels
+	 */
+	private static int yShift(int i, int period) {
+		int frames = 15;
+		int phase = 7;
+		return (int) ((period >> 1) * Math.sin((float) i / period + (TWO_PI * phase) / frames));
 	}
 }
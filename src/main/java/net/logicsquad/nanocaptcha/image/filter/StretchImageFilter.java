@@ -1,19 +1,52 @@
 package net.logicsquad.nanocaptcha.image.filter;
 
-import java.awt.Graphics2D;
-import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.util.Objects;
+
+import net.logicsquad.nanocaptcha.image.Rasters;
 
 /**
+ * <p>
  * Stretches the given image over the x- and y-axes. If no scale is given,
  * defaults to an x-axis scale of 1.0 and a y-axis scale of 3.0 (i.e. make the
  * image tall but do not affect the width).
+ * </p>
+ *
+ * <p>
+ * The stretched image is drawn over the original (composited, if the image
+ * has alpha), but only the part of it that falls within the image is
+ * computed. Each destination pixel is sampled from a copy of the original,
+ * held in a buffer each thread reuses, at coordinates precomputed for the
+ * image size. Sampling takes the nearest source pixel, or (with
+ * {@link Interpolation#BILINEAR}) interpolates between the nearest four.
+ * </p>
  *
  * @author <a href="mailto:james.childers@gmail.com">James Childers</a>
  * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
  * @since 1.0
  */
 public class StretchImageFilter implements ImageFilter {
+	/**
+	 * How source pixels are sampled.
+	 *
+	 * @since 2.2
+	 */
+	public enum Interpolation {
+		/**
+		 * Take the source pixel under each destination pixel's centre (or, where the
+		 * centre falls on the boundary between two source pixels, the right or lower
+		 * one). This is not guaranteed to match Java2D's nearest-neighbour scaling
+		 * pixel for pixel.
+		 */
+		NEAREST,
+
+		/**
+		 * Interpolate between the four source pixels nearest each destination
+		 * pixel's centre
+		 */
+		BILINEAR
+	}
+
 	/**
 	 * Default x-axis multiplier
 	 */
@@ -24,6 +57,11 @@ public class StretchImageFilter implements ImageFilter {
 	 */
 	private static final double YDEFAULT = 3.0;
 
+	/**
+	 * Copy of source pixels, reused by each thread
+	 */
+	private static final ThreadLocal<int[]> SOURCE = ThreadLocal.withInitial(() -> new int[0]);
+
 	/**
 	 * x-axis multiplier
 	 */
@@ -34,6 +72,16 @@ public class StretchImageFilter implements ImageFilter {
 	 */
 	private final double yScale;
 
+	/**
+	 * Sampling mode
+	 */
+	private final Interpolation interpolation;
+
+	/**
+	 * Coordinate map for the most recently filtered image size
+	 */
+	private volatile CoordinateMap map;
+
 	/**
 	 * Constructor using default scale multipliers.
 	 */
@@ -48,16 +96,254 @@ public class StretchImageFilter implements ImageFilter {
 	 * @param yScale y-axis scale
 	 */
 	public StretchImageFilter(double xScale, double yScale) {
+		this(xScale, yScale, Interpolation.NEAREST);
+		return;
+	}
+
+	/**
+	 * Constructor taking x- and y-axis scale multipliers and a sampling mode.
+	 *
+	 * @param xScale        x-axis scale
+	 * @param yScale        y-axis scale
+	 * @param interpolation sampling mode
+	 * @throws NullPointerException if {@code interpolation} is {@code null}
+	 * @since 2.2
+	 */
+	public StretchImageFilter(double xScale, double yScale, Interpolation interpolation) {
 		this.xScale = xScale;
 		this.yScale = yScale;
+		this.interpolation = Objects.requireNonNull(interpolation);
 		return;
 	}
 
 	@Override
 	public void filter(BufferedImage image) {
-		Graphics2D g = image.createGraphics();
-		AffineTransform at = new AffineTransform();
-		at.scale(xScale, yScale);
-		g.drawRenderedImage(image, at);
+		int width = image.getWidth();
+		int height = image.getHeight();
+		CoordinateMap map = coordinateMap(width, height);
+		if (map.columns.visible == 0 || map.rows.visible == 0) {
+			return;
+		}
+		boolean blend = image.getColorModel().hasAlpha();
+		int[] source = source(width * height);
+		int[] pixels = Rasters.intPixels(image);
+		if (pixels != null) {
+			System.arraycopy(pixels, 0, source, 0, pixels.length);
+			map.apply(source, pixels, blend);
+		} else {
+			image.getRGB(0, 0, width, height, source, 0, width);
+			int[] destination = image.getRGB(0, 0, width, height, null, 0, width);
+			map.apply(source, destination, blend);
+			image.setRGB(0, 0, map.columns.visible, map.rows.visible, destination, 0, width);
+		}
+		return;
+	}
+
+	/**
+	 * Returns the {@link CoordinateMap} for an image of {@code width} by
+	 * {@code height} pixels, computing it if the last image filtered was a
+	 * different size.
+	 *
+	 * @param width  image width
+	 * @param height image height
+	 * @return coordinate map
+	 */
+	private CoordinateMap coordinateMap(int width, int height) {
+		CoordinateMap map = this.map;
+		if (map == null || map.width != width || map.height != height) {
+			map = new CoordinateMap(width, height, new Axis(width, xScale, interpolation),
+					new Axis(height, yScale, interpolation), interpolation);
+			this.map = map;
+		}
+		return map;
+	}
+
+	/**
+	 * Returns this thread's source buffer, with room for at least {@code length}
+	 * pixels.
+	 *
+	 * @param length number of pixels
+	 * @return source buffer
+	 */
+	private static int[] source(int length) {
+		int[] source = SOURCE.get();
+		if (source.length < length) {
+			source = new int[length];
+			SOURCE.set(source);
+		}
+		return source;
+	}
+
+	/**
+	 * Returns pixel {@code nw}, {@code ne}, {@code sw} and {@code se} interpolated
+	 * channel by channel, with weights in 256ths.
+	 *
+	 * @param nw      top-left pixel
+	 * @param ne      top-right pixel
+	 * @param sw      bottom-left pixel
+	 * @param se      bottom-right pixel
+	 * @param xWeight weight of right-hand pixels
+	 * @param yWeight weight of bottom pixels
+	 * @return interpolated pixel
+	 */
+	private static int bilinear(int nw, int ne, int sw, int se, int xWeight, int yWeight) {
+		int result = 0;
+		for (int shift = 0; shift < 32; shift += 8) {
+			int nwc = (nw >>> shift) & 0xff;
+			int swc = (sw >>> shift) & 0xff;
+			int top = (nwc << 8) + (((ne >>> shift) & 0xff) - nwc) * xWeight;
+			int bottom = (swc << 8) + (((se >>> shift) & 0xff) - swc) * xWeight;
+			result |= (((top << 8) + (bottom - top) * yWeight + (1 << 15)) >> 16) << shift;
+		}
+		return result;
+	}
+
+	/**
+	 * Source coordinates along one axis: for each destination position within
+	 * the stretched image, the source position to sample, the step to the next
+	 * source position ({@code 0} at the edge) and the weight of that next
+	 * position, in 256ths.
+	 */
+	private static final class Axis {
+		/**
+		 * Number of destination positions covered by the stretched image
+		 */
+		private final int visible;
+
+		/**
+		 * Source position for each destination position
+		 */
+		private final int[] index;
+
+		/**
+		 * Step to next source position for each destination position
+		 */
+		private final int[] step;
+
+		/**
+		 * Weight of next source position for each destination position
+		 */
+		private final int[] weight;
+
+		/**
+		 * Constructor
+		 *
+		 * @param length        image length along this axis
+		 * @param scale         scale along this axis
+		 * @param interpolation sampling mode
+		 */
+		private Axis(int length, double scale, Interpolation interpolation) {
+			int visible = 0;
+			while (visible < length) {
+				double centre = (visible + 0.5) / scale;
+				if (!(centre >= 0 && centre < length)) {
+					break;
+				}
+				visible++;
+			}
+			this.visible = visible;
+			this.index = new int[visible];
+			this.step = new int[visible];
+			this.weight = new int[visible];
+			for (int i = 0; i < visible; i++) {
+				double centre = (i + 0.5) / scale;
+				if (interpolation == Interpolation.NEAREST) {
+					index[i] = (int) centre;
+				} else {
+					double position = Math.max(0, centre - 0.5);
+					int floor = (int) position;
+					if (floor < length - 1) {
+						index[i] = floor;
+						step[i] = 1;
+						weight[i] = (int) Math.round((position - floor) * 256);
+					} else {
+						index[i] = length - 1;
+					}
+				}
+			}
+			return;
+		}
+	}
+
+	/**
+	 * Source coordinates for every destination pixel within the stretched image,
+	 * for one image size.
+	 */
+	private static final class CoordinateMap {
+		/**
+		 * Image width
+		 */
+		private final int width;
+
+		/**
+		 * Image height
+		 */
+		private final int height;
+
+		/**
+		 * Source columns
+		 */
+		private final Axis columns;
+
+		/**
+		 * Source rows
+		 */
+		private final Axis rows;
+
+		/**
+		 * Sampling mode
+		 */
+		private final Interpolation interpolation;
+
+		/**
+		 * Constructor
+		 *
+		 * @param width         image width
+		 * @param height        image height
+		 * @param columns       source columns
+		 * @param rows          source rows
+		 * @param interpolation sampling mode
+		 */
+		private CoordinateMap(int width, int height, Axis columns, Axis rows, Interpolation interpolation) {
+			this.width = width;
+			this.height = height;
+			this.columns = columns;
+			this.rows = rows;
+			this.interpolation = interpolation;
+			return;
+		}
+
+		/**
+		 * Samples {@code source} into the part of {@code destination} covered by the
+		 * stretched image, compositing each sampled pixel over the one it replaces
+		 * if {@code blend} is {@code true}. Both arrays hold pixels row by row.
+		 *
+		 * @param source      source pixels
+		 * @param destination destination pixels
+		 * @param blend       whether to composite sampled pixels
+		 */
+		private void apply(int[] source, int[] destination, boolean blend) {
+			for (int y = 0; y < rows.visible; y++) {
+				int row = y * width;
+				int top = rows.index[y] * width;
+				if (interpolation == Interpolation.NEAREST) {
+					for (int x = 0; x < columns.visible; x++) {
+						int pixel = source[top + columns.index[x]];
+						destination[row + x] = blend ? Rasters.srcOver(pixel, destination[row + x]) : pixel;
+					}
+				} else {
+					int bottom = top + rows.step[y] * width;
+					int yWeight = rows.weight[y];
+					for (int x = 0; x < columns.visible; x++) {
+						int left = columns.index[x];
+						int right = left + columns.step[x];
+						int pixel = bilinear(source[top + left], source[top + right], source[bottom + left],
+								source[bottom + right], columns.weight[x], yWeight);
+						destination[row + x] = blend ? Rasters.srcOver(pixel, destination[row + x]) : pixel;
+					}
+				}
+			}
+			return;
+		}
 	}
 }
@@ -1,24 +1,33 @@
 package net.logicsquad.nanocaptcha.image.noise;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.awt.image.WritableRaster;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import net.logicsquad.nanocaptcha.image.Rasters;
 
 /**
  * Adds Gaussian noise to the image. Gaussian noise is statistical noise having a
  * probability density function equal to that of the normal distribution, which is
  * also known as the Gaussian distribution.
  *
+ * <p>
+ * Noise is drawn from a table of {@value #TABLE_SIZE} normally distributed deltas,
+ * computed once for each standard deviation and mean, and indexed by bits from
+ * {@link ThreadLocalRandom}. For a {@link BufferedImage#TYPE_INT_ARGB} or
+ * {@link BufferedImage#TYPE_INT_RGB} image, channels are unpacked from, and packed
+ * back into, the image's {@link DataBufferInt} directly.
+ * </p>
+ *
  * @author <a href="mailto:botyrbojey@gmail.com">bivashy</a>
  * @see <a href="https://en.wikipedia.org/wiki/Gaussian_noise">Gaussian noise on Wikipedia</a>
  * @since 2.0
  */
 public class GaussianNoiseProducer implements NoiseProducer {
-    /**
-     * Random number generator.
-     */
-    private static final Random RAND = new Random();
-
     /**
      * Default standard deviation.
      */
@@ -29,6 +38,31 @@ public class GaussianNoiseProducer implements NoiseProducer {
      */
     private static final int DEFAULT_MEAN = 0;
 
+    /**
+     * Number of bits in a table index.
+     */
+    private static final int INDEX_BITS = 12;
+
+    /**
+     * Number of deltas in a table.
+     */
+    private static final int TABLE_SIZE = 1 << INDEX_BITS;
+
+    /**
+     * Mask for a table index.
+     */
+    private static final int INDEX_MASK = TABLE_SIZE - 1;
+
+    /**
+     * Maximum number of delta tables cached.
+     */
+    private static final int MAX_TABLES = 64;
+
+    /**
+     * Delta tables, keyed by standard deviation (high 32 bits) and mean (low 32 bits).
+     */
+    private static final Map<Long, short[]> TABLES = new ConcurrentHashMap<>();
+
     /**
      * Standard deviation for the Gaussian noise.
      */
@@ -39,6 +73,11 @@ public class GaussianNoiseProducer implements NoiseProducer {
      */
     private final int mean;
 
+    /**
+     * Deltas to add to channel values.
+     */
+    private final short[] deltas;
+
     /**
      * Constructor using default standard deviation and mean.
      */
@@ -56,9 +95,32 @@ public class GaussianNoiseProducer implements NoiseProducer {
     public GaussianNoiseProducer(int standardDeviation, int mean) {
         this.standardDeviation = standardDeviation;
         this.mean = mean;
+        this.deltas = table(standardDeviation, mean);
         return;
     }
 
+    /**
+     * Returns the delta table for {@code standardDeviation} and {@code mean}, computing and caching it if
+     * necessary. Each producer holds its own reference, so clearing the cache only stops later producers
+     * from sharing a table.
+     *
+     * @param standardDeviation standard deviation
+     * @param mean mean
+     * @return delta table
+     */
+    private static short[] table(int standardDeviation, int mean) {
+        Long key = ((long) standardDeviation << 32) | (mean & 0xffffffffL);
+        short[] table = TABLES.get(key);
+        if (table == null) {
+            table = deltaTable(standardDeviation, mean);
+            if (TABLES.size() >= MAX_TABLES) {
+                TABLES.clear();
+            }
+            TABLES.put(key, table);
+        }
+        return table;
+    }
+
     /**
      * Applies Gaussian noise to a BufferedImage.
      *
@@ -66,29 +128,84 @@ public class GaussianNoiseProducer implements NoiseProducer {
      */
     @Override
     public void makeNoise(BufferedImage image) {
-        WritableRaster raster = image.getRaster();
-        for (int y = 0; y < raster.getHeight(); y++) {
-            for (int x = 0; x < raster.getWidth(); x++) {
-                int[] pixelSamples = raster.getPixel(x, y, (int[]) null);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int[] pixels = Rasters.intPixels(image);
+        if (pixels != null) {
+            noisePixels(pixels, image.getColorModel().hasAlpha(), random);
+        } else {
+            WritableRaster raster = image.getRaster();
+            int[] samples = raster.getPixels(0, 0, raster.getWidth(), raster.getHeight(), (int[]) null);
+            noiseSamples(samples, random);
+            raster.setPixels(0, 0, raster.getWidth(), raster.getHeight(), samples);
+        }
+        return;
+    }
+
+    /**
+     * Adds noise to each channel of packed pixels {@code pixels}, including alpha if {@code alpha} is
+     * {@code true}. One {@code long} from {@code random} supplies the table indexes for a pixel.
+     *
+     * @param pixels packed pixels
+     * @param alpha whether to add noise to alpha
+     * @param random random number generator
+     */
+    private void noisePixels(int[] pixels, boolean alpha, ThreadLocalRandom random) {
+        short[] deltas = this.deltas;
+        for (int i = 0; i < pixels.length; i++) {
+            int pixel = pixels[i];
+            long bits = random.nextLong();
+            int r = clamp(((pixel >> 16) & 0xff) + deltas[(int) bits & INDEX_MASK]);
+            int g = clamp(((pixel >> 8) & 0xff) + deltas[(int) (bits >>> INDEX_BITS) & INDEX_MASK]);
+            int b = clamp((pixel & 0xff) + deltas[(int) (bits >>> (2 * INDEX_BITS)) & INDEX_MASK]);
+            int a = alpha ? clamp((pixel >>> 24) + deltas[(int) (bits >>> (3 * INDEX_BITS)) & INDEX_MASK]) : pixel >>> 24;
+            pixels[i] = (a << 24) | (r << 16) | (g << 8) | b;
+        }
+        return;
+    }
 
-                for (int i = 0; i < pixelSamples.length; i++) {
-                    pixelSamples[i] = clamp((int) (pixelSamples[i] + RAND.nextGaussian() * standardDeviation + mean), 0, 255);
-                }
+    /**
+     * Adds noise to each of {@code samples}.
+     *
+     * @param samples raster samples
+     * @param random random number generator
+     */
+    private void noiseSamples(int[] samples, ThreadLocalRandom random) {
+        short[] deltas = this.deltas;
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = clamp(samples[i] + deltas[random.nextInt() & INDEX_MASK]);
+        }
+        return;
+    }
 
-                raster.setPixel(x, y, pixelSamples);
-            }
+    /**
+     * Returns a table of {@value #TABLE_SIZE} deltas drawn from a normal distribution with the given
+     * standard deviation and mean. As with adding {@code nextGaussian() * standardDeviation + mean} to a
+     * channel value and truncating, each delta is rounded down; since channel values are clamped to
+     * {@code 0}&ndash;{@code 255}, each delta is also limited to &plusmn;255.
+     *
+     * @param standardDeviation the standard deviation of the Gaussian noise
+     * @param mean the mean of the Gaussian noise
+     * @return delta table
+     */
+    private static short[] deltaTable(int standardDeviation, int mean) {
+        Random random = new Random();
+        short[] table = new short[TABLE_SIZE];
+        for (int i = 0; i < table.length; i++) {
+            double delta = Math.floor(random.nextGaussian() * standardDeviation + mean);
+            table[i] = (short) Math.max(-255, Math.min(255, delta));
         }
+        return table;
     }
 
     /**
-     * Clamp a value to an interval.
+     * Clamps {@code x}, between {@code -255} and {@code 510}, to {@code 0}&ndash;{@code 255}
+     * without branching.
      *
-     * @param a the lower clamp threshold
-     * @param b the upper clamp threshold
      * @param x the input parameter
      * @return the clamped value
      */
-    private static int clamp(int x, int a, int b) {
-        return (x < a) ? a : (x > b) ? b : x;
+    private static int clamp(int x) {
+        x &= ~(x >> 31);
+        return (x | ((255 - x) >> 31)) & 0xff;
     }
 }
@@ -2,22 +2,27 @@ package net.logicsquad.nanocaptcha.image.noise;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
-import java.util.Random;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.ThreadLocalRandom;
+
+import net.logicsquad.nanocaptcha.image.Rasters;
 
 /**
  * Applies salt and pepper noise to an image. This noise type randomly changes some of the pixels to black or white, creating a 'salt and
  * pepper' effect.
  *
+ * <p>
+ * Rather than drawing a random number for every pixel, the gap to the next noisy pixel is drawn from a
+ * geometric distribution, so the random numbers drawn scale with the number of noisy pixels. Pixels are
+ * visited row by row; for a {@link BufferedImage#TYPE_INT_ARGB} or {@link BufferedImage#TYPE_INT_RGB}
+ * image, noisy pixels are written to its {@link DataBufferInt} directly.
+ * </p>
+ *
  * @author <a href="mailto:botyrbojey@gmail.com">bivashy</a>
  * @see <a href="https://en.wikipedia.org/wiki/Salt-and-pepper_noise">Salt and pepper on Wikipedia</a>
  * @since 2.0
  */
 public class SaltAndPepperNoiseProducer implements NoiseProducer {
-    /**
-     * Random number generator.
-     */
-    private static final Random RAND = new Random();
-
     /**
      * Default noise density.
      */
@@ -38,6 +43,11 @@ public class SaltAndPepperNoiseProducer implements NoiseProducer {
      */
     private final double noiseDensity;
 
+    /**
+     * Natural logarithm of {@code 1 - noiseDensity}.
+     */
+    private final double log1MinusDensity;
+
     /**
      * Constructor using default standard deviation and mean.
      */
@@ -57,6 +67,7 @@ public class SaltAndPepperNoiseProducer implements NoiseProducer {
             throw new IllegalArgumentException("Noise density must be between 0 and 1.");
         }
         this.noiseDensity = noiseDensity;
+        this.log1MinusDensity = Math.log1p(-noiseDensity);
         return;
     }
 
@@ -67,16 +78,39 @@ public class SaltAndPepperNoiseProducer implements NoiseProducer {
      */
     @Override
     public void makeNoise(BufferedImage image) {
+        if (noiseDensity == 0) {
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
         int width = image.getWidth();
-        int height = image.getHeight();
-
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                if (RAND.nextDouble() < noiseDensity) {
-                    int color = RAND.nextBoolean() ? PEPPER : SALT;
-                    image.setRGB(x, y, color);
-                }
+        long area = (long) width * image.getHeight();
+        int[] pixels = Rasters.intPixels(image);
+        int pepper = pixels == null ? PEPPER : ((int[]) image.getColorModel().getDataElements(PEPPER, null))[0];
+        int salt = pixels == null ? SALT : ((int[]) image.getColorModel().getDataElements(SALT, null))[0];
+        for (long i = gap(random); i < area; i += 1 + gap(random)) {
+            int color = random.nextBoolean() ? pepper : salt;
+            if (pixels != null) {
+                pixels[(int) i] = color;
+            } else {
+                image.setRGB((int) (i % width), (int) (i / width), color);
             }
         }
+        return;
+    }
+
+    /**
+     * Returns the number of pixels to leave alone before the next noisy one. Each pixel is noisy with
+     * probability {@link #noiseDensity}, so the gap follows a geometric distribution, sampled here by
+     * inversion.
+     *
+     * @param random random number generator
+     * @return number of pixels to skip
+     */
+    private long gap(ThreadLocalRandom random) {
+        if (noiseDensity == 1) {
+            return 0;
+        }
+        double skip = Math.log(1.0 - random.nextDouble()) / log1MinusDensity;
+        return skip < Long.MAX_VALUE / 2 ? (long) skip : Long.MAX_VALUE / 2;
     }
 }
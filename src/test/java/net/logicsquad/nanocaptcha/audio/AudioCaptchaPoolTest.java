@@ -0,0 +1,138 @@
+package net.logicsquad.nanocaptcha.audio;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests on {@link AudioCaptchaPool} class.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public class AudioCaptchaPoolTest {
+	/**
+	 * Runs refill workers in the calling thread
+	 */
+	private static final Executor SYNCHRONOUS = Runnable::run;
+
+	/**
+	 * Never runs refill workers
+	 */
+	private static final Executor DISCARDING = runnable -> {};
+
+	/**
+	 * Source of small CAPTCHAs
+	 */
+	private static final Supplier<AudioCaptcha> SUPPLIER = () -> new AudioCaptcha.Builder().addContent(2).addVoice().build();
+
+	@Test
+	public void builderThrowsOnInvalidArguments() {
+		assertThrows(IllegalArgumentException.class, () -> new AudioCaptchaPool.Builder().capacity(0));
+		assertThrows(IllegalArgumentException.class, () -> new AudioCaptchaPool.Builder().lowWatermark(-1));
+		assertThrows(IllegalArgumentException.class, () -> new AudioCaptchaPool.Builder().workers(0));
+		assertThrows(IllegalArgumentException.class,
+				() -> new AudioCaptchaPool.Builder().capacity(4).lowWatermark(4).executor(DISCARDING).build());
+		return;
+	}
+
+	@Test
+	public void buildFillsPoolToCapacity() {
+		try (AudioCaptchaPool pool = new AudioCaptchaPool.Builder().supplier(SUPPLIER).capacity(5).executor(SYNCHRONOUS).build()) {
+			assertEquals(5, pool.getDepth());
+			assertEquals(5, pool.getRefillCount());
+			assertEquals(1, pool.getLowWatermark());
+		}
+		return;
+	}
+
+	@Test
+	public void takeRefillsAtLowWatermark() {
+		try (AudioCaptchaPool pool = new AudioCaptchaPool.Builder().supplier(SUPPLIER).capacity(4).lowWatermark(1)
+				.executor(SYNCHRONOUS).build()) {
+			pool.take();
+			pool.take();
+			assertEquals(2, pool.getDepth());
+			assertEquals(4, pool.getRefillCount());
+			// Leaves pool at low watermark, so refills to capacity
+			pool.take();
+			assertEquals(4, pool.getDepth());
+			assertEquals(7, pool.getRefillCount());
+			assertEquals(3, pool.getHitCount());
+			assertEquals(0, pool.getMissCount());
+		}
+		return;
+	}
+
+	@Test
+	public void takeGeneratesSynchronouslyWhenEmpty() {
+		try (AudioCaptchaPool pool = new AudioCaptchaPool.Builder().supplier(SUPPLIER).executor(DISCARDING).build()) {
+			assertEquals(0, pool.getDepth());
+			AudioCaptcha captcha = pool.take();
+			assertEquals(2, captcha.getContent().length());
+			assertEquals(0, pool.getHitCount());
+			assertEquals(1, pool.getMissCount());
+		}
+		return;
+	}
+
+	@Test
+	public void pooledCaptchaIsPreEncoded() throws IOException {
+		try (AudioCaptchaPool pool = new AudioCaptchaPool.Builder().supplier(SUPPLIER).encoding(WavEncoding.IMA_ADPCM)
+				.capacity(2).executor(SYNCHRONOUS).build()) {
+			AudioCaptcha captcha = pool.take();
+			byte[] wav = captcha.toWavByteArray(WavEncoding.IMA_ADPCM);
+			assertEquals(captcha.getWavLength(WavEncoding.IMA_ADPCM), wav.length);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			captcha.writeWav(out, WavEncoding.IMA_ADPCM);
+			assertArrayEquals(wav, out.toByteArray());
+			// Other encodings are still rendered on request
+			assertEquals(captcha.getWavLength(), captcha.toWavByteArray().length);
+		}
+		return;
+	}
+
+	@Test
+	public void refillStopsOnFailure() {
+		AtomicInteger calls = new AtomicInteger();
+		Supplier<AudioCaptcha> failing = () -> {
+			calls.incrementAndGet();
+			throw new IllegalStateException();
+		};
+		try (AudioCaptchaPool pool = new AudioCaptchaPool.Builder().supplier(failing).executor(SYNCHRONOUS).build()) {
+			assertEquals(1, pool.getRefillFailureCount());
+			assertThrows(IllegalStateException.class, () -> pool.take());
+			assertEquals(2, pool.getRefillFailureCount());
+			assertEquals(3, calls.get());
+		}
+		return;
+	}
+
+	@Test
+	public void backgroundRefillFillsPool() throws InterruptedException {
+		try (AudioCaptchaPool pool = new AudioCaptchaPool.Builder().supplier(SUPPLIER).capacity(3).workers(2).build()) {
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			while (pool.getDepth() < 3 && System.nanoTime() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals(3, pool.getDepth());
+			assertEquals(3, pool.getRefillCount());
+		}
+		return;
+	}
+
+	@Test
+	public void takeThrowsWhenClosed() {
+		AudioCaptchaPool pool = new AudioCaptchaPool.Builder().supplier(SUPPLIER).executor(DISCARDING).build();
+		pool.close();
+		assertThrows(IllegalStateException.class, () -> pool.take());
+		return;
+	}
+}
@@ -0,0 +1,303 @@
+package net.logicsquad.nanocaptcha.audio;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests on {@link AudioCaptcha} class.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public class AudioCaptchaTest {
+	private AudioCaptcha captcha;
+
+	@BeforeEach
+	public void setup() {
+		captcha = new AudioCaptcha.Builder().addContent().addNoise().build();
+		return;
+	}
+
+	@Test
+	public void wavByteArrayIsReadableWav() throws UnsupportedAudioFileException, IOException {
+		byte[] wav = captcha.toWavByteArray();
+		assertEquals(captcha.getWavLength(), wav.length);
+		AudioInputStream ais = AudioSystem.getAudioInputStream(new ByteArrayInputStream(wav));
+		assertTrue(ais.getFormat().matches(Sample.SC_AUDIO_FORMAT));
+		assertEquals(captcha.getAudio().getSampleCount(), ais.getFrameLength());
+		assertArrayEquals(captcha.getAudio().getSamples(), new Sample(ais).getSamples());
+		return;
+	}
+
+	@Test
+	public void writeWavToOutputStreamMatchesByteArray() throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		captcha.writeWav(baos);
+		assertArrayEquals(captcha.toWavByteArray(), baos.toByteArray());
+		return;
+	}
+
+	@Test
+	public void writeWavToChannelMatchesByteArray() throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		captcha.writeWav(Channels.newChannel(baos));
+		assertArrayEquals(captcha.toWavByteArray(), baos.toByteArray());
+		return;
+	}
+
+	@Test
+	public void writeWavToByteBufferMatchesByteArray() {
+		byte[] expected = captcha.toWavByteArray();
+		for (ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.allocate(expected.length + 10), ByteBuffer.allocateDirect(expected.length + 10) }) {
+			buffer.position(10);
+			captcha.writeWav(buffer);
+			assertEquals(expected.length + 10, buffer.position());
+			byte[] actual = new byte[expected.length];
+			buffer.position(10);
+			buffer.get(actual);
+			assertArrayEquals(expected, actual);
+		}
+		return;
+	}
+
+	@Test
+	public void writeWavToByteBufferThrowsIfTooSmall() {
+		ByteBuffer buffer = ByteBuffer.allocate(captcha.getWavLength() - 1);
+		assertThrows(BufferOverflowException.class, () -> captcha.writeWav(buffer));
+		assertEquals(0, buffer.position());
+		return;
+	}
+
+	@Test
+	public void g711EncodingsDecodeCloseToSource() throws UnsupportedAudioFileException, IOException {
+		short[] source = captcha.getAudio().getSamples();
+		for (WavEncoding encoding : new WavEncoding[] { WavEncoding.MU_LAW, WavEncoding.A_LAW }) {
+			byte[] wav = captcha.toWavByteArray(encoding);
+			assertEquals(captcha.getWavLength(encoding), wav.length);
+			AudioInputStream ais = AudioSystem.getAudioInputStream(new ByteArrayInputStream(wav));
+			AudioFormat.Encoding expected = encoding == WavEncoding.MU_LAW ? AudioFormat.Encoding.ULAW : AudioFormat.Encoding.ALAW;
+			assertEquals(expected, ais.getFormat().getEncoding());
+			assertEquals(source.length, ais.getFrameLength());
+			short[] decoded = new Sample(AudioSystem.getAudioInputStream(Sample.SC_AUDIO_FORMAT, ais)).getSamples();
+			for (int i = 0; i < source.length; i++) {
+				// Quantization error is bounded by half the step size of the segment
+				assertTrue(Math.abs(source[i] - decoded[i]) <= 64 + Math.abs(source[i]) / 16);
+			}
+		}
+		return;
+	}
+
+	@Test
+	public void imaAdpcmDecodesCloseToSource() {
+		byte[] wav = captcha.toWavByteArray(WavEncoding.IMA_ADPCM);
+		assertEquals(captcha.getWavLength(WavEncoding.IMA_ADPCM), wav.length);
+		assertTrue(wav.length < captcha.getWavLength() / 3);
+		ByteBuffer bytes = ByteBuffer.wrap(wav).order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals(0x11, bytes.getShort(20));
+		assertEquals(ImaAdpcmEncoder.BLOCK_ALIGN, bytes.getShort(32));
+		assertEquals(ImaAdpcmEncoder.SAMPLES_PER_BLOCK, bytes.getShort(38));
+		assertEquals(captcha.getAudio().getSampleCount(), bytes.getInt(48));
+		short[] source = captcha.getAudio().getSamples();
+		short[] decoded = decodeImaAdpcm(wav, 60, source.length);
+		double signal = 0;
+		double error = 0;
+		for (int i = 0; i < source.length; i++) {
+			signal += (double) source[i] * source[i];
+			error += (double) (source[i] - decoded[i]) * (source[i] - decoded[i]);
+		}
+		// Expect a signal-to-noise ratio of at least 20 dB
+		assertTrue(signal > 100 * error);
+		return;
+	}
+
+	@Test
+	public void oddLengthDataChunkIsPadded() throws IOException {
+		short[] pcm = new short[101];
+		Arrays.fill(pcm, (short) 1000);
+		AudioCaptcha odd = new AudioCaptcha.Builder().addContent().addVoice(c -> new Sample(pcm)).build();
+		int sampleCount = (int) odd.getAudio().getSampleCount();
+		assertEquals(1, sampleCount % 2);
+		for (WavEncoding encoding : new WavEncoding[] { WavEncoding.MU_LAW, WavEncoding.A_LAW }) {
+			byte[] wav = odd.toWavByteArray(encoding);
+			// 58-byte header, one byte per sample, one pad byte
+			assertEquals(58 + sampleCount + 1, wav.length);
+			assertEquals(odd.getWavLength(encoding), wav.length);
+			ByteBuffer bytes = ByteBuffer.wrap(wav).order(ByteOrder.LITTLE_ENDIAN);
+			assertEquals(wav.length - 8, bytes.getInt(4));
+			assertEquals(sampleCount, bytes.getInt(54));
+			assertEquals(0, wav[wav.length - 1]);
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			odd.writeWav(baos, encoding);
+			assertArrayEquals(wav, baos.toByteArray());
+		}
+		return;
+	}
+
+	@Test
+	public void encodedWavWritesMatchByteArray() throws IOException {
+		for (WavEncoding encoding : WavEncoding.values()) {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			captcha.writeWav(baos, encoding);
+			assertArrayEquals(captcha.toWavByteArray(encoding), baos.toByteArray());
+		}
+		return;
+	}
+
+	@Test
+	public void telephonyProfileWritesEightKilohertzWav() throws UnsupportedAudioFileException, IOException {
+		AudioCaptcha telephony = new AudioCaptcha.Builder().addContent().addNoise().profile(AudioProfile.TELEPHONY).build();
+		assertEquals(8_000f, telephony.getAudio().getFormat().getSampleRate());
+		AudioInputStream ais = AudioSystem.getAudioInputStream(new ByteArrayInputStream(telephony.toWavByteArray()));
+		assertTrue(ais.getFormat().matches(AudioProfile.TELEPHONY.getFormat()));
+		assertEquals(telephony.getAudio().getSampleCount(), ais.getFrameLength());
+		ByteBuffer adpcm = ByteBuffer.wrap(telephony.toWavByteArray(WavEncoding.IMA_ADPCM)).order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals(8_000, adpcm.getInt(24));
+		return;
+	}
+
+	@Test
+	public void filtersAreAppliedInOrder() {
+		AudioCaptcha filtered = new AudioCaptcha.Builder().addContent().addNoise()
+				.addFilter((samples, offset, length, format) -> Arrays.fill(samples, offset, offset + length, (short) 1))
+				.addFilter((samples, offset, length, format) -> samples[offset] = 2)
+				.build();
+		short[] samples = filtered.getAudio().getSamples();
+		assertEquals(2, samples[0]);
+		assertEquals(1, samples[samples.length - 1]);
+		assertEquals(filtered.getWavLength(), filtered.toWavByteArray().length);
+		return;
+	}
+
+	@Test
+	public void crossfadeTrimsAndOverlapsVocalizations() {
+		Sample three = new Sample("/sounds/de/numbers/3_b.wav");
+		AudioCaptcha plain = new AudioCaptcha.Builder().addContent().addVoice(c -> three).build();
+		AudioCaptcha crossfaded = new AudioCaptcha.Builder().addContent().addVoice(c -> three).crossfade(50).build();
+		assertEquals(5 * three.getSampleCount(), plain.getAudio().getSampleCount());
+		// 50 ms at 16 kHz is 800 samples per join
+		assertEquals(5 * three.trimSilence().getSampleCount() - 4 * 800, crossfaded.getAudio().getSampleCount());
+		assertTrue(crossfaded.getWavLength() < plain.getWavLength());
+		assertThrows(IllegalArgumentException.class, () -> new AudioCaptcha.Builder().crossfade(-1));
+		return;
+	}
+
+	@Test
+	public void writeWavWithNoiseDoesNotRenderNoiseWindow() throws IOException, ReflectiveOperationException {
+		AudioCaptcha noisy = new AudioCaptcha.Builder().addContent().addNoise().build();
+		Sample noise = (Sample) field(MixedSample.class, "noise").get(noisy.getAudio());
+		assertTrue(noise instanceof MixedSample);
+		noisy.writeWav(new ByteArrayOutputStream());
+		assertNull(field(MixedSample.class, "rendered").get(noise));
+		return;
+	}
+
+	@Test
+	public void readWithNoiseRendersNothingInFull() throws ReflectiveOperationException {
+		short[] chunk = new short[2_048];
+		for (int i = 0; i < 10; i++) {
+			AudioCaptcha.Builder builder = new AudioCaptcha.Builder().addContent().addNoise();
+			Sample audio = (i % 2 == 0 ? builder : builder.crossfade(20)).build().getAudio();
+			int length = (int) audio.getSampleCount();
+			for (int start = 0; start < length; start += chunk.length) {
+				audio.read(start, chunk, 0, Math.min(chunk.length, length - start));
+			}
+			assertNothingRendered(audio);
+		}
+		return;
+	}
+
+	@Test
+	public void defaultBuildMixesVoicesWithHeadroomUnclipped() throws ReflectiveOperationException {
+		boolean anyUnclipped = false;
+		for (int i = 0; i < 10; i++) {
+			Sample audio = new AudioCaptcha.Builder().addContent().addNoise().build().getAudio();
+			Sample[] segments = (Sample[]) field(MixedSample.class, "segments").get(audio);
+			boolean[] unclipped = (boolean[]) field(MixedSample.class, "unclipped").get(audio);
+			int noiseBound = ((Sample) field(MixedSample.class, "noise").get(audio)).peakBound();
+			assertTrue(noiseBound >= 0);
+			for (int j = 0; j < segments.length; j++) {
+				assertTrue(segments[j].peakBound() >= 0);
+				assertEquals(segments[j].peakBound() + noiseBound <= Short.MAX_VALUE, unclipped[j]);
+				anyUnclipped |= unclipped[j];
+			}
+		}
+		assertTrue(anyUnclipped);
+		return;
+	}
+
+	// Asserts that no lazily rendered Sample reachable from sample holds its audio in full
+	private static void assertNothingRendered(Sample sample) throws ReflectiveOperationException {
+		if (sample instanceof MixedSample) {
+			assertNull(field(MixedSample.class, "rendered").get(sample), "Rendered in full: " + sample);
+			for (Sample segment : (Sample[]) field(MixedSample.class, "segments").get(sample)) {
+				assertNothingRendered(segment);
+			}
+			assertNothingRendered((Sample) field(MixedSample.class, "noise").get(sample));
+		}
+		return;
+	}
+
+	// Returns declared field name of type, made accessible
+	private static Field field(Class<?> type, String name) throws NoSuchFieldException {
+		Field field = type.getDeclaredField(name);
+		field.setAccessible(true);
+		return field;
+	}
+
+	// Step sizes from the IMA-ADPCM specification
+	private static final int[] IMA_STEPS = { 7, 8, 9, 10, 11, 12, 13, 14, 16, 17, 19, 21, 23, 25, 28, 31, 34, 37, 41, 45, 50, 55,
+			60, 66, 73, 80, 88, 97, 107, 118, 130, 143, 157, 173, 190, 209, 230, 253, 279, 307, 337, 371, 408, 449, 494, 544,
+			598, 658, 724, 796, 876, 963, 1060, 1166, 1282, 1411, 1552, 1707, 1878, 2066, 2272, 2499, 2749, 3024, 3327, 3660,
+			4026, 4428, 4871, 5358, 5894, 6484, 7132, 7845, 8630, 9493, 10442, 11487, 12635, 13899, 15289, 16818, 18500, 20350,
+			22385, 24623, 27086, 29794, 32767 };
+
+	// Reference IMA-ADPCM decoder for mono WAV blocks
+	private static short[] decodeImaAdpcm(byte[] wav, int offset, int sampleCount) {
+		int[] adjust = { -1, -1, -1, -1, 2, 4, 6, 8 };
+		short[] samples = new short[sampleCount];
+		int n = 0;
+		for (int block = offset; n < sampleCount; block += ImaAdpcmEncoder.BLOCK_ALIGN) {
+			int predictor = (short) ((wav[block] & 0xff) | (wav[block + 1] << 8));
+			int index = wav[block + 2];
+			samples[n++] = (short) predictor;
+			for (int k = block + 4; k < block + ImaAdpcmEncoder.BLOCK_ALIGN && n < sampleCount; k++) {
+				for (int code : new int[] { wav[k] & 0x0f, (wav[k] >> 4) & 0x0f }) {
+					int step = IMA_STEPS[index];
+					int delta = step >> 3;
+					if ((code & 4) != 0) {
+						delta += step;
+					}
+					if ((code & 2) != 0) {
+						delta += step >> 1;
+					}
+					if ((code & 1) != 0) {
+						delta += step >> 2;
+					}
+					predictor = Math.max(-32768, Math.min(32767, predictor + ((code & 8) != 0 ? -delta : delta)));
+					index = Math.max(0, Math.min(88, index + adjust[code & 7]));
+					if (n < sampleCount) {
+						samples[n++] = (short) predictor;
+					}
+				}
+			}
+		}
+		return samples;
+	}
+}
@@ -0,0 +1,76 @@
+package net.logicsquad.nanocaptcha.audio;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests on {@link AudioProfile} class.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public class AudioProfileTest {
+	private static final int SOURCE_RATE = 16_000;
+
+	private static final double AMPLITUDE = 10_000;
+
+	// Samples at each end affected by the filter running off the input
+	private static final int EDGE = 32;
+
+	@Test
+	public void standardReturnsSameSample() {
+		Sample sample = new Sample(new short[] { 1, 2, 3 });
+		assertSame(sample, AudioProfile.STANDARD.resample(sample));
+		return;
+	}
+
+	@Test
+	public void resampledSampleHasProfileFormat() {
+		for (AudioProfile profile : AudioProfile.values()) {
+			Sample resampled = profile.resample(tone(1_000, SOURCE_RATE));
+			assertTrue(resampled.getFormat().matches(profile.getFormat()));
+			assertEquals((int) profile.getFormat().getSampleRate(), resampled.getSampleCount());
+		}
+		return;
+	}
+
+	@Test
+	public void resamplePreservesInBandTone() {
+		for (AudioProfile profile : new AudioProfile[] { AudioProfile.LOW_BANDWIDTH, AudioProfile.TELEPHONY }) {
+			float rate = profile.getFormat().getSampleRate();
+			short[] actual = profile.resample(tone(1_000, SOURCE_RATE)).getSamples();
+			short[] expected = tone(1_000, rate).getSamples();
+			for (int i = EDGE; i < actual.length - EDGE; i++) {
+				assertEquals(expected[i], actual[i], AMPLITUDE / 50);
+			}
+		}
+		return;
+	}
+
+	@Test
+	public void resampleRejectsOutOfBandTone() {
+		// 6 kHz is above the 4 kHz Nyquist frequency for TELEPHONY
+		short[] actual = AudioProfile.TELEPHONY.resample(tone(6_000, SOURCE_RATE)).getSamples();
+		for (int i = EDGE; i < actual.length - EDGE; i++) {
+			assertTrue(Math.abs(actual[i]) < AMPLITUDE / 100);
+		}
+		return;
+	}
+
+	@Test
+	public void resampleThrowsOnResampledSample() {
+		Sample resampled = AudioProfile.TELEPHONY.resample(tone(1_000, SOURCE_RATE));
+		assertThrows(IllegalArgumentException.class, () -> AudioProfile.LOW_BANDWIDTH.resample(resampled));
+		return;
+	}
+
+	// One second of a sine wave at frequency, sampled at rate
+	private static Sample tone(double frequency, float rate) {
+		short[] pcm = new short[(int) rate];
+		for (int i = 0; i < pcm.length; i++) {
+			pcm[i] = (short) Math.round(AMPLITUDE * Math.sin(2 * Math.PI * frequency * i / rate));
+		}
+		return new Sample(pcm);
+	}
+}
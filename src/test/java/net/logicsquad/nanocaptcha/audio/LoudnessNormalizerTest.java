@@ -0,0 +1,62 @@
+package net.logicsquad.nanocaptcha.audio;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests on {@link LoudnessNormalizer} class.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public class LoudnessNormalizerTest {
+	@Test
+	public void constructorThrowsOnInvalidArguments() {
+		assertThrows(IllegalArgumentException.class, () -> new LoudnessNormalizer(-20.0, 1.0));
+		assertThrows(IllegalArgumentException.class, () -> new LoudnessNormalizer(-3.0, -6.0));
+		assertThrows(IllegalArgumentException.class, () -> new LoudnessNormalizer(Double.NaN, -6.0));
+		return;
+	}
+
+	@Test
+	public void normalizeTrimsAndReachesTargetRms() {
+		short[] pcm = new short[1_000];
+		for (int i = 300; i < 600; i++) {
+			pcm[i] = (short) (i % 2 == 0 ? 1_000 : -1_000);
+		}
+		Sample normalized = new LoudnessNormalizer(-20.0, -3.0).normalize(new Sample(pcm));
+		ClipMetadata metadata = normalized.getMetadata();
+		// 5 ms margin at 16 kHz is 80 samples
+		assertEquals(220, metadata.getTrimStart());
+		assertEquals(460, normalized.getSampleCount());
+		// -20 dBFS is 3276.8, and the RMS of the audible region (with margins) is
+		// 1000 * sqrt(300 / 460)
+		assertEquals(3_276.8 / (1_000 * Math.sqrt(300.0 / 460)), metadata.getGain(), 1e-9);
+		assertEquals(-20.0, metadata.getRmsDbfs(), 1e-9);
+		assertEquals(Math.round(1_000 * metadata.getGain()), normalized.getSamples()[80]);
+		assertEquals(metadata.getPeak(), normalized.peakBound());
+		return;
+	}
+
+	@Test
+	public void normalizeLimitsPeakToCeiling() {
+		short[] pcm = new short[1_000];
+		for (int i = 0; i < pcm.length; i++) {
+			pcm[i] = (short) (i == 500 ? 20_000 : i % 2 == 0 ? 300 : -300);
+		}
+		Sample normalized = LoudnessNormalizer.VOICE.normalize(new Sample(pcm));
+		ClipMetadata metadata = normalized.getMetadata();
+		assertEquals(-6.0, metadata.getPeakDbfs(), 0.001);
+		assertTrue(metadata.getRmsDbfs() < -18.0);
+		return;
+	}
+
+	@Test
+	public void normalizeLeavesSilenceEmpty() {
+		Sample normalized = LoudnessNormalizer.NOISE.normalize(new Sample(new short[100]));
+		assertEquals(0, normalized.getSampleCount());
+		assertEquals(1.0, normalized.getMetadata().getGain());
+		return;
+	}
+}
@@ -0,0 +1,175 @@
+package net.logicsquad.nanocaptcha.audio;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests on {@link Mixer} class.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public class MixerTest {
+	@Test
+	public void concatenateThrowsOnNull() {
+		assertThrows(NullPointerException.class, () -> Mixer.concatenate(null));
+		return;
+	}
+
+	@Test
+	public void concatenateReturnsEmptySampleForEmptyList() {
+		assertEquals(0, Mixer.concatenate(Collections.emptyList()).getSampleCount());
+		return;
+	}
+
+	@Test
+	public void concatenateJoinsSamplesInOrder() {
+		Sample whole = new Sample(new short[] { 9, 1, 2, 3, 9 });
+		Sample joined = Mixer.concatenate(Arrays.asList(whole.slice(1, 2), new Sample(new short[] { 4 }), whole.slice(3, 1)));
+		assertArrayEquals(new short[] { 1, 2, 4, 3 }, joined.getSamples());
+		return;
+	}
+
+	@Test
+	public void mixAppliesVolumesAndClips() {
+		Sample voice = new Sample(new short[] { 100, -100, 30_000, -30_000, 100 });
+		Sample noise = new Sample(new short[] { 100, 100, 30_000, -30_000 });
+		Sample mixed = Mixer.mix(voice, 1.0, noise, 0.5);
+		assertArrayEquals(new short[] { 150, -50, Short.MAX_VALUE, Short.MIN_VALUE, 100 }, mixed.getSamples());
+		return;
+	}
+
+	@Test
+	public void mixToByteArrayMatchesConcatenateThenMix() {
+		Sample voice = new Sample("/0-alex.wav");
+		Sample noise = new Sample("/0-alex.wav").slice(1000, 8000);
+		List<Sample> samples = Arrays.asList(voice, voice.slice(500, 2000), voice);
+		Sample expected = Mixer.mix(Mixer.concatenate(samples), 0.9, noise, 0.6);
+		assertArrayEquals(expected.toByteArray(), Mixer.mixToByteArray(samples, 0.9, noise, 0.6));
+		return;
+	}
+
+	@Test
+	public void mixToByteArrayReadsLazySamplesWithoutRendering() throws ReflectiveOperationException {
+		Sample voice = new Sample("/0-alex.wav");
+		Sample lazy = Mixer.mix(Arrays.asList(voice, voice.slice(500, 2000)), 0.9, voice.slice(1000, 8000), 0.6);
+		byte[] mixed = Mixer.mixToByteArray(Arrays.asList(lazy, voice), 1.0, lazy, 0.5);
+		Field rendered = MixedSample.class.getDeclaredField("rendered");
+		rendered.setAccessible(true);
+		assertNull(rendered.get(lazy));
+		Sample copy = new Sample(lazy.getSamples());
+		assertArrayEquals(Mixer.mix(Mixer.concatenate(Arrays.asList(copy, voice)), 1.0, copy, 0.5).toByteArray(), mixed);
+		return;
+	}
+
+	@Test
+	public void lazyMixMatchesConcatenateThenMix() {
+		Sample voice = new Sample("/0-alex.wav");
+		Sample noise = new Sample("/0-alex.wav").slice(1000, 8000);
+		List<Sample> samples = Arrays.asList(voice, voice.slice(0, 0), voice.slice(500, 2000), voice);
+		short[] expected = Mixer.mix(Mixer.concatenate(samples), 0.9, noise, 0.6).getSamples();
+		Sample lazy = Mixer.mix(samples, 0.9, noise, 0.6);
+		assertEquals(expected.length, lazy.getSampleCount());
+		// Read in odd-sized chunks that straddle segment boundaries
+		short[] chunked = new short[expected.length];
+		for (int start = 0; start < chunked.length; start += 777) {
+			lazy.read(start, chunked, start, Math.min(777, chunked.length - start));
+		}
+		assertArrayEquals(expected, chunked);
+		assertArrayEquals(expected, lazy.getSamples());
+		return;
+	}
+
+	@Test
+	public void mixThrowsOnDifferentFormats() {
+		Sample voice = new Sample(new short[] { 1, 2, 3, 4 });
+		Sample noise = AudioProfile.TELEPHONY.resample(voice);
+		assertThrows(IllegalArgumentException.class, () -> Mixer.mix(Arrays.asList(voice), 1.0, noise, 0.5));
+		assertThrows(IllegalArgumentException.class, () -> Mixer.mix(voice, 1.0, noise, 0.5));
+		assertThrows(IllegalArgumentException.class, () -> Mixer.mixToByteArray(Arrays.asList(voice), 1.0, noise, 0.5));
+		assertThrows(IllegalArgumentException.class, () -> Mixer.concatenate(Arrays.asList(voice, noise)));
+		return;
+	}
+
+	@Test
+	public void loopThrowsOnInvalidArguments() {
+		Sample sample = new Sample(new short[] { 1, 2, 3, 4 });
+		assertThrows(NullPointerException.class, () -> Mixer.loop(null, 0, 1, 0));
+		assertThrows(IllegalArgumentException.class, () -> Mixer.loop(sample, -1, 1, 0));
+		assertThrows(IllegalArgumentException.class, () -> Mixer.loop(sample, 0, -1, 0));
+		assertThrows(IllegalArgumentException.class, () -> Mixer.loop(sample, 0, 1, -1));
+		return;
+	}
+
+	@Test
+	public void loopWithoutCrossfadeWrapsAround() {
+		Sample sample = new Sample(new short[] { 1, 2, 3, 4 });
+		assertArrayEquals(new short[] { 3, 4, 1, 2, 3, 4, 1, 2, 3, 4, 1 }, Mixer.loop(sample, 6, 11, 0).getSamples());
+		assertEquals(0, Mixer.loop(new Sample(new short[0]), 0, 5, 0).getSamples()[4]);
+		return;
+	}
+
+	@Test
+	public void loopCrossfadesTailIntoHead() {
+		// Flat, then ramping down to a flat tail of opposite sign
+		short[] pcm = new short[1_000];
+		for (int i = 0; i < pcm.length; i++) {
+			pcm[i] = (short) (i < 800 ? 1_000 : Math.max(-1_000, 1_000 - (i - 800) * 20));
+		}
+		Sample sample = new Sample(pcm);
+		// Period is 900 samples: each pass starts with the tail faded into the head
+		short[] looped = Mixer.loop(sample, 0, 2_000, 100).getSamples();
+		assertEquals(2_000, looped.length);
+		assertTrue(looped[0] < -900);
+		assertTrue(looped[99] > 900);
+		for (int i = 100; i < 800; i++) {
+			assertEquals(1_000, looped[i]);
+			assertEquals(1_000, looped[i + 900]);
+		}
+		assertEquals(looped[0], looped[900]);
+		assertEquals(looped[1_800], looped[0]);
+		// No step larger than the crossfade's at the wrap
+		for (int i = 1; i < looped.length; i++) {
+			assertTrue(Math.abs(looped[i] - looped[i - 1]) < 100);
+		}
+		return;
+	}
+
+	@Test
+	public void loopKeepsFormat() {
+		Sample sample = AudioProfile.TELEPHONY.resample(new Sample("/0-alex.wav"));
+		Sample looped = Mixer.loop(sample, 123, 3 * (int) sample.getSampleCount(), 400);
+		assertTrue(looped.getFormat().matches(AudioProfile.TELEPHONY.getFormat()));
+		assertEquals(3 * sample.getSampleCount(), looped.getSampleCount());
+		return;
+	}
+
+	@Test
+	public void concatenateWithCrossfadeOverlapsJoins() {
+		short[] high = new short[100];
+		Arrays.fill(high, (short) 1_000);
+		short[] low = new short[100];
+		Arrays.fill(low, (short) -1_000);
+		List<Sample> samples = Arrays.asList(new Sample(high), new Sample(low), new Sample(high));
+		short[] joined = Mixer.concatenate(samples, 20).getSamples();
+		assertEquals(260, joined.length);
+		assertEquals(1_000, joined[79]);
+		assertEquals(-1_000, joined[100]);
+		assertEquals(1_000, joined[180]);
+		for (int i = 81; i < 100; i++) {
+			assertTrue(joined[i] < joined[i - 1]);
+		}
+		// Crossfade is limited to half the shorter sample
+		assertEquals(150, Mixer.concatenate(samples.subList(0, 2), 500).getSampleCount());
+		assertArrayEquals(Mixer.concatenate(samples).getSamples(), Mixer.concatenate(samples, 0).getSamples());
+		assertEquals(0, Mixer.concatenate(Collections.emptyList(), 20).getSampleCount());
+		assertThrows(IllegalArgumentException.class, () -> Mixer.concatenate(samples, -1));
+		return;
+	}
+}
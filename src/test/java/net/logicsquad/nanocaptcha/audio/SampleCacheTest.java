@@ -0,0 +1,122 @@
+package net.logicsquad.nanocaptcha.audio;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests on {@link SampleCache} class.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public class SampleCacheTest {
+	// This sample is a copy of one of the known-good samples
+	private static final String WAV_GOOD_FILENAME = "/0-alex.wav";
+
+	// This sample has the wrong encoding parameters for Sample
+	private static final String WAV_BAD_FILENAME = "/hello.wav";
+
+	// Known sample count
+	private static final int WAV_GOOD_SAMPLES = 9847;
+
+	private SampleCache cache;
+
+	@BeforeEach
+	public void setup() {
+		cache = new SampleCache();
+		return;
+	}
+
+	@Test
+	public void getThrowsOnNull() {
+		assertThrows(NullPointerException.class, () -> cache.get(null));
+		return;
+	}
+
+	@Test
+	public void getThrowsOnWrongAudioParameters() {
+		assertThrows(IllegalArgumentException.class, () -> cache.get(WAV_BAD_FILENAME));
+		assertFalse(cache.contains(WAV_BAD_FILENAME));
+		return;
+	}
+
+	@Test
+	public void getCountsHitsAndMisses() {
+		assertEquals(WAV_GOOD_SAMPLES, cache.get(WAV_GOOD_FILENAME).getSampleCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(0, cache.getHitCount());
+		assertEquals(WAV_GOOD_SAMPLES, cache.get(WAV_GOOD_FILENAME).getSampleCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+		return;
+	}
+
+	@Test
+	public void getReturnsCachedSample() {
+		Sample first = cache.get(WAV_GOOD_FILENAME);
+		assertSame(first, cache.get(WAV_GOOD_FILENAME));
+		assertArrayEquals(new Sample(WAV_GOOD_FILENAME).getSamples(), first.getSamples());
+		return;
+	}
+
+	@Test
+	public void windowSharesCachedData() {
+		short[] full = cache.get(WAV_GOOD_FILENAME).getSamples();
+		short[] window = cache.get(WAV_GOOD_FILENAME, 100, 1000).getSamples();
+		assertArrayEquals(Arrays.copyOfRange(full, 100, 1100), window);
+		assertEquals(47, cache.get(WAV_GOOD_FILENAME, WAV_GOOD_SAMPLES - 47, 1000).getSampleCount());
+		assertEquals(1, cache.getMissCount());
+		return;
+	}
+
+	@Test
+	public void windowThrowsOnBadBounds() {
+		assertThrows(IndexOutOfBoundsException.class, () -> cache.get(WAV_GOOD_FILENAME, -1, 10));
+		assertThrows(IndexOutOfBoundsException.class, () -> cache.get(WAV_GOOD_FILENAME, 0, -1));
+		assertThrows(IndexOutOfBoundsException.class, () -> cache.get(WAV_GOOD_FILENAME, WAV_GOOD_SAMPLES + 1, 10));
+		return;
+	}
+
+	@Test
+	public void preloadPopulatesCache() {
+		cache.preload(Arrays.asList(WAV_GOOD_FILENAME));
+		assertTrue(cache.contains(WAV_GOOD_FILENAME));
+		assertEquals(1, cache.size());
+		cache.get(WAV_GOOD_FILENAME);
+		assertEquals(1, cache.getHitCount());
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getHitCount());
+		return;
+	}
+
+	@Test
+	public void getWithProfileResamplesOnce() {
+		Sample first = cache.get(WAV_GOOD_FILENAME, AudioProfile.TELEPHONY);
+		assertEquals(8_000f, first.getFormat().getSampleRate());
+		assertEquals(WAV_GOOD_SAMPLES / 2, first.getSampleCount());
+		assertSame(first, cache.get(WAV_GOOD_FILENAME, AudioProfile.TELEPHONY));
+		assertSame(cache.get(WAV_GOOD_FILENAME), cache.get(WAV_GOOD_FILENAME, AudioProfile.STANDARD));
+		// One decode and one resample
+		assertEquals(2, cache.getMissCount());
+		return;
+	}
+
+	@Test
+	public void getWithNormalizerPreparesOnce() {
+		Sample normalized = cache.get(WAV_GOOD_FILENAME, AudioProfile.STANDARD, LoudnessNormalizer.VOICE);
+		assertEquals(-18.0, normalized.getMetadata().getRmsDbfs(), 0.01);
+		assertSame(normalized, cache.get(WAV_GOOD_FILENAME, AudioProfile.STANDARD, LoudnessNormalizer.VOICE));
+		assertNotSame(normalized, cache.get(WAV_GOOD_FILENAME, AudioProfile.STANDARD, LoudnessNormalizer.NOISE));
+		cache.preload(Arrays.asList(WAV_GOOD_FILENAME), AudioProfile.TELEPHONY, LoudnessNormalizer.VOICE);
+		assertEquals(8_000f, cache.get(WAV_GOOD_FILENAME, AudioProfile.TELEPHONY, LoudnessNormalizer.VOICE).getFormat().getSampleRate());
+		// One decode, one resample and three normalizations
+		assertEquals(5, cache.getMissCount());
+		assertThrows(NullPointerException.class, () -> cache.get(WAV_GOOD_FILENAME, AudioProfile.STANDARD, null));
+		return;
+	}
+}
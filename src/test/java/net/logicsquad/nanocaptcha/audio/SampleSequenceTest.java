@@ -0,0 +1,136 @@
+package net.logicsquad.nanocaptcha.audio;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests on {@link SampleSequence} class.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public class SampleSequenceTest {
+	@Test
+	public void addThrowsOnNull() {
+		assertThrows(NullPointerException.class, () -> new SampleSequence.Builder().add(null));
+		return;
+	}
+
+	@Test
+	public void addSilenceThrowsOnNegativeLength() {
+		assertThrows(IllegalArgumentException.class, () -> new SampleSequence.Builder().addSilence(-1));
+		return;
+	}
+
+	@Test
+	public void buildAppliesGainsAndSilence() {
+		Sample sequence = new SampleSequence.Builder()
+				.add(new Sample(new short[] { 10, 20 }))
+				.addSilence(3)
+				.add(new Sample(new short[] { 100, -30_000 }), 2.0)
+				.build();
+		assertArrayEquals(new short[] { 10, 20, 0, 0, 0, 200, Short.MIN_VALUE }, sequence.getSamples());
+		return;
+	}
+
+	@Test
+	public void nestedSequencesAreSpliced() {
+		Sample a = new Sample(new short[] { 1, 2 });
+		Sample b = new Sample(new short[] { 3 });
+		Sample inner = new SampleSequence.Builder().add(a).addSilence(1).add(b, 2.0).build();
+		Sample outer = new SampleSequence.Builder().add(inner, 3.0).add(inner).build();
+		assertArrayEquals(new short[] { 3, 6, 0, 18, 1, 2, 0, 6 }, outer.getSamples());
+		return;
+	}
+
+	@Test
+	public void manySegmentsReadInChunksMatchEager() {
+		Sample digit = new Sample("/0-alex.wav");
+		SampleSequence.Builder builder = new SampleSequence.Builder();
+		short[] expected = new short[0];
+		for (int i = 0; i < 20; i++) {
+			Sample segment = digit.slice(i * 100, 1_000 + i);
+			builder.add(segment).addSilence(i);
+			int k = expected.length;
+			expected = Arrays.copyOf(expected, k + (int) segment.getSampleCount() + i);
+			System.arraycopy(segment.getSamples(), 0, expected, k, (int) segment.getSampleCount());
+		}
+		Sample sequence = builder.build();
+		short[] actual = new short[expected.length];
+		for (int start = 0; start < actual.length; start += 333) {
+			sequence.read(start, actual, start, Math.min(333, actual.length - start));
+		}
+		assertArrayEquals(expected, actual);
+		return;
+	}
+
+	@Test
+	public void noiseIsMixedOverSilence() {
+		Sample voice = new Sample(new short[] { 100, 100 });
+		Sample noise = new Sample(new short[] { 10, 10, 10, 10, 10 });
+		Sample sequence = new SampleSequence.Builder().add(voice).addSilence(2).add(voice, 0.5).build();
+		Sample mixed = Mixer.mix(Arrays.asList(sequence), 1.0, noise, 0.5);
+		assertArrayEquals(new short[] { 105, 105, 5, 5, 55, 50 }, mixed.getSamples());
+		return;
+	}
+
+	@Test
+	public void sliceOfSequenceMatchesSliceOfRendered() {
+		Sample voice = new Sample("/0-alex.wav");
+		Sample noise = voice.slice(1000, 6000);
+		Sample mixed = Mixer.mix(Arrays.asList(voice.slice(0, 3000), voice.slice(5000, 4000), voice), 0.8, noise, 0.5);
+		short[] rendered = new Sample(mixed.getSamples()).slice(2500, 9000).getSamples();
+		assertArrayEquals(rendered, mixed.slice(2500, 9000).getSamples());
+		Sample silence = new SampleSequence.Builder().format(AudioProfile.TELEPHONY.getFormat()).addSilence(10).build();
+		assertTrue(silence.slice(2, 5).getFormat().matches(AudioProfile.TELEPHONY.getFormat()));
+		return;
+	}
+
+	@Test
+	public void mixWithinHeadroomIsUnclippedAndMatchesClipped() {
+		Sample voice = LoudnessNormalizer.VOICE.normalize(new Sample("/0-alex.wav"));
+		Sample noise = LoudnessNormalizer.NOISE.normalize(new Sample("/0-alex.wav").slice(2000, 5000));
+		Sample mixed = Mixer.mix(Arrays.asList(voice, voice.slice(100, 3000)), 1.0, noise, 1.0);
+		assertTrue(mixed.peakBound() >= 0 && mixed.peakBound() <= Short.MAX_VALUE);
+		// Same audio without known peaks takes the clipping path
+		Sample unknownVoice = Sample.wrap(voice.getSamples(), Sample.SC_AUDIO_FORMAT);
+		Sample clipped = Mixer.mix(Arrays.asList(unknownVoice, unknownVoice.slice(100, 3000)), 1.0,
+				Sample.wrap(noise.getSamples(), Sample.SC_AUDIO_FORMAT), 1.0);
+		assertEquals(-1, clipped.peakBound());
+		assertArrayEquals(clipped.getSamples(), mixed.getSamples());
+		// Loud sources can't be proven safe
+		Sample loud = Sample.wrap(new short[] { 30_000, -30_000 }, Sample.SC_AUDIO_FORMAT, 30_000);
+		Sample overloaded = Mixer.mix(Arrays.asList(loud), 1.0, loud, 0.5);
+		assertArrayEquals(new short[] { Short.MAX_VALUE, Short.MIN_VALUE }, overloaded.getSamples());
+		return;
+	}
+
+	@Test
+	public void decodedSamplesHaveKnownPeaks() {
+		Sample voice = new Sample("/0-alex.wav");
+		assertEquals(voice.getMetadata().getPeak(), new Sample("/0-alex.wav").peakBound());
+		assertEquals(1_000, new Sample(new short[] { 10, -1_000, 999 }).peakBound());
+		Sample resampled = AudioProfile.TELEPHONY.resample(voice);
+		assertEquals(resampled.getMetadata().getPeak(), AudioProfile.TELEPHONY.resample(voice).peakBound());
+		return;
+	}
+
+	@Test
+	public void onlySegmentsWithoutHeadroomAreClipped() throws ReflectiveOperationException {
+		Sample quiet = Sample.wrap(new short[] { 10_000, -10_000 }, Sample.SC_AUDIO_FORMAT, 10_000);
+		Sample loud = Sample.wrap(new short[] { 30_000, -30_000 }, Sample.SC_AUDIO_FORMAT, 30_000);
+		Sample noise = Sample.wrap(new short[] { 8_000, -8_000, 8_000, -8_000 }, Sample.SC_AUDIO_FORMAT, 8_000);
+		Sample mixed = Mixer.mix(Arrays.asList(quiet, loud), 1.0, noise, 1.0);
+		Field unclipped = MixedSample.class.getDeclaredField("unclipped");
+		unclipped.setAccessible(true);
+		assertArrayEquals(new boolean[] { true, false }, (boolean[]) unclipped.get(mixed));
+		// 30,000 + 8,000 is capped at the largest 16-bit magnitude
+		assertEquals(-Short.MIN_VALUE, mixed.peakBound());
+		assertArrayEquals(new short[] { 18_000, -18_000, Short.MAX_VALUE, Short.MIN_VALUE }, mixed.getSamples());
+		return;
+	}
+}
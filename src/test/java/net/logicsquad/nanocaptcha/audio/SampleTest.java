@@ -2,8 +2,10 @@ package net.logicsquad.nanocaptcha.audio;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
@@ -69,4 +71,85 @@ public class SampleTest {
 		assertEquals(WAV_GOOD_SAMPLES, sample.getSampleCount());
 		return;
 	}
+
+	@Test
+	public void audioInputStreamCanBeReadRepeatedly() throws IOException {
+		Sample sample = new Sample(WAV_GOOD_FILENAME);
+		byte[] first = readFully(sample.getAudioInputStream());
+		byte[] second = readFully(sample.getAudioInputStream());
+		assertEquals(WAV_GOOD_SAMPLES * 2, first.length);
+		assertArrayEquals(first, second);
+		assertEquals(WAV_GOOD_SAMPLES, new Sample(sample.getAudioInputStream()).getSampleCount());
+		return;
+	}
+
+	@Test
+	public void shortArrayConstructorCopiesInput() {
+		short[] pcm = { 1, 2, 3 };
+		Sample sample = new Sample(pcm);
+		pcm[0] = 42;
+		assertArrayEquals(new short[] { 1, 2, 3 }, sample.getSamples());
+		return;
+	}
+
+	@Test
+	public void sliceReturnsExpectedSamples() {
+		Sample sample = new Sample(new short[] { 1, 2, 3, 4, 5 });
+		assertArrayEquals(new short[] { 2, 3, 4 }, sample.slice(1, 3).getSamples());
+		assertArrayEquals(new short[] { 3 }, sample.slice(1, 3).slice(1, 1).getSamples());
+		assertEquals(0, sample.slice(5, 0).getSampleCount());
+		assertThrows(IndexOutOfBoundsException.class, () -> sample.slice(-1, 1));
+		assertThrows(IndexOutOfBoundsException.class, () -> sample.slice(3, 3));
+		return;
+	}
+
+	@Test
+	public void trimSilenceKeepsAudibleRegionWithMargin() {
+		short[] pcm = new short[1_000];
+		Arrays.fill(pcm, 300, 600, (short) 1_000);
+		pcm[100] = 200;
+		Sample sample = new Sample(pcm);
+		Sample trimmed = sample.trimSilence();
+		// 5 ms margin at 16 kHz is 80 samples
+		assertEquals(460, trimmed.getSampleCount());
+		assertEquals(0, trimmed.getSamples()[79]);
+		assertEquals(1_000, trimmed.getSamples()[80]);
+		assertSame(trimmed, sample.trimSilence());
+		assertEquals(0, new Sample(new short[50]).trimSilence().getSampleCount());
+		Sample loud = new Sample(new short[] { 1_000, -1_000 });
+		assertSame(loud, loud.trimSilence());
+		return;
+	}
+
+	@Test
+	public void getMetadataMeasuresAudibleRegion() {
+		short[] pcm = new short[1_000];
+		for (int i = 300; i < 600; i++) {
+			pcm[i] = (short) (i % 2 == 0 ? 1_000 : -1_000);
+		}
+		pcm[700] = 2_000;
+		pcm[950] = -200;
+		Sample sample = new Sample(pcm);
+		ClipMetadata metadata = sample.getMetadata();
+		assertEquals(220, metadata.getTrimStart());
+		assertEquals(561, metadata.getLength());
+		assertEquals(2_000, metadata.getPeak());
+		assertEquals(Math.sqrt((300 * 1_000_000.0 + 4_000_000) / 561), metadata.getRms(), 1e-9);
+		assertEquals(1.0, metadata.getGain());
+		assertSame(metadata, sample.getMetadata());
+		assertEquals(2_000, sample.peakBound());
+		assertEquals(2_000, sample.slice(10, 20).peakBound());
+		assertEquals(0, new Sample(new short[50]).getMetadata().getLength());
+		return;
+	}
+
+	private static byte[] readFully(InputStream is) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int read;
+		while ((read = is.read(buffer)) != -1) {
+			baos.write(buffer, 0, read);
+		}
+		return baos.toByteArray();
+	}
 }
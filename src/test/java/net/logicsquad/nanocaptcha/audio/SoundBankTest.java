@@ -0,0 +1,171 @@
+package net.logicsquad.nanocaptcha.audio;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests on {@link SoundBank} class.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public class SoundBankTest {
+	private static final String WAV_ALEX_FILENAME = "/0-alex.wav";
+
+	private static final String WAV_BOB_FILENAME = "/sounds/en/numbers/1_a.wav";
+
+	@TempDir
+	Path directory;
+
+	@Test
+	public void writeThenOpenRoundTrips() throws IOException {
+		Map<String, Sample> samples = new LinkedHashMap<>();
+		samples.put(WAV_ALEX_FILENAME, new Sample(WAV_ALEX_FILENAME));
+		samples.put(WAV_BOB_FILENAME, new Sample(WAV_BOB_FILENAME));
+		Path file = directory.resolve("bank.ncsb");
+		SoundBank.write(file, samples);
+		SoundBank bank = SoundBank.open(file);
+		assertEquals(samples.keySet(), bank.getNames());
+		for (Map.Entry<String, Sample> entry : samples.entrySet()) {
+			assertArrayEquals(entry.getValue().getSamples(), bank.get(entry.getKey()).getSamples());
+		}
+		assertNull(bank.get("/missing.wav"));
+		return;
+	}
+
+	@Test
+	public void mappedSliceMatchesHeapSlice() throws IOException {
+		Path file = directory.resolve("bank.ncsb");
+		SoundBank bank = SoundBank.openOrCreate(file, Collections.singletonList(WAV_ALEX_FILENAME));
+		Sample heap = new Sample(WAV_ALEX_FILENAME);
+		Sample mapped = bank.get(WAV_ALEX_FILENAME);
+		assertArrayEquals(heap.slice(1000, 500).getSamples(), mapped.slice(1000, 500).getSamples());
+		assertArrayEquals(heap.slice(1000, 500).slice(10, 20).getSamples(), mapped.slice(1000, 500).slice(10, 20).getSamples());
+		return;
+	}
+
+	@Test
+	public void mappedSampleMixesLikeHeapSample() throws IOException {
+		Path file = directory.resolve("bank.ncsb");
+		SoundBank bank = SoundBank.openOrCreate(file, Arrays.asList(WAV_ALEX_FILENAME, WAV_BOB_FILENAME));
+		Sample heapAlex = new Sample(WAV_ALEX_FILENAME);
+		Sample heapBob = new Sample(WAV_BOB_FILENAME);
+		Sample expected = Mixer.mix(Arrays.asList(heapAlex, heapBob), 0.8, heapBob, 0.6);
+		Sample actual = Mixer.mix(Arrays.asList(bank.get(WAV_ALEX_FILENAME), bank.get(WAV_BOB_FILENAME)), 0.8, bank.get(WAV_BOB_FILENAME), 0.6);
+		assertArrayEquals(expected.getSamples(), actual.getSamples());
+		return;
+	}
+
+	@Test
+	public void mappedMetadataMatchesHeapMetadataWithoutCopying() throws IOException, ReflectiveOperationException {
+		String noise = "/sounds/noises/restaurant.wav";
+		Path file = directory.resolve("bank.ncsb");
+		SoundBank bank = SoundBank.openOrCreate(file, Arrays.asList(WAV_BOB_FILENAME, noise));
+		Field copied = MappedSample.class.getDeclaredField("copied");
+		copied.setAccessible(true);
+		for (String name : new String[] { WAV_BOB_FILENAME, noise }) {
+			ClipMetadata expected = new Sample(name).getMetadata();
+			Sample mapped = bank.get(name);
+			ClipMetadata actual = mapped.getMetadata();
+			assertEquals(expected.getTrimStart(), actual.getTrimStart());
+			assertEquals(expected.getLength(), actual.getLength());
+			assertEquals(expected.getPeak(), actual.getPeak());
+			assertEquals(expected.getRms(), actual.getRms(), 1e-9);
+			assertEquals(expected.getLength(), mapped.trimSilence().getSampleCount());
+			assertNull(copied.get(mapped));
+		}
+		return;
+	}
+
+	@Test
+	public void resampledMappedSampleIsNotCopied() throws IOException, ReflectiveOperationException {
+		Path file = directory.resolve("bank.ncsb");
+		SoundBank bank = SoundBank.openOrCreate(file, Collections.singletonList(WAV_BOB_FILENAME));
+		Field copied = MappedSample.class.getDeclaredField("copied");
+		copied.setAccessible(true);
+		Sample mapped = bank.get(WAV_BOB_FILENAME);
+		for (AudioProfile profile : Arrays.asList(AudioProfile.LOW_BANDWIDTH, AudioProfile.TELEPHONY)) {
+			assertArrayEquals(profile.resample(new Sample(WAV_BOB_FILENAME)).getSamples(), profile.resample(mapped).getSamples());
+		}
+		assertNull(copied.get(mapped));
+		return;
+	}
+
+	@Test
+	public void openOrCreateReusesCompleteBank() throws IOException {
+		Path file = directory.resolve("bank.ncsb");
+		SoundBank.openOrCreate(file, Arrays.asList(WAV_ALEX_FILENAME, WAV_BOB_FILENAME));
+		long modified = Files.getLastModifiedTime(file).toMillis();
+		byte[] before = Files.readAllBytes(file);
+		SoundBank bank = SoundBank.openOrCreate(file, Collections.singletonList(WAV_BOB_FILENAME));
+		assertEquals(2, bank.size());
+		assertEquals(modified, Files.getLastModifiedTime(file).toMillis());
+		assertArrayEquals(before, Files.readAllBytes(file));
+		return;
+	}
+
+	@Test
+	public void openOrCreateRewritesIncompleteBank() throws IOException {
+		Path file = directory.resolve("bank.ncsb");
+		SoundBank.openOrCreate(file, Collections.singletonList(WAV_ALEX_FILENAME));
+		SoundBank bank = SoundBank.openOrCreate(file, Arrays.asList(WAV_ALEX_FILENAME, WAV_BOB_FILENAME));
+		assertEquals(2, bank.size());
+		return;
+	}
+
+	@Test
+	public void openThrowsOnNonBank() throws IOException {
+		Path file = directory.resolve("bank.ncsb");
+		Files.write(file, new byte[] { 'R', 'I', 'F', 'F', 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 });
+		assertThrows(IllegalArgumentException.class, () -> SoundBank.open(file));
+		return;
+	}
+
+	@Test
+	public void openThrowsOnTruncatedBank() throws IOException {
+		Path file = directory.resolve("bank.ncsb");
+		SoundBank.openOrCreate(file, Collections.singletonList(WAV_ALEX_FILENAME));
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+		assertThrows(IllegalArgumentException.class, () -> SoundBank.open(file));
+		return;
+	}
+
+	@Test
+	public void cacheServesMappedSamples() throws IOException {
+		Path file = directory.resolve("bank.ncsb");
+		SoundBank bank = SoundBank.openOrCreate(file, Collections.singletonList(WAV_ALEX_FILENAME));
+		SampleCache cache = new SampleCache();
+		cache.load(bank);
+		assertSame(bank.get(WAV_ALEX_FILENAME), cache.get(WAV_ALEX_FILENAME));
+		assertEquals(0, cache.getMissCount());
+		return;
+	}
+
+	@Test
+	public void loadDropsSamplesDerivedFromReplacedNames() throws IOException {
+		Path file = directory.resolve("bank.ncsb");
+		SoundBank bank = SoundBank.openOrCreate(file, Collections.singletonList(WAV_BOB_FILENAME));
+		SampleCache cache = new SampleCache();
+		Sample resampled = cache.get(WAV_BOB_FILENAME, AudioProfile.TELEPHONY);
+		Sample normalized = cache.get(WAV_BOB_FILENAME, AudioProfile.STANDARD, LoudnessNormalizer.VOICE);
+		Sample other = cache.get(WAV_ALEX_FILENAME, AudioProfile.TELEPHONY);
+		cache.load(bank);
+		assertSame(bank.get(WAV_BOB_FILENAME), cache.get(WAV_BOB_FILENAME));
+		assertNotSame(resampled, cache.get(WAV_BOB_FILENAME, AudioProfile.TELEPHONY));
+		assertNotSame(normalized, cache.get(WAV_BOB_FILENAME, AudioProfile.STANDARD, LoudnessNormalizer.VOICE));
+		assertSame(other, cache.get(WAV_ALEX_FILENAME, AudioProfile.TELEPHONY));
+		return;
+	}
+}
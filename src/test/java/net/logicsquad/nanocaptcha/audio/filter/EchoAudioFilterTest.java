@@ -0,0 +1,43 @@
+package net.logicsquad.nanocaptcha.audio.filter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import javax.sound.sampled.AudioFormat;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests on {@link EchoAudioFilter} class.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public class EchoAudioFilterTest {
+	// 1 kHz, so that 1 ms is one sample
+	private static final AudioFormat FORMAT = new AudioFormat(1_000, 16, 1, true, false);
+
+	@Test
+	public void constructorThrowsOnBadArguments() {
+		assertThrows(IllegalArgumentException.class, () -> new EchoAudioFilter(0, 0.5));
+		assertThrows(IllegalArgumentException.class, () -> new EchoAudioFilter(10, 1.0));
+		assertThrows(IllegalArgumentException.class, () -> new EchoAudioFilter(10, -0.1));
+		return;
+	}
+
+	@Test
+	public void impulseEchoesAndDecays() {
+		short[] samples = new short[10];
+		samples[1] = 16_000;
+		new EchoAudioFilter(3, 0.5).filter(samples, 1, 9, FORMAT);
+		assertArrayEquals(new short[] { 0, 16_000, 0, 0, 8_000, 0, 0, 4_000, 0, 0 }, samples);
+		return;
+	}
+
+	@Test
+	public void echoClips() {
+		short[] samples = { 30_000, 0, 30_000 };
+		new EchoAudioFilter(2, 0.9).filter(samples, 0, 3, FORMAT);
+		assertEquals(Short.MAX_VALUE, samples[2]);
+		return;
+	}
+}
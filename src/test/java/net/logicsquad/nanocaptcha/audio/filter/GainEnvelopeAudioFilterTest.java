@@ -0,0 +1,42 @@
+package net.logicsquad.nanocaptcha.audio.filter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+
+import javax.sound.sampled.AudioFormat;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests on {@link GainEnvelopeAudioFilter} class.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public class GainEnvelopeAudioFilterTest {
+	private static final AudioFormat FORMAT = new AudioFormat(8_000, 16, 1, true, false);
+
+	@Test
+	public void constructorThrowsOnBadArguments() {
+		assertThrows(IllegalArgumentException.class, () -> new GainEnvelopeAudioFilter(0.8, 0.5, 100));
+		assertThrows(IllegalArgumentException.class, () -> new GainEnvelopeAudioFilter(0.2, 1.5, 100));
+		assertThrows(IllegalArgumentException.class, () -> new GainEnvelopeAudioFilter(0.2, 0.5, 0));
+		return;
+	}
+
+	@Test
+	public void envelopeIsBoundedAndSmooth() {
+		short[] samples = new short[8_000];
+		Arrays.fill(samples, (short) 20_000);
+		new GainEnvelopeAudioFilter(0.25, 0.75, 100).filter(samples, 0, samples.length, FORMAT);
+		for (int i = 0; i < samples.length; i++) {
+			assertTrue(samples[i] >= 4_990 && samples[i] <= 15_000);
+			if (i > 0) {
+				// Steepest step is pi/2 * range / segment length
+				assertTrue(Math.abs(samples[i] - samples[i - 1]) <= 25);
+			}
+		}
+		return;
+	}
+}
@@ -0,0 +1,43 @@
+package net.logicsquad.nanocaptcha.audio.filter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+
+import javax.sound.sampled.AudioFormat;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests on {@link TremoloAudioFilter} class.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public class TremoloAudioFilterTest {
+	private static final AudioFormat FORMAT = new AudioFormat(8_000, 16, 1, true, false);
+
+	@Test
+	public void constructorThrowsOnBadArguments() {
+		assertThrows(IllegalArgumentException.class, () -> new TremoloAudioFilter(0, 0.5));
+		assertThrows(IllegalArgumentException.class, () -> new TremoloAudioFilter(5, 1.5));
+		return;
+	}
+
+	@Test
+	public void gainSpansDepth() {
+		short[] samples = new short[8_000];
+		Arrays.fill(samples, (short) 10_000);
+		// Two full cycles
+		new TremoloAudioFilter(2, 0.6).filter(samples, 0, samples.length, FORMAT);
+		int min = Short.MAX_VALUE;
+		int max = Short.MIN_VALUE;
+		for (short s : samples) {
+			min = Math.min(min, s);
+			max = Math.max(max, s);
+		}
+		assertEquals(4_000, min, 10);
+		assertEquals(10_000, max, 10);
+		return;
+	}
+}
@@ -0,0 +1,49 @@
+package net.logicsquad.nanocaptcha.audio.noise;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+import net.logicsquad.nanocaptcha.audio.Sample;
+
+/**
+ * Unit tests on {@link RandomNoiseProducer} class.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public class RandomNoiseProducerTest {
+	/**
+	 * Volume at which raw (unnormalized) noise was mixed before noise was
+	 * normalized
+	 */
+	private static final double BASELINE_VOLUME = 0.6;
+
+	@Test
+	public void defaultNoiseLevelMatchesBaselineMix() {
+		double baseline = 0;
+		double current = 0;
+		for (String noiseFile : new RandomNoiseProducer().getResourceNames()) {
+			Sample raw = new Sample(noiseFile);
+			baseline += meanSquare(raw.getSamples()) * BASELINE_VOLUME * BASELINE_VOLUME;
+			Sample silence = new Sample(new short[(int) raw.getSampleCount()]);
+			Sample mixed = new RandomNoiseProducer(new String[] { noiseFile }).addNoise(Collections.singletonList(silence));
+			current += meanSquare(mixed.getSamples());
+		}
+		// Built-in noises are chosen with equal probability, so compare their average
+		// power: individual noises may be louder or quieter than before
+		assertEquals(0.0, 10 * Math.log10(current / baseline), 1.0);
+		return;
+	}
+
+	// Returns mean of squared samples
+	private static double meanSquare(short[] samples) {
+		double sum = 0;
+		for (short s : samples) {
+			sum += (double) s * s;
+		}
+		return sum / samples.length;
+	}
+}
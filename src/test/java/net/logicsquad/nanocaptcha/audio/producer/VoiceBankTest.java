@@ -0,0 +1,200 @@
+package net.logicsquad.nanocaptcha.audio.producer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.logicsquad.nanocaptcha.audio.AudioProfile;
+import net.logicsquad.nanocaptcha.audio.LoudnessNormalizer;
+import net.logicsquad.nanocaptcha.audio.Sample;
+import net.logicsquad.nanocaptcha.audio.SampleCache;
+import net.logicsquad.nanocaptcha.audio.SoundBank;
+
+/**
+ * Unit tests on {@link VoiceBank} class.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public class VoiceBankTest {
+	/**
+	 * Brazilian Portuguese
+	 */
+	private static final Locale PT_BR = Locale.forLanguageTag("pt-BR");
+
+	@TempDir
+	Path root;
+
+	@Test
+	public void builtInIndexesEnglishAndGerman() {
+		VoiceBank bank = VoiceBank.builtIn();
+		assertEquals(new HashSet<>(Arrays.asList(Locale.ENGLISH, Locale.GERMAN)), bank.getLocales());
+		assertEquals(70, bank.getResourceNames(Locale.ENGLISH).size());
+		assertTrue(bank.getResourceNames(Locale.GERMAN).contains("/sounds/de/numbers/3_b.wav"));
+		return;
+	}
+
+	@Test
+	public void builtInIndexMatchesClasspath() {
+		VoiceBank builtIn = VoiceBank.builtIn();
+		VoiceBank discovered = VoiceBank.fromClasspath("/sounds", Long.MAX_VALUE);
+		assertEquals(discovered.getLocales(), builtIn.getLocales());
+		for (Locale locale : discovered.getLocales()) {
+			assertEquals(discovered.getResourceNames(locale), builtIn.getResourceNames(locale));
+		}
+		return;
+	}
+
+	@Test
+	public void builtInServesSoundBankLoadedAfterPreload() throws IOException {
+		String name = "/sounds/de/numbers/3_a.wav";
+		Sample replacement = new Sample("/sounds/de/numbers/4_a.wav");
+		VoiceBank bank = VoiceBank.builtIn();
+		new RandomNumberVoiceProducer(Locale.GERMAN).preload();
+		bank.load(Locale.GERMAN, AudioProfile.STANDARD, LoudnessNormalizer.VOICE);
+		assertArrayEquals(new Sample(name).getSamples(), bank.getVocalizations(Locale.GERMAN, 3, AudioProfile.STANDARD).get(0).getSamples());
+		Path file = root.resolve("bank.ncsb");
+		SoundBank.write(file, Collections.singletonMap(name, replacement));
+		try {
+			SampleCache.shared().load(SoundBank.open(file));
+			assertArrayEquals(replacement.getSamples(), bank.getVocalizations(Locale.GERMAN, 3, AudioProfile.STANDARD).get(0).getSamples());
+			assertArrayEquals(LoudnessNormalizer.VOICE.normalize(replacement).getSamples(),
+					bank.getVocalizations(Locale.GERMAN, 3, AudioProfile.STANDARD, LoudnessNormalizer.VOICE).get(0).getSamples());
+			assertEquals(0, bank.getMemoryUsage());
+		} finally {
+			SampleCache.shared().clear();
+		}
+		return;
+	}
+
+	@Test
+	public void fromClasspathDiscoversLocales() {
+		VoiceBank bank = VoiceBank.fromClasspath("/sounds", Long.MAX_VALUE);
+		assertTrue(bank.supports(Locale.ENGLISH));
+		assertTrue(bank.supports(Locale.GERMAN));
+		assertEquals(0, bank.getLoadCount());
+		assertThrows(IllegalArgumentException.class, () -> VoiceBank.fromClasspath("/no-such-root", 1));
+		return;
+	}
+
+	@Test
+	public void fromDirectorySkipsIncompleteLocales() throws IOException {
+		copyLocale("en", "en", "a", "b");
+		copyLocale("de", "pt-BR", "a");
+		copyLocale("de", "fr", "a");
+		Files.delete(root.resolve("fr/numbers/7_a.wav"));
+		VoiceBank bank = VoiceBank.fromDirectory(root, Long.MAX_VALUE);
+		assertEquals(new HashSet<>(Arrays.asList(Locale.ENGLISH, PT_BR)), bank.getLocales());
+		assertEquals(20, bank.getResourceNames(Locale.ENGLISH).size());
+		assertThrows(IllegalArgumentException.class, () -> bank.getResourceNames(Locale.FRENCH));
+		return;
+	}
+
+	@Test
+	public void localeIsDecodedOnceOnFirstUse() throws IOException {
+		copyLocale("en", "en", "a", "b");
+		VoiceBank bank = VoiceBank.fromDirectory(root, Long.MAX_VALUE);
+		assertEquals(0, bank.getMemoryUsage());
+		List<Sample> threes = bank.getVocalizations(Locale.ENGLISH, 3, AudioProfile.STANDARD);
+		assertEquals(2, threes.size());
+		assertArrayEquals(new Sample("/sounds/en/numbers/3_a.wav").getSamples(), threes.get(0).getSamples());
+		assertSame(threes, bank.getVocalizations(Locale.ENGLISH, 3, AudioProfile.STANDARD));
+		bank.getVocalizations(Locale.ENGLISH, 5, AudioProfile.STANDARD);
+		assertEquals(1, bank.getLoadCount());
+		assertTrue(bank.getMemoryUsage() > 0);
+		Sample telephony = bank.getVocalizations(Locale.ENGLISH, 3, AudioProfile.TELEPHONY).get(0);
+		assertEquals(8_000, (int) telephony.getFormat().getSampleRate());
+		assertEquals(2, bank.getLoadCount());
+		assertThrows(IllegalArgumentException.class, () -> bank.getVocalizations(Locale.ENGLISH, 10, AudioProfile.STANDARD));
+		return;
+	}
+
+	@Test
+	public void normalizedVoicesAreHeldSeparately() throws IOException {
+		copyLocale("de", "de", "a");
+		VoiceBank bank = VoiceBank.fromDirectory(root, Long.MAX_VALUE);
+		Sample plain = bank.getVocalizations(Locale.GERMAN, 5, AudioProfile.STANDARD).get(0);
+		List<Sample> fives = bank.getVocalizations(Locale.GERMAN, 5, AudioProfile.STANDARD, LoudnessNormalizer.VOICE);
+		assertEquals(2, bank.getLoadCount());
+		assertSame(fives, bank.getVocalizations(Locale.GERMAN, 5, AudioProfile.STANDARD, LoudnessNormalizer.VOICE));
+		Sample normalized = fives.get(0);
+		assertTrue(normalized.getSampleCount() < plain.getSampleCount());
+		assertTrue(normalized.getMetadata().getGain() > 1.0);
+		assertTrue(normalized.getMetadata().getPeakDbfs() <= -6.0);
+		RandomNumberVoiceProducer producer = new RandomNumberVoiceProducer(Locale.GERMAN, bank);
+		assertSame(normalized, producer.getVocalization('5', AudioProfile.STANDARD, LoudnessNormalizer.VOICE));
+		return;
+	}
+
+	@Test
+	public void leastRecentlyUsedLocaleIsEvictedOverBudget() throws IOException {
+		copyLocale("en", "en", "a");
+		copyLocale("de", "de", "a");
+		copyLocale("de", "pt-BR", "a");
+		VoiceBank probe = VoiceBank.fromDirectory(root, Long.MAX_VALUE);
+		probe.load(Locale.ENGLISH, AudioProfile.STANDARD);
+		long english = probe.getMemoryUsage();
+		probe.load(Locale.GERMAN, AudioProfile.STANDARD);
+		long german = probe.getMemoryUsage() - english;
+		// Room for English and German, but not Portuguese as well
+		VoiceBank bank = VoiceBank.fromDirectory(root, english + 2 * german - 1);
+		bank.load(Locale.ENGLISH, AudioProfile.STANDARD);
+		bank.load(Locale.GERMAN, AudioProfile.STANDARD);
+		bank.load(Locale.ENGLISH, AudioProfile.STANDARD);
+		assertEquals(0, bank.getEvictionCount());
+		bank.load(PT_BR, AudioProfile.STANDARD);
+		assertEquals(1, bank.getEvictionCount());
+		assertEquals(english + german, bank.getMemoryUsage());
+		// English was used more recently, so German was evicted
+		bank.load(Locale.ENGLISH, AudioProfile.STANDARD);
+		assertEquals(3, bank.getLoadCount());
+		bank.load(Locale.GERMAN, AudioProfile.STANDARD);
+		assertEquals(4, bank.getLoadCount());
+		return;
+	}
+
+	@Test
+	public void producerUsesBank() throws IOException {
+		copyLocale("de", "pt-BR", "b");
+		VoiceBank bank = VoiceBank.fromDirectory(root, Long.MAX_VALUE);
+		RandomNumberVoiceProducer producer = new RandomNumberVoiceProducer(PT_BR, bank);
+		assertEquals(PT_BR, producer.language);
+		assertArrayEquals(new Sample("/sounds/de/numbers/4_b.wav").getSamples(), producer.getVocalization('4').getSamples());
+		assertEquals(10, producer.getResourceNames().size());
+		assertThrows(IllegalArgumentException.class, () -> new RandomNumberVoiceProducer(Locale.FRENCH, bank));
+		return;
+	}
+
+	/**
+	 * Copies built-in vocalizations for {@code variants} of {@code from} to the
+	 * directory for {@code to} under {@link #root}.
+	 *
+	 * @param from     built-in language
+	 * @param to       locale directory name
+	 * @param variants voice variants
+	 * @throws IOException if unable to copy
+	 */
+	private void copyLocale(String from, String to, String... variants) throws IOException {
+		Path numbers = Files.createDirectories(root.resolve(to).resolve("numbers"));
+		for (int i = 0; i < 10; i++) {
+			for (String variant : variants) {
+				String name = i + "_" + variant + ".wav";
+				try (InputStream is = VoiceBankTest.class.getResourceAsStream("/sounds/" + from + "/numbers/" + name)) {
+					Files.copy(is, numbers.resolve(name));
+				}
+			}
+		}
+		return;
+	}
+}
@@ -0,0 +1,104 @@
+package net.logicsquad.nanocaptcha.image.filter;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests on {@link FishEyeImageFilter} class.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public class FishEyeImageFilterTest {
+	private FishEyeImageFilter fishEyeImageFilter;
+
+	@BeforeEach
+	public void setup() {
+		fishEyeImageFilter = new FishEyeImageFilter();
+		return;
+	}
+
+	@Test
+	public void distortMatchesPerPixelFormulaOnIntArgbImage() {
+		assertDistortMatchesPerPixelFormula(BufferedImage.TYPE_INT_ARGB, 400, 100);
+		assertDistortMatchesPerPixelFormula(BufferedImage.TYPE_INT_ARGB, 201, 51);
+		return;
+	}
+
+	@Test
+	public void distortMatchesPerPixelFormulaOnOtherImageTypes() {
+		assertDistortMatchesPerPixelFormula(BufferedImage.TYPE_4BYTE_ABGR, 200, 50);
+		assertDistortMatchesPerPixelFormula(BufferedImage.TYPE_INT_RGB, 200, 50);
+		return;
+	}
+
+	/**
+	 * Asserts that {@link FishEyeImageFilter#distort(BufferedImage, int)} gives
+	 * the same result as the original per-pixel implementation, for each distance
+	 * {@link FishEyeImageFilter#filter(BufferedImage)} can choose.
+	 *
+	 * @param type   image type
+	 * @param width  image width
+	 * @param height image height
+	 */
+	private void assertDistortMatchesPerPixelFormula(int type, int width, int height) {
+		Random random = new Random(42);
+		for (int distance = width / 4; distance <= width / 3; distance++) {
+			BufferedImage image = new BufferedImage(width, height, type);
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					image.setRGB(x, y, random.nextInt());
+				}
+			}
+			int[] expected = perPixel(image, distance);
+			fishEyeImageFilter.distort(image, distance);
+			assertArrayEquals(expected, image.getRGB(0, 0, width, height, null, 0, width));
+		}
+		return;
+	}
+
+	/**
+	 * Returns the pixels of {@code image} distorted by the original per-pixel
+	 * implementation, leaving {@code image} unchanged.
+	 *
+	 * @param image    an image
+	 * @param distance radius of distortion
+	 * @return distorted pixels, row by row
+	 */
+	private static int[] perPixel(BufferedImage image, int distance) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+		int[] result = pixels.clone();
+		int wMid = width / 2;
+		int hMid = height / 2;
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				int relX = x - wMid;
+				int relY = y - hMid;
+				double d1 = Math.sqrt(relX * relX + relY * relY);
+				if (d1 < distance) {
+					int j2 = wMid + (int) (((fishEyeFormula(d1 / distance) * distance) / d1) * (x - wMid));
+					int k2 = hMid + (int) (((fishEyeFormula(d1 / distance) * distance) / d1) * (y - hMid));
+					result[y * width + x] = pixels[k2 * width + j2];
+				}
+			}
+		}
+		return result;
+	}
+
+	private static double fishEyeFormula(double s) {
+		if (s < 0.0D) {
+			return 0.0D;
+		}
+		if (s > 1.0D) {
+			return s;
+		}
+		return -0.75D * s * s * s + 1.5D * s * s + 0.25D * s;
+	}
+}
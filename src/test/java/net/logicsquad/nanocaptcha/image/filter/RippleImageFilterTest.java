@@ -41,6 +41,26 @@ public class RippleImageFilterTest {
 		return;
 	}
 
+	/**
+	 * Confirms that filtering a {@link BufferedImage#TYPE_INT_ARGB} image, whose
+	 * pixels are worked on directly, gives the same result as filtering the same
+	 * pixels in an image of another type.
+	 *
+	 * @throws IOException if there is a problem reading images
+	 */
+	@Test
+	public void rippleImageFilterOnIntArgbImageMatchesOtherImageTypes() throws IOException {
+		BufferedImage expected = ImageIO.read(RippleImageFilterTest.class.getClassLoader().getResourceAsStream("input.png"));
+		BufferedImage input = new BufferedImage(expected.getWidth(), expected.getHeight(), BufferedImage.TYPE_INT_ARGB);
+		int width = expected.getWidth();
+		int height = expected.getHeight();
+		input.setRGB(0, 0, width, height, expected.getRGB(0, 0, width, height, null, 0, width), 0, width);
+		rippleImageFilter.filter(expected);
+		rippleImageFilter.filter(input);
+		assertTrue(bufferedImagesEqual(expected, input));
+		return;
+	}
+
 	/**
 	 *
 	 * @param expected expected {@link BufferedImage}
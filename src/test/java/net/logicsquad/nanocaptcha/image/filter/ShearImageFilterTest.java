@@ -0,0 +1,66 @@
+package net.logicsquad.nanocaptcha.image.filter;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests on {@link ShearImageFilter} class.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public class ShearImageFilterTest {
+	/**
+	 * Number of random shears to compare
+	 */
+	private static final int SHEARS = 50;
+
+	@Test
+	public void rasterShearMatchesGraphicsShearOnIntArgbImage() {
+		assertRasterShearMatchesGraphicsShear(new ShearImageFilter(), BufferedImage.TYPE_INT_ARGB, 600, 150);
+		assertRasterShearMatchesGraphicsShear(new ShearImageFilter(Color.RED), BufferedImage.TYPE_INT_ARGB, 17, 9);
+		return;
+	}
+
+	@Test
+	public void rasterShearMatchesGraphicsShearOnIntRgbImage() {
+		assertRasterShearMatchesGraphicsShear(new ShearImageFilter(), BufferedImage.TYPE_INT_RGB, 200, 50);
+		return;
+	}
+
+	/**
+	 * Asserts that {@link ShearImageFilter#filter(BufferedImage, Random)} leaves
+	 * the same pixels as {@link ShearImageFilter#filterWithGraphics(BufferedImage, Random)},
+	 * for a range of random shears.
+	 *
+	 * @param filter a {@link ShearImageFilter}
+	 * @param type   image type
+	 * @param width  image width
+	 * @param height image height
+	 */
+	private void assertRasterShearMatchesGraphicsShear(ShearImageFilter filter, int type, int width, int height) {
+		Random random = new Random(42);
+		for (int seed = 0; seed < SHEARS; seed++) {
+			BufferedImage raster = new BufferedImage(width, height, type);
+			BufferedImage graphics = new BufferedImage(width, height, type);
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					int rgb = random.nextInt();
+					raster.setRGB(x, y, rgb);
+					graphics.setRGB(x, y, rgb);
+				}
+			}
+			filter.filter(raster, new Random(seed));
+			filter.filterWithGraphics(graphics, new Random(seed));
+			assertArrayEquals(((DataBufferInt) graphics.getRaster().getDataBuffer()).getData(),
+					((DataBufferInt) raster.getRaster().getDataBuffer()).getData());
+		}
+		return;
+	}
+}
@@ -0,0 +1,120 @@
+package net.logicsquad.nanocaptcha.image.filter;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import net.logicsquad.nanocaptcha.image.filter.StretchImageFilter.Interpolation;
+
+/**
+ * Unit tests on {@link StretchImageFilter} class.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public class StretchImageFilterTest {
+	@Test
+	public void nearestStretchSamplesPixelCentres() {
+		BufferedImage image = randomImage(BufferedImage.TYPE_INT_RGB, 200, 50);
+		int[] original = pixels(image);
+		new StretchImageFilter().filter(image);
+		int[] stretched = pixels(image);
+		for (int y = 0; y < 50; y++) {
+			for (int x = 0; x < 200; x++) {
+				assertEquals(original[(int) ((y + 0.5) / 3.0) * 200 + x], stretched[y * 200 + x]);
+			}
+		}
+		return;
+	}
+
+	@Test
+	public void shrinkLeavesUncoveredPixelsUnchanged() {
+		BufferedImage image = randomImage(BufferedImage.TYPE_INT_RGB, 100, 40);
+		int[] original = pixels(image);
+		new StretchImageFilter(0.5, 0.25).filter(image);
+		int[] shrunk = pixels(image);
+		for (int y = 0; y < 40; y++) {
+			for (int x = 0; x < 100; x++) {
+				int expected = x < 50 && y < 10 ? original[(y * 4 + 2) * 100 + x * 2 + 1] : original[y * 100 + x];
+				assertEquals(expected, shrunk[y * 100 + x]);
+			}
+		}
+		return;
+	}
+
+	@Test
+	public void bilinearStretchAtUnitScaleIsIdentity() {
+		BufferedImage image = randomImage(BufferedImage.TYPE_INT_RGB, 60, 20);
+		int[] original = pixels(image);
+		new StretchImageFilter(1.0, 1.0, Interpolation.BILINEAR).filter(image);
+		assertArrayEquals(original, pixels(image));
+		return;
+	}
+
+	@Test
+	public void bilinearStretchInterpolatesBetweenNeighbours() {
+		BufferedImage image = new BufferedImage(2, 1, BufferedImage.TYPE_INT_RGB);
+		image.setRGB(0, 0, 0xff000000);
+		image.setRGB(1, 0, 0xffffffff);
+		new StretchImageFilter(2.0, 1.0, Interpolation.BILINEAR).filter(image);
+		// Destination centre 0.5 lies before source pixel 0's centre, and destination
+		// centre 1.5 lies a quarter of the way from source pixel 0's centre to pixel 1's
+		assertEquals(0xff000000, image.getRGB(0, 0));
+		assertEquals(0xff404040, image.getRGB(1, 0));
+		return;
+	}
+
+	@Test
+	public void directAndGenericPathsMatch() {
+		for (Interpolation interpolation : Interpolation.values()) {
+			StretchImageFilter filter = new StretchImageFilter(1.3, 2.7, interpolation);
+			BufferedImage direct = randomImage(BufferedImage.TYPE_INT_ARGB, 120, 40);
+			BufferedImage generic = new BufferedImage(120, 40, BufferedImage.TYPE_4BYTE_ABGR);
+			generic.setRGB(0, 0, 120, 40, pixels(direct), 0, 120);
+			filter.filter(direct);
+			filter.filter(generic);
+			assertArrayEquals(pixels(direct), pixels(generic));
+		}
+		return;
+	}
+
+	@Test
+	public void throwsOnNullInterpolation() {
+		assertThrows(NullPointerException.class, () -> new StretchImageFilter(1.0, 3.0, null));
+		return;
+	}
+
+	/**
+	 * Returns an image of random pixels.
+	 *
+	 * @param type   image type
+	 * @param width  image width
+	 * @param height image height
+	 * @return image
+	 */
+	private static BufferedImage randomImage(int type, int width, int height) {
+		BufferedImage image = new BufferedImage(width, height, type);
+		Random random = new Random(42);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				image.setRGB(x, y, random.nextInt());
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * Returns the pixels of {@code image}, row by row.
+	 *
+	 * @param image an image
+	 * @return pixels
+	 */
+	private static int[] pixels(BufferedImage image) {
+		return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+	}
+}
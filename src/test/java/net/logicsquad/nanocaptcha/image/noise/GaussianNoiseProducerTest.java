@@ -0,0 +1,109 @@
+package net.logicsquad.nanocaptcha.image.noise;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests on {@link GaussianNoiseProducer} class.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public class GaussianNoiseProducerTest {
+    @Test
+    public void zeroNoiseLeavesImageUnchanged() {
+        for (int type : new int[] { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_4BYTE_ABGR }) {
+            BufferedImage image = filledImage(type, 0x80604020);
+            int[] before = pixels(image);
+            new GaussianNoiseProducer(0, 0).makeNoise(image);
+            assertArrayEquals(before, pixels(image));
+        }
+        return;
+    }
+
+    @Test
+    public void deltaTableCacheIsBounded() throws ReflectiveOperationException {
+        Field field = GaussianNoiseProducer.class.getDeclaredField("TABLES");
+        field.setAccessible(true);
+        Map<?, ?> tables = (Map<?, ?>) field.get(null);
+        for (int mean = 0; mean < 200; mean++) {
+            new GaussianNoiseProducer(7, mean);
+            assertTrue(tables.size() <= 64);
+        }
+        return;
+    }
+
+    @Test
+    public void channelsClampAtLimits() {
+        BufferedImage image = filledImage(BufferedImage.TYPE_INT_ARGB, 0x10203040);
+        new GaussianNoiseProducer(0, 300).makeNoise(image);
+        assertTrue(Arrays.stream(pixels(image)).allMatch(p -> p == 0xffffffff));
+        new GaussianNoiseProducer(0, -300).makeNoise(image);
+        assertTrue(Arrays.stream(pixels(image)).allMatch(p -> p == 0x00000000));
+        image = filledImage(BufferedImage.TYPE_4BYTE_ABGR, 0x10203040);
+        new GaussianNoiseProducer(0, 300).makeNoise(image);
+        assertTrue(Arrays.stream(pixels(image)).allMatch(p -> p == 0xffffffff));
+        return;
+    }
+
+    @Test
+    public void noiseLeavesOpaqueImageOpaque() {
+        BufferedImage image = filledImage(BufferedImage.TYPE_INT_RGB, 0xff808080);
+        new GaussianNoiseProducer().makeNoise(image);
+        assertTrue(Arrays.stream(pixels(image)).allMatch(p -> p >>> 24 == 0xff));
+        return;
+    }
+
+    @Test
+    public void noiseHasExpectedMeanAndStandardDeviation() {
+        BufferedImage image = filledImage(BufferedImage.TYPE_INT_ARGB, 0xff808080);
+        new GaussianNoiseProducer(20, 0).makeNoise(image);
+        int[] pixels = pixels(image);
+        double sum = 0;
+        double sumOfSquares = 0;
+        for (int pixel : pixels) {
+            int green = (pixel >> 8) & 0xff;
+            sum += green;
+            sumOfSquares += green * green;
+        }
+        double mean = sum / pixels.length;
+        double standardDeviation = Math.sqrt(sumOfSquares / pixels.length - mean * mean);
+        // Deltas are rounded down, so the mean sits half a level below 128
+        assertEquals(127.5, mean, 1.5);
+        assertEquals(20.0, standardDeviation, 1.5);
+        return;
+    }
+
+    /**
+     * Returns a 400x100 image of {@code type} filled with {@code argb}.
+     *
+     * @param type image type
+     * @param argb pixel value
+     * @return image
+     */
+    private static BufferedImage filledImage(int type, int argb) {
+        BufferedImage image = new BufferedImage(400, 100, type);
+        int[] pixels = new int[400 * 100];
+        Arrays.fill(pixels, argb);
+        image.setRGB(0, 0, 400, 100, pixels, 0, 400);
+        return image;
+    }
+
+    /**
+     * Returns the pixels of {@code image}, row by row.
+     *
+     * @param image an image
+     * @return pixels
+     */
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+}
@@ -0,0 +1,112 @@
+package net.logicsquad.nanocaptcha.image.noise;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests on {@link SaltAndPepperNoiseProducer} class.
+ *
+ * @author <a href="mailto:paulh@logicsquad.net">Paul Hoadley</a>
+ * @since 2.2
+ */
+public class SaltAndPepperNoiseProducerTest {
+    /**
+     * Mid-grey, which is neither salt nor pepper
+     */
+    private static final int GREY = 0xff808080;
+
+    @Test
+    public void zeroDensityLeavesImageUnchanged() {
+        BufferedImage image = greyImage(BufferedImage.TYPE_INT_ARGB);
+        new SaltAndPepperNoiseProducer(0).makeNoise(image);
+        assertTrue(Arrays.stream(pixels(image)).allMatch(p -> p == GREY));
+        return;
+    }
+
+    @Test
+    public void fullDensityChangesEveryPixel() {
+        for (int type : new int[] { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR }) {
+            BufferedImage image = greyImage(type);
+            new SaltAndPepperNoiseProducer(1).makeNoise(image);
+            assertTrue(Arrays.stream(pixels(image)).allMatch(p -> p == 0xff000000 || p == 0xffffffff));
+        }
+        return;
+    }
+
+    @Test
+    public void noisyPixelsMatchDensity() {
+        for (int type : new int[] { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_3BYTE_BGR }) {
+            BufferedImage image = greyImage(type);
+            new SaltAndPepperNoiseProducer().makeNoise(image);
+            int[] pixels = pixels(image);
+            long salt = Arrays.stream(pixels).filter(p -> p == 0xffffffff).count();
+            long pepper = Arrays.stream(pixels).filter(p -> p == 0xff000000).count();
+            assertEquals(pixels.length, salt + pepper + Arrays.stream(pixels).filter(p -> p == GREY).count());
+            // 40,000 pixels at density 0.15: about 6,000 noisy, with a standard deviation of about 71
+            assertEquals(6_000, salt + pepper, 400);
+            assertEquals(0.5, (double) salt / (salt + pepper), 0.05);
+        }
+        return;
+    }
+
+    @Test
+    public void noiseIsSpreadOverWholeImage() {
+        BufferedImage image = greyImage(BufferedImage.TYPE_INT_ARGB);
+        new SaltAndPepperNoiseProducer(0.5).makeNoise(image);
+        int[] pixels = pixels(image);
+        int[] firstRow = Arrays.copyOfRange(pixels, 0, 400);
+        int[] lastRow = Arrays.copyOfRange(pixels, pixels.length - 400, pixels.length);
+        assertTrue(Arrays.stream(firstRow).anyMatch(p -> p != GREY));
+        assertTrue(Arrays.stream(lastRow).anyMatch(p -> p != GREY));
+        return;
+    }
+
+    @Test
+    public void throwsOnDensityOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new SaltAndPepperNoiseProducer(-0.1));
+        assertThrows(IllegalArgumentException.class, () -> new SaltAndPepperNoiseProducer(1.1));
+        return;
+    }
+
+    @Test
+    public void rawIntRgbPixelsMatchSetRgb() {
+        BufferedImage image = greyImage(BufferedImage.TYPE_INT_RGB);
+        new SaltAndPepperNoiseProducer(1).makeNoise(image);
+        BufferedImage expected = new BufferedImage(400, 100, BufferedImage.TYPE_INT_RGB);
+        expected.setRGB(0, 0, 400, 100, pixels(image), 0, 400);
+        assertArrayEquals((int[]) expected.getRaster().getDataElements(0, 0, 400, 100, null),
+                (int[]) image.getRaster().getDataElements(0, 0, 400, 100, null));
+        return;
+    }
+
+    /**
+     * Returns a 400x100 mid-grey image of {@code type}.
+     *
+     * @param type image type
+     * @return image
+     */
+    private static BufferedImage greyImage(int type) {
+        BufferedImage image = new BufferedImage(400, 100, type);
+        int[] pixels = new int[400 * 100];
+        Arrays.fill(pixels, GREY);
+        image.setRGB(0, 0, 400, 100, pixels, 0, 400);
+        return image;
+    }
+
+    /**
+     * Returns the pixels of {@code image}, row by row.
+     *
+     * @param image an image
+     * @return pixels
+     */
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+}